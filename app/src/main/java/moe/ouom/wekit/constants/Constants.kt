@@ -28,6 +28,19 @@ class Constants private constructor() {
         const val PrekClickableXXX: String = "clickable_setting_switch_value_"
         const val PrekEnableLog: String = "setting_switch_value_prek_enable_log"
         const val PrekVerboseLog: String = "setting_switch_value_prek_verbose_log"
+        const val PrekVerboseLogMaxDepth: String = "setting_cfg_value_prek_verbose_log_max_depth"
+        const val PrekVerboseLogMaxChars: String = "setting_cfg_value_prek_verbose_log_max_chars"
+        const val PrekVerboseLogMaxHexBytes: String = "setting_cfg_value_prek_verbose_log_max_hex_bytes"
+        const val PrekProtoSchemaInfer: String = "setting_switch_value_prek_proto_schema_infer"
+        const val PrekPkgMetrics: String = "setting_switch_value_prek_pkg_metrics"
+        const val PrekPacketCapture: String = "setting_switch_value_prek_packet_capture"
+        const val PrekPkgTrace: String = "setting_switch_value_prek_pkg_trace"
+        const val PrekInterceptorBudgetMs: String = "setting_cfg_value_prek_interceptor_budget_ms"
+        const val PrekInterceptorCooldownSec: String = "setting_cfg_value_prek_interceptor_cooldown_sec"
+        const val PrekSendWorkers: String = "setting_cfg_value_prek_send_workers"
+        const val PrekSendQueueCapacity: String = "setting_cfg_value_prek_send_queue_capacity"
+        const val PrekSendRateLimits: String = "setting_cfg_value_prek_send_rate_limits"
+        const val PrekSendBlockWhenFull: String = "setting_switch_value_prek_send_block_when_full"
         const val PrekDatabaseVerboseLog: String = "setting_switch_value_prek_database_verbose_log"
         const val PrekDisableVersionAdaptation: String = "setting_cfg_value_disable_version_adaptation"
     }
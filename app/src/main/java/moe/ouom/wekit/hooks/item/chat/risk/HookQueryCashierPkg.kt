@@ -7,8 +7,8 @@ import moe.ouom.wekit.core.model.BaseClickableFunctionHookItem
 import moe.ouom.wekit.hooks.core.annotation.HookItem
 import moe.ouom.wekit.hooks.sdk.protocol.WePkgManager
 import moe.ouom.wekit.hooks.sdk.protocol.intf.IWePkgInterceptor
+import moe.ouom.wekit.hooks.sdk.protocol.model.PacketContext
 import moe.ouom.wekit.ui.creator.dialog.BaseRikkaDialog
-import moe.ouom.wekit.util.WeProtoData
 import moe.ouom.wekit.util.log.WeLogger
 import org.json.JSONArray
 import org.json.JSONObject
@@ -16,6 +16,8 @@ import org.json.JSONObject
 @HookItem(path = "聊天与消息/修改转账时的余额", desc = "点击配置")
 class HookQueryCashierPkg : BaseClickableFunctionHookItem(), IWePkgInterceptor {
     companion object {
+        private const val CGI_QUERY_CASHIER = 2882
+
         private const val KEY_CFT_BALANCE = "cashier_cft_balance"
         private const val KEY_LQT_BALANCE = "cashier_lqt_balance"
 
@@ -25,28 +27,25 @@ class HookQueryCashierPkg : BaseClickableFunctionHookItem(), IWePkgInterceptor {
     }
 
     override fun entry(classLoader: ClassLoader) {
-        WePkgManager.addInterceptor(this)
+        WePkgManager.addInterceptor(this, cgiIds = intArrayOf(CGI_QUERY_CASHIER))
     }
 
-    override fun onResponse(uri: String, cgiId: Int, respBytes: ByteArray): ByteArray? {
-        if (cgiId != 2882) return null
+    override fun onResponse(ctx: PacketContext) {
+        if (ctx.cgiId != CGI_QUERY_CASHIER) return
 
-        WeLogger.i("HookQueryCashierPkg", "拦截到收银台数据包: $uri")
+        WeLogger.i("HookQueryCashierPkg", "拦截到收银台数据包: ${ctx.uri}")
 
         try {
-            val data = WeProtoData()
-            data.fromBytes(respBytes)
+            val data = ctx.data
             val json = data.toJSON()
             processJsonObject(json)
-            data.applyViewJSON(json, true)
+            // 之前的拦截器改动过时 data.isModified 也为 true，以本次的改动数为准
+            if (data.applyViewJSON(json, true) > 0) ctx.markDirty()
 
-            WeLogger.i("HookQueryCashierPkg", "篡改完成，返回新数据包")
-            return data.toPacketBytes()
+            WeLogger.i("HookQueryCashierPkg", "篡改完成")
         } catch (e: Exception) {
             WeLogger.e("HookQueryCashierPkg", e)
         }
-
-        return null
     }
 
     private fun processJsonObject(obj: JSONObject) {
@@ -0,0 +1,144 @@
+package moe.ouom.wekit.hooks.item.dev
+
+import android.content.Context
+import android.graphics.Typeface
+import android.text.InputType
+import android.widget.EditText
+import android.widget.LinearLayout
+import com.afollestad.materialdialogs.MaterialDialog
+import com.afollestad.materialdialogs.customview.customView
+import com.afollestad.materialdialogs.list.listItems
+import moe.ouom.wekit.core.model.BaseClickableFunctionHookItem
+import moe.ouom.wekit.hooks.core.annotation.HookItem
+import moe.ouom.wekit.hooks.sdk.protocol.capture.CaptureFile
+import moe.ouom.wekit.hooks.sdk.protocol.capture.CaptureRecord
+import moe.ouom.wekit.hooks.sdk.protocol.capture.PacketCapture
+import moe.ouom.wekit.util.WeProtoData
+import moe.ouom.wekit.util.common.Toasts
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+@HookItem(path = "开发者选项/抓包查看", desc = "按 CGI 与时间浏览二进制抓包记录")
+class WePacketCaptureViewer : BaseClickableFunctionHookItem() {
+
+    private val timeFormat = SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.ROOT)
+
+    override fun onClick(context: Context?) {
+        context?.let { showFilter(it) }
+    }
+
+    private fun showFilter(context: Context) {
+        val file = PacketCapture.open()
+        if (file == null) {
+            Toasts.showToast(context, "无法打开抓包文件")
+            return
+        }
+
+        val layout = LinearLayout(context).apply {
+            orientation = LinearLayout.VERTICAL
+            setPadding(16, 16, 16, 16)
+        }
+        val edtCgi = EditText(context).apply {
+            hint = "CGI ID，留空显示全部"
+            inputType = InputType.TYPE_CLASS_NUMBER
+            isSingleLine = true
+        }
+        val edtMinutes = EditText(context).apply {
+            hint = "从 N 分钟前开始向前翻，留空从最新开始"
+            inputType = InputType.TYPE_CLASS_NUMBER
+            isSingleLine = true
+        }
+        layout.addView(edtCgi)
+        layout.addView(edtMinutes)
+
+        val count = file.nextSeq() - file.oldestSeq()
+        MaterialDialog(context).show {
+            title(text = "抓包查看 ($count 条)")
+            customView(view = layout)
+            positiveButton(text = "查看") {
+                val cgiId = edtCgi.text.toString().trim().toIntOrNull()
+                val minutes = edtMinutes.text.toString().trim().toLongOrNull()
+                val before = if (minutes != null) {
+                    file.seqAtTime(System.currentTimeMillis() - minutes * 60_000L)
+                } else {
+                    Long.MAX_VALUE
+                }
+                showPage(context, file, cgiId, before)
+            }
+            neutralButton(text = "清空") {
+                file.clear()
+                Toasts.showToast(context, "已清空")
+            }
+            negativeButton(text = "关闭")
+        }
+    }
+
+    private fun showPage(context: Context, file: CaptureFile, cgiId: Int?, beforeSeq: Long) {
+        val records = file.query(cgiId, beforeSeq, PAGE_SIZE)
+        if (records.isEmpty()) {
+            Toasts.showToast(context, "没有更多记录")
+            return
+        }
+        val items = records.map { r ->
+            val dir = if (r.isRequest) "→" else "←"
+            val mark = if (r.tampered) " *" else ""
+            "${timeFormat.format(Date(r.timestamp))} $dir ${r.cgiId} ${r.uri.substringAfterLast('/')} ${r.payloadLength}B$mark"
+        }
+        MaterialDialog(context).show {
+            title(text = if (cgiId != null) "CGI $cgiId" else "全部数据包")
+            listItems(items = items, waitForPositiveButton = false) { _, index, _ ->
+                showRecord(context, file, records[index])
+            }
+            if (records.size == PAGE_SIZE) {
+                positiveButton(text = "更早") {
+                    showPage(context, file, cgiId, records.last().seq)
+                }
+            }
+            negativeButton(text = "关闭")
+        }
+    }
+
+    private fun showRecord(context: Context, file: CaptureFile, r: CaptureRecord) {
+        val payload = file.readPayload(r)
+        val body = if (payload == null) {
+            "记录已被覆盖"
+        } else {
+            val sb = StringBuilder()
+            try {
+                val data = WeProtoData()
+                data.fromBytes(payload)
+                data.setCgiId(r.cgiId)
+                data.writeJson(sb, MAX_DEPTH, MAX_CHARS, MAX_HEX_BYTES)
+            } catch (e: Exception) {
+                sb.append("<parse failed: ${e.message}>")
+            }
+            sb.toString()
+        }
+        val head = buildString {
+            append("#${r.seq} ${timeFormat.format(Date(r.timestamp))}\n")
+            append(if (r.isRequest) "Request" else "Response").append(": ${r.uri}, CGI=${r.cgiId}, LEN=${r.payloadLength}")
+            if (r.tampered) append(", 已篡改")
+            if (r.truncated) append(", 已截断")
+            append("\n\n")
+        }
+        MaterialDialog(context).show {
+            title(text = "数据包详情")
+            message(text = head + body) {
+                messageTextView.typeface = Typeface.MONOSPACE
+                messageTextView.textSize = 11f
+                messageTextView.setTextIsSelectable(true)
+            }
+            positiveButton(text = "关闭")
+        }
+    }
+
+    override fun noSwitchWidget(): Boolean = true
+
+    private companion object {
+        const val PAGE_SIZE = 50
+        const val MAX_DEPTH = 32
+        const val MAX_CHARS = 200_000
+        const val MAX_HEX_BYTES = 512
+    }
+}
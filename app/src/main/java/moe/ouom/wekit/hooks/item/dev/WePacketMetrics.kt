@@ -0,0 +1,67 @@
+package moe.ouom.wekit.hooks.item.dev
+
+import android.content.Context
+import android.graphics.Typeface
+import com.afollestad.materialdialogs.MaterialDialog
+import moe.ouom.wekit.core.model.BaseClickableFunctionHookItem
+import moe.ouom.wekit.hooks.core.annotation.HookItem
+import moe.ouom.wekit.hooks.sdk.protocol.PkgMetrics
+import moe.ouom.wekit.hooks.sdk.protocol.WePkgManager
+import moe.ouom.wekit.util.common.Toasts
+import moe.ouom.wekit.util.log.WeLogger
+
+@HookItem(path = "开发者选项/数据包统计", desc = "查看各 CGI 的流量、往返耗时、拦截器耗时与熔断状态")
+class WePacketMetrics : BaseClickableFunctionHookItem() {
+
+    override fun onClick(context: Context?) {
+        context?.let { showReport(it) }
+    }
+
+    private fun showReport(context: Context) {
+        val text = buildString {
+            if (!PkgMetrics.enabled) append("未开启统计，请在 WeKit 设置 → 调试 中打开「数据包统计」\n\n")
+            val dropped = WePkgManager.droppedPackets
+            if (dropped > 0) append("观察者队列丢弃 $dropped 个数据包\n")
+            appendHealth(this)
+            append(PkgMetrics.report())
+        }
+
+        MaterialDialog(context).show {
+            title(text = "数据包统计")
+            message(text = text) {
+                messageTextView.typeface = Typeface.MONOSPACE
+                messageTextView.textSize = 11f
+                messageTextView.setTextIsSelectable(true)
+            }
+            positiveButton(text = "导出") {
+                try {
+                    val file = PkgMetrics.export()
+                    Toasts.showToast(context, "已导出到 ${file.absolutePath}")
+                } catch (e: Throwable) {
+                    WeLogger.e("WePacketMetrics", "export failed", e)
+                    Toasts.showToast(context, "导出失败: ${e.message}")
+                }
+            }
+            neutralButton(text = "重置") {
+                PkgMetrics.reset()
+                WePkgManager.resetBreakers()
+                Toasts.showToast(context, "已重置统计并恢复所有拦截器")
+            }
+            negativeButton(text = "关闭")
+        }
+    }
+
+    private fun appendHealth(sb: StringBuilder) {
+        val health = WePkgManager.interceptorHealth()
+        if (health.isEmpty()) return
+        sb.append("拦截器状态\n")
+        for (s in health) {
+            sb.append(if (s.bypassRemainingMs > 0) "  [熔断 ${s.bypassRemainingMs / 1000}s] " else "  ")
+                .append(s.name.substringAfterLast('.'))
+                .append(" 调用 ${s.calls} 出错 ${s.failures} 熔断 ${s.trips} 次 p99 ${s.p99Nanos / 1000}us\n")
+        }
+        sb.append('\n')
+    }
+
+    override fun noSwitchWidget(): Boolean = true
+}
@@ -0,0 +1,46 @@
+package moe.ouom.wekit.hooks.item.dev
+
+import android.content.Context
+import com.afollestad.materialdialogs.MaterialDialog
+import moe.ouom.wekit.core.model.BaseClickableFunctionHookItem
+import moe.ouom.wekit.hooks.core.annotation.HookItem
+import moe.ouom.wekit.hooks.sdk.protocol.PkgTracer
+import moe.ouom.wekit.util.common.Toasts
+import moe.ouom.wekit.util.log.WeLogger
+
+@HookItem(path = "开发者选项/请求追踪", desc = "导出每个请求的 dispatch、拦截、网络等待、响应篡改与回调耗时，可用 ui.perfetto.dev 打开")
+class WePacketTrace : BaseClickableFunctionHookItem() {
+
+    override fun onClick(context: Context?) {
+        context?.let { showDialog(it) }
+    }
+
+    private fun showDialog(context: Context) {
+        val text = buildString {
+            if (!PkgTracer.enabled) append("未开启追踪，请在 WeKit 设置 → 调试 中打开「请求链路追踪」\n\n")
+            append("缓冲中有 ${PkgTracer.size()} 个 span，写满后覆盖最旧的记录\n")
+            append("导出文件位于 WeKit/pkg_trace，可在 ui.perfetto.dev 或 chrome://tracing 中打开")
+        }
+
+        MaterialDialog(context).show {
+            title(text = "请求追踪")
+            message(text = text)
+            positiveButton(text = "导出") {
+                try {
+                    val file = PkgTracer.export()
+                    Toasts.showToast(context, "已导出到 ${file.absolutePath}")
+                } catch (e: Throwable) {
+                    WeLogger.e("WePacketTrace", "export failed", e)
+                    Toasts.showToast(context, "导出失败: ${e.message}")
+                }
+            }
+            neutralButton(text = "清空") {
+                PkgTracer.clear()
+                Toasts.showToast(context, "已清空")
+            }
+            negativeButton(text = "关闭")
+        }
+    }
+
+    override fun noSwitchWidget(): Boolean = true
+}
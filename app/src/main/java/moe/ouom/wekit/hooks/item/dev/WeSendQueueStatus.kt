@@ -0,0 +1,54 @@
+package moe.ouom.wekit.hooks.item.dev
+
+import android.content.Context
+import android.graphics.Typeface
+import com.afollestad.materialdialogs.MaterialDialog
+import moe.ouom.wekit.core.model.BaseClickableFunctionHookItem
+import moe.ouom.wekit.hooks.core.annotation.HookItem
+import moe.ouom.wekit.hooks.sdk.protocol.PkgSendScheduler
+import moe.ouom.wekit.util.common.Toasts
+
+@HookItem(path = "开发者选项/发包队列", desc = "查看 sendCgi 发送队列的排队数、拒绝次数与等待耗时")
+class WeSendQueueStatus : BaseClickableFunctionHookItem() {
+
+    override fun onClick(context: Context?) {
+        context?.let { showStatus(it) }
+    }
+
+    private fun showStatus(context: Context) {
+        val s = PkgSendScheduler.stats()
+        val text = buildString {
+            append("工作线程 ${s.workers}，队列 ${s.depth}/${s.capacity}，峰值 ${s.maxDepth}\n")
+            append("提交 ${s.submitted}，拒绝 ${s.rejected}，等待空位 ${s.suspended}，限速延后 ${s.throttled}\n")
+            append("完成 ${s.completed}，异常 ${s.failed}\n")
+            val w = s.waitTime
+            if (w.count() > 0) {
+                append("排队耗时 avg ${w.mean() / 1_000_000}ms p50 ${w.percentile(0.5) / 1_000_000}ms ")
+                    .append("p90 ${w.percentile(0.9) / 1_000_000}ms p99 ${w.percentile(0.99) / 1_000_000}ms\n")
+            }
+            append("限速 ").append(s.rateLimits.ifEmpty { "无" }).append('\n')
+            if (s.routeDepths.isNotEmpty()) {
+                append("\n排队中\n")
+                for ((route, depth) in s.routeDepths.entries.sortedByDescending { it.value }) {
+                    append("  route $route: $depth\n")
+                }
+            }
+        }
+
+        MaterialDialog(context).show {
+            title(text = "发包队列")
+            message(text = text) {
+                messageTextView.typeface = Typeface.MONOSPACE
+                messageTextView.textSize = 11f
+                messageTextView.setTextIsSelectable(true)
+            }
+            positiveButton(text = "关闭")
+            neutralButton(text = "重置统计") {
+                PkgSendScheduler.resetStats()
+                Toasts.showToast(context, "已重置")
+            }
+        }
+    }
+
+    override fun noSwitchWidget(): Boolean = true
+}
@@ -15,11 +15,12 @@ import moe.ouom.wekit.core.model.BaseClickableFunctionHookItem
 import moe.ouom.wekit.hooks.core.annotation.HookItem
 import moe.ouom.wekit.hooks.sdk.protocol.WePkgManager
 import moe.ouom.wekit.hooks.sdk.protocol.intf.IWePkgInterceptor
+import moe.ouom.wekit.hooks.sdk.protocol.model.PacketContext
 import moe.ouom.wekit.ui.CommonContextWrapper
 import moe.ouom.wekit.ui.creator.dialog.BaseSettingsDialog
-import moe.ouom.wekit.util.WeProtoData
 import moe.ouom.wekit.util.common.Toasts.showToast
 import moe.ouom.wekit.util.log.WeLogger
+import moe.ouom.wekit.util.script.ScriptDirectives
 import moe.ouom.wekit.util.script.ScriptEvalManager
 import moe.ouom.wekit.util.script.ScriptFileManager
 import org.json.JSONObject
@@ -35,49 +36,85 @@ import java.util.*
 )
 class ScriptConfigHookItem : BaseClickableFunctionHookItem(), IWePkgInterceptor {
 
+    private val onScriptsChanged: () -> Unit = { updateRoute() }
+
     override fun entry(classLoader: ClassLoader) {
-        // 注册拦截器
+        // 注册拦截器，只接收已启用脚本声明的 CGI / URI
         WePkgManager.addInterceptor(this)
+        ScriptFileManager.getInstance().addChangeListener(onScriptsChanged)
+        updateRoute()
     }
 
-    override fun onRequest(uri: String, cgiId: Int, reqBytes: ByteArray): ByteArray? {
+    /**
+     * 按已启用脚本的声明更新订阅范围
+     * 任一启用的脚本没有声明时订阅全部数据包；没有启用的脚本时不接收任何数据包
+     */
+    private fun updateRoute() {
+        val manager = ScriptFileManager.getInstance()
+        // 脚本尚未加载时先接收全部数据包，初始化完成后会再次回调
+        if (!manager.isInitialized()) return
+
+        val cgiIds = LinkedHashSet<Int>()
+        val uriPrefixes = LinkedHashSet<String>()
         try {
-            // 解析 Protobuf 数据
-            val data = WeProtoData()
-            data.fromBytes(reqBytes)
-            // 转换为 JSON 进行处理
+            for (script in manager.getEnabledScripts()) {
+                // 脚本内以注释声明订阅范围，见 ScriptDirectives
+                val directives = ScriptDirectives.parse(script.content)
+                if (directives.isEmpty) {
+                    WePkgManager.updateRoute(this)
+                    return
+                }
+                cgiIds.addAll(directives.cgiIds.toList())
+                uriPrefixes.addAll(directives.uriPrefixes)
+            }
+        } catch (e: Exception) {
+            WeLogger.e("ScriptConfig", e)
+            WePkgManager.updateRoute(this)
+            return
+        }
+        WePkgManager.updateRoute(
+            this,
+            cgiIds = cgiIds.toIntArray(),
+            uriPrefixes = uriPrefixes.takeIf { it.isNotEmpty() }?.toTypedArray()
+        )
+    }
+
+    override fun onRequest(ctx: PacketContext) {
+        try {
+            val evalManager = ScriptEvalManager.getInstance()
+            // 没有脚本处理该数据包时跳过 JSON 转换
+            if (!evalManager.hasHandlers(true, ctx.uri, ctx.cgiId)) return
+            // 共享的解析结果转换为 JSON 进行处理
+            val data = ctx.data
             val json = data.toJSON()
             // 应用脚本修改
-            val modifiedJson = ScriptEvalManager.getInstance().executeOnRequest(uri, cgiId, json)
-            // 应用修改并转回字节数组
-            data.applyViewJSON(modifiedJson, true)
-            return data.toPacketBytes()
+            val modifiedJson = evalManager.executeOnRequest(ctx.uri, ctx.cgiId, json)
+            // 原地应用修改，只有本拦截器确实改动时才标记，未改动时不回写
+            if (data.applyViewJSON(modifiedJson, true) > 0) ctx.markDirty()
         } catch (e: Exception) {
             WeLogger.e("ScriptConfig", e)
         }
-
-        return null
     }
 
-    override fun onResponse(uri: String, cgiId: Int, respBytes: ByteArray): ByteArray? {
+    override fun onResponse(ctx: PacketContext) {
         try {
-            // 解析 Protobuf 数据
-            val data = WeProtoData()
-            data.fromBytes(respBytes)
-            // 转换为 JSON 进行处理
+            val evalManager = ScriptEvalManager.getInstance()
+            // 没有脚本处理该数据包时跳过 JSON 转换
+            if (!evalManager.hasHandlers(false, ctx.uri, ctx.cgiId)) return
+            // 共享的解析结果转换为 JSON 进行处理
+            val data = ctx.data
             val json = data.toJSON()
             // 应用脚本修改
-            val modifiedJson = ScriptEvalManager.getInstance().executeOnResponse(uri, cgiId, json)
-            // 应用修改并转回字节数组
-            data.applyViewJSON(modifiedJson, true)
-            return data.toPacketBytes()
+            val modifiedJson = evalManager.executeOnResponse(ctx.uri, ctx.cgiId, json)
+            // 原地应用修改，只有本拦截器确实改动时才标记，未改动时不回写
+            if (data.applyViewJSON(modifiedJson, true) > 0) ctx.markDirty()
         } catch (e: Exception) {
             WeLogger.e("ScriptConfig", e)
         }
-        return null
     }
 
     override fun unload(classLoader: ClassLoader) {
+        ScriptFileManager.getInstance().removeChangeListener(onScriptsChanged)
         WePkgManager.removeInterceptor(this)
         super.unload(classLoader)
     }
@@ -5,10 +5,16 @@ import moe.ouom.wekit.core.dsl.dexMethod
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IDexFind
 import moe.ouom.wekit.hooks.core.annotation.HookItem
+import moe.ouom.wekit.hooks.sdk.protocol.CgiCall
+import moe.ouom.wekit.hooks.sdk.protocol.WePkgHelper
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiException
 import moe.ouom.wekit.util.log.WeLogger
+import kotlinx.coroutines.future.await
 import org.luckypray.dexkit.DexKitBridge
 import java.lang.reflect.Method
 import java.lang.reflect.Modifier
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
 
 @SuppressLint("DiscouragedApi")
 @HookItem(path = "API/网络请求服务", desc = "提供通用发包能力")
@@ -28,29 +34,97 @@ class WeNetworkApi : ApiHookItem(), IDexFind {
          * 供外部调用的通用发包方法
          */
         fun sendRequest(netScene: Any) {
+            val queueObj = getQueue() ?: return
+            send(queueObj, netScene)
+        }
+
+        /**
+         * 发送 NetScene 并等待它的 onSceneEnd
+         * 成功时以 netScene 本身完成，errType / errCode 不为 0 或发送失败时以 [CgiException] 完成，超时以 TimeoutException 完成；
+         * cancel() 会注销队列回调，之后的 onSceneEnd 被忽略
+         *
+         * @param timeoutMs 0 表示不限
+         * @param executor 完成 future 的线程，默认后台线程池
+         */
+        fun sendRequestAsync(
+            netScene: Any,
+            timeoutMs: Long = 0,
+            executor: Executor = CgiCall.BACKGROUND
+        ): CompletableFuture<Any> {
+            val call = CgiCall<Any>(executor)
+            val helper = WePkgHelper.INSTANCE
+            val queueObj = getQueue()
+            if (helper == null || queueObj == null) {
+                call.failOn(CgiException(-1, CgiException.CODE_ENGINE, "WeNetworkApi not initialized"))
+                return call
+            }
+            call.timeout(timeoutMs)
+            val unregister = try {
+                helper.watchSceneEnd(queueObj, netScene) { args ->
+                    val errType = args[0] as Int
+                    val errCode = args[1] as Int
+                    if (errType == 0 && errCode == 0) {
+                        call.completeOn { netScene }
+                    } else {
+                        call.failOn(CgiException(errType, errCode, args[2] as? String ?: "null"))
+                    }
+                }
+            } catch (e: Throwable) {
+                WeLogger.e("WeNetworkApi: Failed to watch scene end", e)
+                call.failOn(CgiException(-1, CgiException.CODE_ENGINE, e.message ?: "", e))
+                return call
+            }
+            call.onAbandon(unregister)
+            if (!send(queueObj, netScene)) {
+                unregister()
+                call.failOn(CgiException(-1, CgiException.CODE_ENGINE, "doScene failed"))
+            }
+            return call
+        }
+
+        /**
+         * sendRequestAsync 的挂起版本，协程被取消时等同于 cancel()
+         */
+        suspend fun sendRequestAwait(
+            netScene: Any,
+            timeoutMs: Long = 0,
+            executor: Executor = CgiCall.BACKGROUND
+        ): Any = sendRequestAsync(netScene, timeoutMs, executor).await()
+
+        private fun getQueue(): Any? {
             if (!isInitialized) {
                 WeLogger.e("WeNetworkApi: Not initialized yet!")
-                return
+                return null
             }
-
-            try {
+            return try {
                 // 获取 NetSceneQueue 实例
-                val queueObj = methodGetMgr?.invoke(null) ?: return
+                methodGetMgr?.invoke(null)
+            } catch (e: Throwable) {
+                WeLogger.e("WeNetworkApi: Failed to get NetSceneQueue", e)
+                null
+            }
+        }
 
+        /**
+         * @return doScene 是否成功
+         */
+        private fun send(queueObj: Any, netScene: Any): Boolean {
+            try {
                 // 获取发送方法
                 val method = getSendMethod(queueObj, netScene.javaClass)
 
                 if (method == null) {
                     WeLogger.e("WeNetworkApi: Send method not found for ${netScene.javaClass.simpleName}")
-                    return
+                    return false
                 }
 
                 // 执行发送
-                method.invoke(queueObj, netScene)
-                WeLogger.d("WeNetworkApi: Request sent -> ${netScene.javaClass.simpleName}")
-
+                val sent = method.invoke(queueObj, netScene) as? Boolean ?: true
+                WeLogger.d("WeNetworkApi: Request sent -> ${netScene.javaClass.simpleName}, result=$sent")
+                return sent
             } catch (e: Throwable) {
                 WeLogger.e("WeNetworkApi: Failed to send request", e)
+                return false
             }
         }
 
@@ -0,0 +1,83 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiBatchItem
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiBatchResult
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiResponse
+import moe.ouom.wekit.util.log.WeLogger
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * 批量发送：最多 maxInFlight 个请求同时在途，任一请求完成后立即补上下一个
+ * 每个请求有独立超时，慢请求只占用一个窗口位置，不阻塞其它请求
+ * 全部完成后按输入顺序返回结果；取消 [future] 会取消在途请求并跳过未发出的请求
+ */
+internal class CgiBatch(
+    private val items: List<CgiBatchItem>,
+    private val maxInFlight: Int,
+    private val send: (CgiBatchItem) -> CompletableFuture<CgiResponse>,
+    private val onItem: ((CgiBatchResult) -> Unit)?,
+    val future: CgiCall<List<CgiBatchResult>>
+) {
+    private val results = AtomicReferenceArray<CgiBatchResult>(items.size)
+    private val inFlight = ConcurrentHashMap<Int, CompletableFuture<CgiResponse>>()
+    private val next = AtomicInteger()
+    private val remaining = AtomicInteger(items.size)
+
+    fun start() {
+        if (items.isEmpty()) {
+            future.completeOn { emptyList() }
+            return
+        }
+        future.onAbandon {
+            for (f in inFlight.values) f.cancel(false)
+        }
+        repeat(minOf(maxInFlight.coerceAtLeast(1), items.size)) { launchNext() }
+    }
+
+    private fun launchNext() {
+        while (true) {
+            val index = next.getAndIncrement()
+            if (index >= items.size) return
+            val item = items[index]
+            if (future.isDone) {
+                finish(index, CgiBatchResult(index, item, null, CancellationException("batch cancelled"), 0))
+                continue
+            }
+            val start = System.nanoTime()
+            val call = try {
+                send(item)
+            } catch (e: Throwable) {
+                finish(index, CgiBatchResult(index, item, null, e, 0))
+                continue
+            }
+            inFlight[index] = call
+            // 批量已被取消但 onAbandon 先于登记执行
+            if (future.isDone) call.cancel(false)
+            call.whenComplete { response, error ->
+                inFlight.remove(index)
+                val cause = if (error is CompletionException) error.cause ?: error else error
+                val elapsedMs = (System.nanoTime() - start) / 1_000_000
+                finish(index, CgiBatchResult(index, item, if (cause == null) response else null, cause, elapsedMs))
+                launchNext()
+            }
+            return
+        }
+    }
+
+    private fun finish(index: Int, result: CgiBatchResult) {
+        results.set(index, result)
+        try {
+            onItem?.invoke(result)
+        } catch (e: Throwable) {
+            WeLogger.e("CgiBatch", "onItem failed", e)
+        }
+        if (remaining.decrementAndGet() == 0) {
+            future.completeOn { List(items.size) { results.get(it) } }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import moe.ouom.wekit.hooks.sdk.protocol.intf.WeReqCallback
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiException
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiResponse
+import moe.ouom.wekit.util.common.SyncUtils
+import moe.ouom.wekit.util.log.WeLogger
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * 一次发送的完成状态，回包、失败、超时与取消之间先到者生效
+ * 结果在 executor 上计算并完成，后续的 thenXxx / whenComplete 默认也在该线程执行
+ * 超时或 cancel() 时注销已注册的队列回调，之后到达的回包被丢弃
+ */
+class CgiCall<T> internal constructor(private val executor: Executor) : CompletableFuture<T>() {
+
+    private val finished = AtomicBoolean()
+    private val unregister = AtomicReference<(() -> Unit)?>()
+
+    @Volatile
+    private var timedOut = false
+
+    @Volatile
+    private var timeoutTask: ScheduledFuture<*>? = null
+
+    /**
+     * 设置超时，0 表示不限
+     */
+    internal fun timeout(ms: Long) {
+        if (ms <= 0 || isDone) return
+        timeoutTask = timer.schedule({
+            executor.execute {
+                if (completeExceptionally(TimeoutException("no response in ${ms}ms"))) {
+                    timedOut = true
+                    abandon()
+                }
+            }
+        }, ms, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * 登记注销动作；已经超时或取消时立即执行
+     */
+    internal fun onAbandon(action: () -> Unit) {
+        unregister.set(action)
+        if (isCancelled || timedOut) abandon()
+    }
+
+    /**
+     * 在 executor 上计算结果，已完成时跳过
+     */
+    internal fun completeOn(block: () -> T) {
+        if (isDone) return
+        executor.execute {
+            if (isDone) return@execute
+            try {
+                complete(block())
+            } catch (e: Throwable) {
+                completeExceptionally(e)
+            }
+        }
+    }
+
+    internal fun failOn(e: Throwable) {
+        if (isDone) return
+        executor.execute { completeExceptionally(e) }
+    }
+
+    override fun complete(value: T): Boolean = super.complete(value).also { if (it) finish() }
+
+    override fun completeExceptionally(ex: Throwable): Boolean = super.completeExceptionally(ex).also { if (it) finish() }
+
+    override fun cancel(mayInterruptIfRunning: Boolean): Boolean =
+        super.cancel(mayInterruptIfRunning).also { if (it) abandon() }
+
+    private fun finish() {
+        if (finished.compareAndSet(false, true)) timeoutTask?.cancel(false)
+    }
+
+    private fun abandon() {
+        finish()
+        val action = unregister.getAndSet(null) ?: return
+        try {
+            action()
+        } catch (e: Throwable) {
+            WeLogger.w("CgiCall", "unregister failed: ${e.message}")
+        }
+    }
+
+    companion object {
+        private val timer = ScheduledThreadPoolExecutor(1) { r ->
+            Thread(r, "WeKit-CgiTimeout").apply { isDaemon = true }
+        }.apply { removeOnCancelPolicy = true }
+
+        /** 主线程，与 WeReqCallback 一致 */
+        @JvmField
+        val MAIN: Executor = Executor { SyncUtils.runOnUiThread(it) }
+
+        /** 模块的后台线程池 */
+        @JvmField
+        val BACKGROUND: Executor = Executor { SyncUtils.async(it) }
+
+        /**
+         * 把完成结果转交给 WeReqCallback，超时与取消按 [CgiException] 中的本地错误码回调 onFail
+         */
+        internal fun deliver(call: CompletableFuture<CgiResponse>, callback: WeReqCallback?) {
+            if (callback == null) return
+            call.whenComplete { r, e ->
+                if (e == null) {
+                    callback.onSuccess(r.json, r.bytes)
+                    return@whenComplete
+                }
+                val cause = if (e is CompletionException) e.cause ?: e else e
+                when (cause) {
+                    is CgiException -> callback.onFail(cause.errType, cause.errCode, cause.errMsg)
+                    is TimeoutException -> callback.onFail(-1, CgiException.CODE_TIMEOUT, cause.message ?: "timeout")
+                    is CancellationException -> callback.onFail(-1, CgiException.CODE_CANCELLED, "cancelled")
+                    else -> callback.onFail(-1, CgiException.CODE_ENGINE, cause.message ?: "")
+                }
+            }
+        }
+    }
+}
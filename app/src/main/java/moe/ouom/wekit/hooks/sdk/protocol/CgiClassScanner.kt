@@ -0,0 +1,165 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import moe.ouom.wekit.util.log.WeLogger
+import org.jf.dexlib2.DexFileFactory
+import org.jf.dexlib2.Opcode
+import org.jf.dexlib2.Opcodes
+import org.jf.dexlib2.iface.instruction.Instruction
+import org.jf.dexlib2.iface.instruction.NarrowLiteralInstruction
+import org.jf.dexlib2.iface.instruction.OneRegisterInstruction
+import org.jf.dexlib2.iface.instruction.ReferenceInstruction
+import org.jf.dexlib2.iface.instruction.TwoRegisterInstruction
+import org.jf.dexlib2.iface.reference.FieldReference
+import org.jf.dexlib2.iface.reference.StringReference
+import org.jf.dexlib2.iface.reference.TypeReference
+import org.luckypray.dexkit.DexKitBridge
+import java.io.File
+
+/**
+ * 从宿主 dex 中提取 [CgiClassTable]
+ * 先用 DexKit 找出所有写入 ConfigBuilder.d（cgiId）的方法，再用 dexlib2 顺序读取这些方法的指令：
+ * 跟踪寄存器中的常量字符串、整数与 new-instance 类型，遇到对 builder 字段 a / c / d / e / f 的 iput 时取出对应的值
+ *
+ * 不做控制流分析，在分支中或由参数决定的字段取不到常量，这类 CGI 不进表，发包时退回通用 RawReq
+ */
+internal object CgiClassScanner {
+    private const val TAG = "CgiClassScanner"
+
+    // ConfigBuilder 字段，与 WePkgHelper.sendCgi 中的写法一致
+    private const val FIELD_REQUEST = "a"
+    private const val FIELD_URI = "c"
+    private const val FIELD_CGI = "d"
+    private const val FIELD_FUNC = "e"
+    private const val FIELD_ROUTE = "f"
+
+    private class NewInstance(val type: String)
+
+    /** 一次 builder 填充过程中已经写入的字段 */
+    private class Record(val objectReg: Int) {
+        var assigned = 0
+        var requestType: String? = null
+        var uri = ""
+        var cgiId = 0
+        var funcId = 0
+        var routeId = 0
+    }
+
+    /**
+     * @param builderClass ConfigBuilder 的类名
+     * @param apk 宿主 APK
+     */
+    fun scan(dexKit: DexKitBridge, builderClass: String, apk: File): List<CgiClassTable.Spec> {
+        val cgiField = dexKit.findField {
+            matcher {
+                declaredClass = builderClass
+                name = FIELD_CGI
+                type = "int"
+            }
+        }.firstOrNull() ?: return emptyList()
+        val writers = cgiField.writers.mapTo(HashSet()) { it.descriptor }
+        if (writers.isEmpty()) return emptyList()
+        return extract(apk, toDescriptor(builderClass), writers)
+    }
+
+    /**
+     * 读取 apk 中 methods 内对 builderType 的赋值
+     *
+     * @param builderType ConfigBuilder 的类型描述符，如 Lcom/tencent/mm/modelbase/l;
+     * @param methods 方法描述符，如 Lcom/a/b;->c(I)V
+     */
+    fun extract(apk: File, builderType: String, methods: Set<String>): List<CgiClassTable.Spec> {
+        val owners = methods.mapTo(HashSet()) { it.substringBefore("->") }
+        val specs = ArrayList<CgiClassTable.Spec>()
+        var scanned = 0
+        val container = DexFileFactory.loadDexContainer(apk, Opcodes.getDefault())
+        for (entryName in container.dexEntryNames) {
+            val dex = container.getEntry(entryName)?.dexFile ?: continue
+            for (cls in dex.classes) {
+                if (cls.type !in owners) continue
+                for (m in cls.methods) {
+                    val desc = "${m.definingClass}->${m.name}(${m.parameterTypes.joinToString("")})${m.returnType}"
+                    if (desc !in methods) continue
+                    val impl = m.implementation ?: continue
+                    interpret(impl.instructions, builderType, specs)
+                    scanned++
+                }
+            }
+        }
+        WeLogger.i(TAG, "scanned $scanned methods, ${specs.size} cgi specs")
+        return specs
+    }
+
+    private fun interpret(instructions: Iterable<Instruction>, builderType: String, out: MutableList<CgiClassTable.Spec>) {
+        val regs = HashMap<Int, Any>()
+        var record: Record? = null
+
+        for (insn in instructions) {
+            when (insn.opcode) {
+                Opcode.CONST_STRING, Opcode.CONST_STRING_JUMBO ->
+                    regs[(insn as OneRegisterInstruction).registerA] =
+                        ((insn as ReferenceInstruction).reference as StringReference).string
+
+                Opcode.CONST_4, Opcode.CONST_16, Opcode.CONST, Opcode.CONST_HIGH16 ->
+                    regs[(insn as OneRegisterInstruction).registerA] = (insn as NarrowLiteralInstruction).narrowLiteral
+
+                Opcode.NEW_INSTANCE ->
+                    regs[(insn as OneRegisterInstruction).registerA] =
+                        NewInstance(((insn as ReferenceInstruction).reference as TypeReference).type)
+
+                Opcode.MOVE, Opcode.MOVE_FROM16, Opcode.MOVE_16,
+                Opcode.MOVE_OBJECT, Opcode.MOVE_OBJECT_FROM16, Opcode.MOVE_OBJECT_16 -> {
+                    insn as TwoRegisterInstruction
+                    val value = regs[insn.registerB]
+                    if (value != null) regs[insn.registerA] = value else regs.remove(insn.registerA)
+                }
+
+                Opcode.IPUT, Opcode.IPUT_OBJECT -> {
+                    val field = (insn as ReferenceInstruction).reference as FieldReference
+                    if (field.definingClass != builderType) continue
+                    insn as TwoRegisterInstruction
+                    val bit = when (field.name) {
+                        FIELD_REQUEST -> 1
+                        FIELD_URI -> 2
+                        FIELD_CGI -> 4
+                        FIELD_FUNC -> 8
+                        FIELD_ROUTE -> 16
+                        else -> continue
+                    }
+                    // 换了一个 builder 或同一字段再次赋值，视为开始填充下一个请求
+                    var r = record
+                    if (r == null || r.objectReg != insn.registerB || r.assigned and bit != 0) {
+                        r?.let { flush(it, out) }
+                        r = Record(insn.registerB)
+                        record = r
+                    }
+                    r.assigned = r.assigned or bit
+                    val value = regs[insn.registerA]
+                    when (bit) {
+                        1 -> r.requestType = (value as? NewInstance)?.type
+                        2 -> r.uri = value as? String ?: ""
+                        4 -> r.cgiId = value as? Int ?: 0
+                        8 -> r.funcId = value as? Int ?: 0
+                        16 -> r.routeId = value as? Int ?: 0
+                    }
+                }
+
+                else -> if (insn.opcode.setsRegister() && insn is OneRegisterInstruction) {
+                    regs.remove(insn.registerA)
+                    if (insn.opcode.setsWideRegister()) regs.remove(insn.registerA + 1)
+                }
+            }
+        }
+        record?.let { flush(it, out) }
+    }
+
+    private fun flush(r: Record, out: MutableList<CgiClassTable.Spec>) {
+        val type = r.requestType ?: return
+        if (r.cgiId <= 0) return
+        out.add(CgiClassTable.Spec(r.cgiId, toClassName(type), r.funcId, r.routeId, r.uri))
+    }
+
+    private fun toDescriptor(className: String): String = "L" + className.replace('.', '/') + ";"
+
+    private fun toClassName(descriptor: String): String =
+        descriptor.substring(1, descriptor.length - 1).replace('/', '.')
+}
@@ -0,0 +1,122 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import moe.ouom.wekit.util.common.IntObjectMap
+import moe.ouom.wekit.util.log.WeLogger
+
+/**
+ * CGI 请求表：cgiId -> 请求类、funcId、routeId、uri
+ * 扫描时从宿主各 NetScene 填充 ConfigBuilder 的字节码中提取（见 [CgiClassScanner]），随 WePkgHelper 的 dex 缓存按宿主版本保存，
+ * 宿主升级后重新扫描，不再依赖手工维护的混淆类名
+ *
+ * 查询走 int 开放寻址表，不装箱也不分配
+ */
+object CgiClassTable {
+    private const val TAG = "CgiClassTable"
+    private const val VERSION = "v1"
+
+    /** WePkgHelper dex 缓存中保存该表的键 */
+    const val CACHE_KEY = "cgiClassTable"
+
+    /** 作为 sendCgi 的 funcId / routeId 传入时取表中的值，表中没有该 cgiId 时按 0 发送 */
+    const val FROM_TABLE = -1
+
+    class Spec(
+        val cgiId: Int,
+        /** 请求类的 Java 类名 */
+        val requestClass: String,
+        val funcId: Int,
+        val routeId: Int,
+        val uri: String
+    ) {
+        @Volatile
+        internal var resolved: Class<*>? = null
+
+        @Volatile
+        internal var missing = false
+
+        override fun toString(): String = "$cgiId to Triple(\"$requestClass\", $funcId, $routeId), // $uri"
+    }
+
+    private val table = IntObjectMap<Spec>()
+
+    fun get(cgiId: Int): Spec? = table.get(cgiId)
+
+    fun contains(cgiId: Int): Boolean = table.get(cgiId) != null
+
+    fun size(): Int = table.size()
+
+    fun forEach(visitor: (Spec) -> Unit) {
+        table.forEach { _, spec -> visitor(spec) }
+    }
+
+    /**
+     * 请求类，首次使用时加载并缓存；表中没有或类已不存在时返回 null
+     */
+    fun requestClass(cgiId: Int, loader: ClassLoader): Class<*>? {
+        val spec = table.get(cgiId) ?: return null
+        spec.resolved?.let { return it }
+        if (spec.missing) return null
+        return try {
+            Class.forName(spec.requestClass, false, loader).also { spec.resolved = it }
+        } catch (_: ClassNotFoundException) {
+            WeLogger.w(TAG, "[$cgiId] request class not found: ${spec.requestClass}")
+            spec.missing = true
+            null
+        }
+    }
+
+    /**
+     * 整体替换表内容，同一 cgiId 只保留第一项
+     */
+    fun load(specs: Collection<Spec>) {
+        val map = LinkedHashMap<Int, Spec>(specs.size * 2)
+        for (spec in specs) map.putIfAbsent(spec.cgiId, spec)
+        table.replaceWith(map)
+    }
+
+    /**
+     * 从缓存字符串加载，格式不符时清空并返回 false 以触发重新扫描
+     */
+    fun load(encoded: String?): Boolean {
+        val specs = decode(encoded)
+        if (specs == null) {
+            table.clear()
+            return false
+        }
+        load(specs)
+        return true
+    }
+
+    /**
+     * 编码为缓存字符串：首行为版本号，之后每行一项，字段以制表符分隔
+     * 表为空时仍会输出版本行，保证缓存值非空
+     */
+    fun encode(specs: Collection<Spec>): String {
+        val sb = StringBuilder(VERSION)
+        for (s in specs) {
+            sb.append('\n')
+                .append(s.cgiId).append('\t')
+                .append(s.requestClass).append('\t')
+                .append(s.funcId).append('\t')
+                .append(s.routeId).append('\t')
+                .append(s.uri)
+        }
+        return sb.toString()
+    }
+
+    fun decode(encoded: String?): List<Spec>? {
+        if (encoded == null) return null
+        val lines = encoded.split('\n')
+        if (lines[0] != VERSION) return null
+        val specs = ArrayList<Spec>(lines.size - 1)
+        for (i in 1 until lines.size) {
+            val parts = lines[i].split('\t')
+            if (parts.size != 5) return null
+            val cgiId = parts[0].toIntOrNull() ?: return null
+            val funcId = parts[2].toIntOrNull() ?: return null
+            val routeId = parts[3].toIntOrNull() ?: return null
+            specs.add(Spec(cgiId, parts[1], funcId, routeId, parts[4]))
+        }
+        return specs
+    }
+}
@@ -0,0 +1,117 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+/**
+ * 单个拦截器的耗时预算与熔断状态
+ * 保留最近 [WINDOW] 次调用的耗时用于计算滚动 p99；连续超出预算或抛出异常 [TRIP_THRESHOLD] 次，
+ * 或滚动 p99 超出预算时熔断，冷却期内直接跳过该拦截器。冷却结束后放行，再次违规立即重新熔断
+ */
+internal class PkgCircuitBreaker(val name: String) {
+
+    class Status(
+        val name: String,
+        val calls: Long,
+        val failures: Long,
+        val trips: Int,
+        val p99Nanos: Long,
+        /** 剩余冷却时间，未熔断时为 0 */
+        val bypassRemainingMs: Long
+    )
+
+    private val window = LongArray(WINDOW)
+    private var windowPos = 0
+    private var windowSize = 0
+    private var p99 = 0L
+    private var strikes = 0
+    private var calls = 0L
+    private var failures = 0L
+    private var trips = 0
+    private var probation = false
+
+    @Volatile
+    private var openUntil = 0L
+
+    /**
+     * 是否处于冷却期，冷却期内不应调用该拦截器
+     */
+    fun isOpen(now: Long): Boolean {
+        val until = openUntil
+        return until != 0L && now - until < 0
+    }
+
+    /**
+     * 记录一次调用
+     * @return 本次调用导致熔断时返回 true，调用方随后通过 [open] 进入冷却
+     */
+    @Synchronized
+    fun record(nanos: Long, failed: Boolean, budgetNanos: Long, now: Long): Boolean {
+        calls++
+        if (failed) failures++
+        window[windowPos] = nanos
+        windowPos = (windowPos + 1) % WINDOW
+        if (windowSize < WINDOW) windowSize++
+        if (calls % P99_INTERVAL == 0L) p99 = computeP99()
+
+        val until = openUntil
+        if (until != 0L) {
+            // 熔断前已经开始的调用，只计入统计
+            if (now - until < 0) return false
+            // 冷却结束后的第一次调用，违规则立即重新熔断
+            openUntil = 0L
+            probation = true
+        }
+
+        val violated = failed || (budgetNanos > 0 && nanos > budgetNanos)
+        if (!violated) {
+            strikes = 0
+            probation = false
+            return false
+        }
+        strikes++
+        val p99Exceeded = budgetNanos > 0 && windowSize >= P99_MIN_SAMPLES && p99 > budgetNanos
+        if (!probation && strikes < TRIP_THRESHOLD && !p99Exceeded) return false
+
+        trips++
+        strikes = 0
+        probation = false
+        return true
+    }
+
+    fun open(now: Long, cooldownNanos: Long) {
+        openUntil = (now + cooldownNanos).let { if (it == 0L) 1L else it }
+    }
+
+    /**
+     * 手动恢复
+     */
+    @Synchronized
+    fun reset() {
+        openUntil = 0L
+        strikes = 0
+        probation = false
+        windowPos = 0
+        windowSize = 0
+        p99 = 0L
+    }
+
+    @Synchronized
+    fun status(now: Long): Status {
+        val until = openUntil
+        val remaining = if (until != 0L && now - until < 0) (until - now) / 1_000_000L else 0L
+        return Status(name, calls, failures, trips, computeP99(), remaining)
+    }
+
+    private fun computeP99(): Long {
+        if (windowSize == 0) return 0L
+        val sorted = window.copyOf(windowSize)
+        sorted.sort()
+        val rank = (windowSize * 99 + 99) / 100
+        return sorted[rank - 1]
+    }
+
+    companion object {
+        const val WINDOW = 128
+        const val TRIP_THRESHOLD = 3
+        private const val P99_INTERVAL = 16
+        private const val P99_MIN_SAMPLES = 32
+    }
+}
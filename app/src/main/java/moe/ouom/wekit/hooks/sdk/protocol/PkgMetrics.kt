@@ -0,0 +1,180 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import moe.ouom.wekit.config.WeConfig
+import moe.ouom.wekit.constants.Constants
+import moe.ouom.wekit.util.common.IntObjectMap
+import moe.ouom.wekit.util.io.PathTool
+import moe.ouom.wekit.util.metrics.LogLinearHistogram
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.File
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * 按 CGI 统计流量与耗时
+ * 计数使用分段的 LongAdder，耗时使用对数线性直方图（单位纳秒），统计项按 cgiId 存放在无锁读取的 int 表中
+ * 只在开启 [Constants.PrekPkgMetrics] 时记录
+ */
+object PkgMetrics {
+    private const val DIR_NAME = "pkg_metrics"
+
+    class CgiStats(val cgiId: Int) {
+        @Volatile
+        var uri: String = ""
+            internal set
+        val requests = LongAdder()
+        val responses = LongAdder()
+        val requestBytes = LongAdder()
+        val responseBytes = LongAdder()
+
+        /** dispatch 到 onGYNetEnd 的耗时 */
+        val roundTrip = LogLinearHistogram()
+
+        /** 请求与响应经过拦截器链的总耗时 */
+        val chain = LogLinearHistogram()
+    }
+
+    class InterceptorStats(val name: String) {
+        val time = LogLinearHistogram()
+    }
+
+    private val cgis = IntObjectMap<CgiStats>()
+    private val interceptors = ConcurrentHashMap<Class<*>, InterceptorStats>()
+
+    @Volatile
+    private var since = System.currentTimeMillis()
+
+    val enabled: Boolean
+        get() = WeConfig.dGetBoolean(Constants.PrekPkgMetrics)
+
+    private fun stats(cgiId: Int): CgiStats = cgis.computeIfAbsent(cgiId) { CgiStats(it) }
+
+    internal fun recordPacket(uri: String, cgiId: Int, isRequest: Boolean, length: Int, chainNanos: Long) {
+        val s = stats(cgiId)
+        if (s.uri != uri) s.uri = uri
+        if (isRequest) {
+            s.requests.increment()
+            s.requestBytes.add(length.toLong())
+        } else {
+            s.responses.increment()
+            s.responseBytes.add(length.toLong())
+        }
+        s.chain.record(chainNanos)
+    }
+
+    internal fun recordRoundTrip(cgiId: Int, nanos: Long) {
+        stats(cgiId).roundTrip.record(nanos)
+    }
+
+    internal fun recordInterceptor(interceptor: Any, nanos: Long) {
+        val cls = interceptor.javaClass
+        (interceptors[cls] ?: interceptors.getOrPut(cls) { InterceptorStats(cls.name) }).time.record(nanos)
+    }
+
+    fun reset() {
+        cgis.clear()
+        interceptors.clear()
+        since = System.currentTimeMillis()
+    }
+
+    private fun sortedCgis(): List<CgiStats> {
+        val list = ArrayList<CgiStats>(cgis.size())
+        cgis.forEach { _, s -> list.add(s) }
+        list.sortByDescending { it.requestBytes.sum() + it.responseBytes.sum() }
+        return list
+    }
+
+    /**
+     * 生成按流量排序的文本报告
+     */
+    fun report(): String {
+        val sb = StringBuilder()
+        val elapsed = (System.currentTimeMillis() - since) / 1000
+        sb.append("统计时长 ${elapsed}s，CGI ${cgis.size()} 个\n")
+        for (s in sortedCgis()) {
+            sb.append('\n').append(s.cgiId).append(' ').append(s.uri).append('\n')
+            sb.append("  请求 ${s.requests.sum()} 次 ${formatBytes(s.requestBytes.sum())}，")
+                .append("响应 ${s.responses.sum()} 次 ${formatBytes(s.responseBytes.sum())}\n")
+            if (s.roundTrip.count() > 0) sb.append("  往返 ").append(formatHistogram(s.roundTrip)).append('\n')
+            if (s.chain.count() > 0) sb.append("  拦截 ").append(formatHistogram(s.chain)).append('\n')
+        }
+        if (interceptors.isNotEmpty()) {
+            sb.append("\n拦截器\n")
+            for (s in interceptors.values.sortedByDescending { it.time.sum() }) {
+                sb.append("  ").append(s.name.substringAfterLast('.')).append(" x").append(s.time.count())
+                    .append(' ').append(formatHistogram(s.time)).append('\n')
+            }
+        }
+        return sb.toString()
+    }
+
+    /**
+     * 导出包含完整直方图的 JSON，返回写入的文件
+     */
+    fun export(): File {
+        val root = JSONObject()
+        root.put("since", since)
+        root.put("time", System.currentTimeMillis())
+        val cgiArray = JSONArray()
+        for (s in sortedCgis()) {
+            cgiArray.put(JSONObject().apply {
+                put("cgiId", s.cgiId)
+                put("uri", s.uri)
+                put("requests", s.requests.sum())
+                put("responses", s.responses.sum())
+                put("requestBytes", s.requestBytes.sum())
+                put("responseBytes", s.responseBytes.sum())
+                put("roundTripNs", histogramJson(s.roundTrip))
+                put("chainNs", histogramJson(s.chain))
+            })
+        }
+        root.put("cgis", cgiArray)
+        val interceptorArray = JSONArray()
+        for (s in interceptors.values) {
+            interceptorArray.put(JSONObject().apply {
+                put("name", s.name)
+                put("timeNs", histogramJson(s.time))
+            })
+        }
+        root.put("interceptors", interceptorArray)
+
+        val dir = File(PathTool.getModuleDataPath(), DIR_NAME)
+        dir.mkdirs()
+        val name = SimpleDateFormat("yyyyMMdd_HHmmss", Locale.ROOT).format(Date())
+        val file = File(dir, "metrics_$name.json")
+        file.writeText(root.toString(2))
+        return file
+    }
+
+    private fun histogramJson(h: LogLinearHistogram): JSONObject = JSONObject().apply {
+        put("count", h.count())
+        put("sum", h.sum())
+        put("p50", h.percentile(0.5))
+        put("p90", h.percentile(0.9))
+        put("p99", h.percentile(0.99))
+        val buckets = JSONArray()
+        h.forEachBucket { from, to, count -> buckets.put(JSONArray().put(from).put(to).put(count)) }
+        put("buckets", buckets)
+    }
+
+    private fun formatHistogram(h: LogLinearHistogram): String =
+        "avg ${formatNanos(h.mean())} p50 ${formatNanos(h.percentile(0.5))} " +
+            "p90 ${formatNanos(h.percentile(0.9))} p99 ${formatNanos(h.percentile(0.99))}"
+
+    private fun formatNanos(ns: Long): String = when {
+        ns >= 1_000_000_000L -> String.format(Locale.ROOT, "%.2fs", ns / 1e9)
+        ns >= 1_000_000L -> String.format(Locale.ROOT, "%.1fms", ns / 1e6)
+        ns >= 1_000L -> String.format(Locale.ROOT, "%.1fus", ns / 1e3)
+        else -> "${ns}ns"
+    }
+
+    private fun formatBytes(n: Long): String = when {
+        n >= 1L shl 20 -> String.format(Locale.ROOT, "%.1fMB", n / 1048576.0)
+        n >= 1L shl 10 -> String.format(Locale.ROOT, "%.1fKB", n / 1024.0)
+        else -> "${n}B"
+    }
+}
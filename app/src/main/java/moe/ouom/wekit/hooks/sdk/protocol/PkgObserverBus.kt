@@ -0,0 +1,110 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import moe.ouom.wekit.hooks.sdk.protocol.intf.IWePkgObserver
+import moe.ouom.wekit.hooks.sdk.protocol.model.PacketSnapshot
+import moe.ouom.wekit.util.common.MpscRingBuffer
+import moe.ouom.wekit.util.log.WeLogger
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * 把数据包快照从网络线程转交给后台线程
+ * 网络线程只做一次无锁入队，队列满时丢弃并计数；后台线程在第一次投递时启动，空闲时挂起
+ *
+ * @param builtin 内置的处理（详细日志），在外部观察者之前调用
+ */
+internal class PkgObserverBus(
+    capacity: Int,
+    private val builtin: (PacketSnapshot) -> Unit
+) {
+    private val queue = MpscRingBuffer<PacketSnapshot>(capacity)
+    private val observers = CopyOnWriteArrayList<IWePkgObserver>()
+    private val dropped = AtomicLong()
+    private var reportedDrops = 0L
+
+    @Volatile
+    private var waiting = false
+
+    @Volatile
+    private var thread: Thread? = null
+
+    val hasObservers: Boolean
+        get() = observers.isNotEmpty()
+
+    val droppedCount: Long
+        get() = dropped.get()
+
+    fun add(observer: IWePkgObserver): Boolean = observers.addIfAbsent(observer)
+
+    fun remove(observer: IWePkgObserver): Boolean = observers.remove(observer)
+
+    /**
+     * 投递一个快照，队列已满时返回 false
+     */
+    fun publish(snapshot: PacketSnapshot): Boolean {
+        val t = thread ?: start()
+        if (!queue.offer(snapshot)) {
+            dropped.incrementAndGet()
+            return false
+        }
+        if (waiting) LockSupport.unpark(t)
+        return true
+    }
+
+    @Synchronized
+    private fun start(): Thread {
+        thread?.let { return it }
+        val t = Thread(::drainLoop, "WeKit-PkgObserver")
+        t.isDaemon = true
+        t.priority = Thread.MIN_PRIORITY
+        t.start()
+        thread = t
+        return t
+    }
+
+    private fun drainLoop() {
+        while (true) {
+            val snapshot = queue.poll()
+            if (snapshot == null) {
+                reportDrops()
+                waiting = true
+                // 置位后再检查一次，避免与入队交错时错过唤醒
+                if (queue.poll()?.also { dispatch(it) } == null) {
+                    LockSupport.parkNanos(this, PARK_TIMEOUT_NS)
+                }
+                waiting = false
+                continue
+            }
+            dispatch(snapshot)
+        }
+    }
+
+    private fun dispatch(snapshot: PacketSnapshot) {
+        try {
+            builtin(snapshot)
+        } catch (e: Throwable) {
+            WeLogger.e(TAG, "builtin observer failed, CGI=${snapshot.cgiId}", e)
+        }
+        for (observer in observers) {
+            try {
+                observer.onPacket(snapshot)
+            } catch (e: Throwable) {
+                WeLogger.e(TAG, "Observer failed: ${observer.javaClass.name}, CGI=${snapshot.cgiId}", e)
+            }
+        }
+    }
+
+    private fun reportDrops() {
+        val total = dropped.get()
+        if (total == reportedDrops) return
+        WeLogger.w(TAG, "observer queue full, dropped ${total - reportedDrops} packets (total $total)")
+        reportedDrops = total
+    }
+
+    private companion object {
+        const val TAG = "PkgObserverBus"
+        val PARK_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(1)
+    }
+}
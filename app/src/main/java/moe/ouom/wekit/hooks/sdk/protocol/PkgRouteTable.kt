@@ -0,0 +1,90 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import moe.ouom.wekit.hooks.sdk.protocol.intf.IWePkgInterceptor
+
+/**
+ * 拦截器的订阅范围
+ * cgiIds 与 uriPrefixes 都为 null 时接收全部数据包，否则满足任一条件即可
+ */
+internal class PkgRoute(
+    val interceptor: IWePkgInterceptor,
+    cgiIds: IntArray?,
+    val uriPrefixes: Array<String>?,
+    /** 更新订阅范围时沿用原来的熔断状态 */
+    val breaker: PkgCircuitBreaker = PkgCircuitBreaker(interceptor.javaClass.name)
+) {
+    val cgiIds: IntArray? = cgiIds?.distinct()?.sorted()?.toIntArray()
+    val all = cgiIds == null && uriPrefixes == null
+
+    fun accepts(uri: String, cgiId: Int): Boolean {
+        if (all) return true
+        if (cgiIds != null && cgiIds.binarySearch(cgiId) >= 0) return true
+        val prefixes = uriPrefixes ?: return false
+        for (p in prefixes) {
+            if (uri.startsWith(p)) return true
+        }
+        return false
+    }
+}
+
+/**
+ * 按 cgiId 分发的只读路由表，注册变化时整体重建
+ * 开放寻址的 IntArray 存放 cgiId，对应槽位保存按注册顺序排列的候选拦截器；
+ * 未被任何拦截器声明的 cgiId 落到 fallback（全量订阅与按 URI 订阅的拦截器）
+ */
+internal class PkgRouteTable(routes: List<PkgRoute>) {
+    private val keys: IntArray
+    private val values: Array<Array<PkgRoute>?>
+    private val mask: Int
+    private val fallback: Array<PkgRoute> = routes.filter { it.all || it.uriPrefixes != null }.toTypedArray()
+
+    init {
+        val ids = routes.flatMap { r -> r.cgiIds?.asList() ?: emptyList() }.distinct()
+        var capacity = 16
+        while (capacity < ids.size * 2) capacity = capacity shl 1
+        keys = IntArray(capacity) { EMPTY }
+        values = arrayOfNulls(capacity)
+        mask = capacity - 1
+        for (id in ids) {
+            var i = mix(id) and mask
+            while (keys[i] != EMPTY) i = (i + 1) and mask
+            keys[i] = id
+            values[i] = routes.filter { it.all || it.uriPrefixes != null || it.cgiIds?.binarySearch(id)?.let { p -> p >= 0 } == true }
+                .toTypedArray()
+        }
+    }
+
+    /**
+     * 可能接收该 cgiId 的拦截器，调用方仍需用 [PkgRoute.accepts] 检查 URI 前缀
+     */
+    fun candidates(cgiId: Int): Array<PkgRoute> {
+        if (cgiId != EMPTY) {
+            var i = mix(cgiId) and mask
+            while (true) {
+                val k = keys[i]
+                if (k == cgiId) return values[i]!!
+                if (k == EMPTY) break
+                i = (i + 1) and mask
+            }
+        }
+        return fallback
+    }
+
+    fun hasRoute(uri: String, cgiId: Int): Boolean {
+        for (r in candidates(cgiId)) {
+            if (r.accepts(uri, cgiId)) return true
+        }
+        return false
+    }
+
+    companion object {
+        private const val EMPTY = Int.MIN_VALUE
+
+        val NONE = PkgRouteTable(emptyList())
+
+        private fun mix(x: Int): Int {
+            val h = x * -0x61c88647
+            return h xor (h ushr 16)
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import android.os.Looper
+import moe.ouom.wekit.config.WeConfig
+import moe.ouom.wekit.constants.Constants
+import moe.ouom.wekit.util.log.WeLogger
+import moe.ouom.wekit.util.metrics.LogLinearHistogram
+import java.util.TreeSet
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * sendCgi 的发送调度
+ * 固定数量的工作线程从按 routeId 分开的优先级队列中取任务：同一路由内按优先级、再按提交顺序执行，不同路由之间轮转；
+ * 同一路由同一时间只有一个任务在执行，保证路由内的顺序
+ * 每个 cgiId 可以配置令牌桶限速，没有令牌的任务留在队列中，同一路由内其它 cgiId 的任务照常发送
+ * 队列总长度有上限，写满后按配置拒绝，或阻塞提交线程直到有空位（主线程始终拒绝）
+ * 队列长度、满时行为与限速配置缓存在内存中，设置页修改后由 reloadConfig 刷新
+ */
+object PkgSendScheduler {
+    private const val TAG = "PkgSendScheduler"
+    private const val DEFAULT_WORKERS = 2
+    private const val DEFAULT_CAPACITY = 256
+    private const val SUSPEND_TIMEOUT_MS = 30_000L
+
+    const val PRIORITY_LOW = -10
+    const val PRIORITY_NORMAL = 0
+    const val PRIORITY_HIGH = 10
+
+    private class Task(
+        val cgiId: Int,
+        val routeId: Int,
+        val priority: Int,
+        val seq: Long,
+        val enqueueNanos: Long,
+        val action: Runnable
+    ) {
+        var throttled = false
+    }
+
+    private class RouteQueue(val routeId: Int) {
+        // 优先级高的在前，同优先级先提交的在前；seq 唯一，不会有相等的元素
+        val tasks = TreeSet<Task> { a, b ->
+            if (a.priority != b.priority) b.priority.compareTo(a.priority) else a.seq.compareTo(b.seq)
+        }
+
+        /** 是否有任务正在执行 */
+        var running = false
+    }
+
+    private class Config(val capacity: Int, val blockWhenFull: Boolean, val rateLimits: String)
+
+    /**
+     * 令牌桶，每秒补充 rate 个，最多积攒 burst 个
+     */
+    private class TokenBucket(val rate: Double, val burst: Double) {
+        private var tokens = burst
+        private var last = System.nanoTime()
+
+        /** 距离拿到令牌还需等待的纳秒数，0 表示可以立即发送 */
+        fun delay(now: Long): Long {
+            tokens = minOf(burst, tokens + (now - last) * rate / 1e9)
+            last = now
+            return if (tokens >= 1.0) 0 else ((1.0 - tokens) / rate * 1e9).toLong() + 1
+        }
+
+        fun take() {
+            tokens -= 1.0
+        }
+    }
+
+    class Stats(
+        val workers: Int,
+        val capacity: Int,
+        val depth: Int,
+        val maxDepth: Int,
+        /** routeId -> 排队数 */
+        val routeDepths: Map<Int, Int>,
+        val submitted: Long,
+        val rejected: Long,
+        val suspended: Long,
+        val throttled: Long,
+        val completed: Long,
+        val failed: Long,
+        /** 入队到开始执行的时间，单位纳秒 */
+        val waitTime: LogLinearHistogram,
+        val rateLimits: String
+    )
+
+    private val lock = ReentrantLock()
+    private val notEmpty = lock.newCondition()
+    private val notFull = lock.newCondition()
+
+    // 以下字段只在持有 lock 时访问
+    private val routes = HashMap<Int, RouteQueue>()
+    private val active = ArrayList<RouteQueue>()
+    private var cursor = 0
+    private var size = 0
+    private var maxDepth = 0
+    private var seq = 0L
+    private var nextWaitNanos = Long.MAX_VALUE
+    private var buckets = HashMap<Int, TokenBucket>()
+    private var limitsConfig = ""
+    private var workers = 0
+
+    @Volatile
+    private var config: Config? = null
+
+    private val submitted = LongAdder()
+    private val rejected = LongAdder()
+    private val suspended = LongAdder()
+    private val throttled = LongAdder()
+    private val completed = LongAdder()
+    private val failed = LongAdder()
+    private val waitTime = LogLinearHistogram()
+
+    /**
+     * 提交一个发送任务
+     *
+     * @param priority 数值越大越先执行，见 [PRIORITY_HIGH] 等
+     * @param onReject 队列已满或等待空位时被中断而拒绝时调用，参数为原因，在提交线程上执行
+     * @return 是否进入队列
+     */
+    fun submit(cgiId: Int, routeId: Int, priority: Int, action: Runnable, onReject: ((String) -> Unit)? = null): Boolean {
+        val cfg = config ?: loadConfig()
+        val capacity = cfg.capacity
+        val block = cfg.blockWhenFull && Looper.myLooper() != Looper.getMainLooper()
+
+        var reason: String? = null
+        lock.lock()
+        try {
+            ensureStarted()
+            if (size >= capacity) {
+                if (block) {
+                    suspended.increment()
+                    var remaining = TimeUnit.MILLISECONDS.toNanos(SUSPEND_TIMEOUT_MS)
+                    try {
+                        while (size >= capacity && remaining > 0) remaining = notFull.awaitNanos(remaining)
+                        if (size >= capacity) reason = "发送队列已满，等待 ${SUSPEND_TIMEOUT_MS / 1000}s 后仍无空位"
+                    } catch (_: InterruptedException) {
+                        // 保留中断标记交给调用方处理，本次按拒绝处理
+                        Thread.currentThread().interrupt()
+                        reason = "等待发送队列空位时线程被中断"
+                    }
+                } else {
+                    reason = "发送队列已满 ($capacity)"
+                }
+            }
+            if (reason == null) {
+                val rq = routes.getOrPut(routeId) { RouteQueue(routeId) }
+                if (rq.tasks.isEmpty()) active.add(rq)
+                rq.tasks.add(Task(cgiId, routeId, priority, seq++, System.nanoTime(), action))
+                size++
+                if (size > maxDepth) maxDepth = size
+                submitted.increment()
+                notEmpty.signal()
+            }
+        } finally {
+            lock.unlock()
+        }
+        if (reason == null) return true
+        rejected.increment()
+        WeLogger.w(TAG, "[$cgiId] rejected: $reason")
+        onReject?.invoke(reason)
+        return false
+    }
+
+    fun stats(): Stats {
+        lock.lock()
+        try {
+            val depths = HashMap<Int, Int>()
+            for (rq in active) depths[rq.routeId] = rq.tasks.size
+            return Stats(
+                workers, (config ?: loadConfig()).capacity, size, maxDepth, depths,
+                submitted.sum(), rejected.sum(), suspended.sum(), throttled.sum(), completed.sum(), failed.sum(),
+                waitTime, limitsConfig
+            )
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    fun resetStats() {
+        lock.lock()
+        try {
+            maxDepth = size
+        } finally {
+            lock.unlock()
+        }
+        submitted.reset()
+        rejected.reset()
+        suspended.reset()
+        throttled.reset()
+        completed.reset()
+        failed.reset()
+        waitTime.reset()
+    }
+
+    /**
+     * 重新读取队列长度、满时行为与限速配置
+     */
+    internal fun reloadConfig() {
+        loadConfig()
+    }
+
+    // ========== 内部 ==========
+
+    private fun loadConfig(): Config {
+        val cfg = Config(
+            readIntConfig(Constants.PrekSendQueueCapacity, DEFAULT_CAPACITY).coerceAtLeast(1),
+            WeConfig.dGetBoolean(Constants.PrekSendBlockWhenFull),
+            WeConfig.dGetString(Constants.PrekSendRateLimits, "")?.trim() ?: ""
+        )
+        lock.lock()
+        try {
+            if (cfg.rateLimits != limitsConfig) reloadLimits(cfg.rateLimits)
+            config = cfg
+        } finally {
+            lock.unlock()
+        }
+        return cfg
+    }
+
+    private fun ensureStarted() {
+        if (workers > 0) return
+        workers = readIntConfig(Constants.PrekSendWorkers, DEFAULT_WORKERS).coerceIn(1, 16)
+        for (i in 0 until workers) {
+            Thread(::workerLoop, "WeKit-Send-$i").apply { isDaemon = true }.start()
+        }
+        WeLogger.i(TAG, "started $workers workers")
+    }
+
+    /**
+     * 格式：cgiId:每秒次数[:突发数]，逗号分隔，例如 522:2,681:0.5:3
+     */
+    private fun reloadLimits(config: String) {
+        val next = HashMap<Int, TokenBucket>()
+        for (item in config.split(',')) {
+            val parts = item.trim().split(':')
+            if (parts.size < 2) continue
+            val cgiId = parts[0].trim().toIntOrNull() ?: continue
+            val rate = parts[1].trim().toDoubleOrNull()?.takeIf { it > 0 } ?: continue
+            val burst = parts.getOrNull(2)?.trim()?.toDoubleOrNull()?.coerceAtLeast(1.0) ?: maxOf(1.0, rate)
+            next[cgiId] = TokenBucket(rate, burst)
+        }
+        buckets = next
+        limitsConfig = config
+        // 限速变化后重新计算等待时间
+        notEmpty.signalAll()
+    }
+
+    /**
+     * 从 cursor 开始轮转，在空闲的路由中按顺序查找第一个拿得到令牌的任务；都在限速时记录最短等待时间
+     */
+    private fun poll(now: Long): Task? {
+        nextWaitNanos = Long.MAX_VALUE
+        val n = active.size
+        for (i in 0 until n) {
+            val index = (cursor + i) % n
+            val rq = active[index]
+            if (rq.running) continue
+            val task = firstReady(rq, now) ?: continue
+            rq.tasks.remove(task)
+            rq.running = true
+            if (rq.tasks.isEmpty()) {
+                active.removeAt(index)
+                cursor = if (active.isEmpty()) 0 else index % active.size
+            } else {
+                cursor = (index + 1) % n
+            }
+            size--
+            notFull.signal()
+            return task
+        }
+        return null
+    }
+
+    /**
+     * 路由内第一个可以发送的任务，限速中的任务跳过并保留原位置
+     */
+    private fun firstReady(rq: RouteQueue, now: Long): Task? {
+        for (task in rq.tasks) {
+            val bucket = buckets[task.cgiId] ?: return task
+            val wait = bucket.delay(now)
+            if (wait == 0L) {
+                bucket.take()
+                return task
+            }
+            if (!task.throttled) {
+                task.throttled = true
+                throttled.increment()
+            }
+            if (wait < nextWaitNanos) nextWaitNanos = wait
+        }
+        return null
+    }
+
+    /**
+     * 任务执行完毕，路由可以继续取下一个任务
+     */
+    private fun release(routeId: Int) {
+        lock.lock()
+        try {
+            routes[routeId]?.running = false
+            notEmpty.signal()
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    private fun take(): Task {
+        lock.lock()
+        try {
+            while (true) {
+                poll(System.nanoTime())?.let { return it }
+                if (nextWaitNanos == Long.MAX_VALUE) notEmpty.await() else notEmpty.awaitNanos(nextWaitNanos)
+            }
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    private fun workerLoop() {
+        while (true) {
+            val task = try {
+                take()
+            } catch (_: InterruptedException) {
+                continue
+            }
+            waitTime.record(System.nanoTime() - task.enqueueNanos)
+            try {
+                task.action.run()
+                completed.increment()
+            } catch (t: Throwable) {
+                failed.increment()
+                WeLogger.e(TAG, "[${task.cgiId}] send task failed", t)
+            } finally {
+                release(task.routeId)
+            }
+        }
+    }
+
+    private fun readIntConfig(key: String, def: Int): Int =
+        WeConfig.dGetString(key, "")?.trim()?.toIntOrNull() ?: def
+}
@@ -0,0 +1,148 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import android.os.Process
+import moe.ouom.wekit.config.WeConfig
+import moe.ouom.wekit.constants.Constants
+import moe.ouom.wekit.util.io.PathTool
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.File
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * 请求链路追踪
+ * 每个 dispatch 的 NetScene 分配一个 traceId，记录 dispatch、请求拦截、网络等待、响应篡改、原回调五段耗时
+ * span 写入固定大小的环形缓冲，写满后覆盖最旧的；导出为 Chrome / Perfetto 可直接打开的 trace JSON
+ * 只在开启 [Constants.PrekPkgTrace] 时记录
+ */
+object PkgTracer {
+    private const val DIR_NAME = "pkg_trace"
+    private const val CAPACITY = 1 shl 14
+
+    const val DISPATCH = "dispatch"
+    const val REQUEST_TAMPER = "request_tamper"
+    const val NETWORK = "network"
+    const val RESPONSE_TAMPER = "response_tamper"
+    const val CALLBACK = "callback"
+
+    /**
+     * @param async 跨线程的 span（网络等待），导出为按 traceId 关联的异步事件
+     */
+    class Span(
+        val name: String,
+        val traceId: Long,
+        val cgiId: Int,
+        val uri: String,
+        val startNanos: Long,
+        val endNanos: Long,
+        val async: Boolean,
+        val tid: Long,
+        val threadName: String
+    )
+
+    private val nextId = AtomicLong()
+    private val cursor = AtomicLong()
+    private val slots = AtomicReferenceArray<Span>(CAPACITY)
+
+    val enabled: Boolean
+        get() = WeConfig.dGetBoolean(Constants.PrekPkgTrace)
+
+    /**
+     * 0 表示不追踪
+     */
+    fun newTraceId(): Long = nextId.incrementAndGet()
+
+    /**
+     * 记录当前线程上的一段耗时
+     */
+    fun span(name: String, traceId: Long, cgiId: Int, uri: String, startNanos: Long, endNanos: Long) {
+        add(name, traceId, cgiId, uri, startNanos, endNanos, false)
+    }
+
+    /**
+     * 记录开始与结束不在同一线程的一段耗时
+     */
+    fun asyncSpan(name: String, traceId: Long, cgiId: Int, uri: String, startNanos: Long, endNanos: Long) {
+        add(name, traceId, cgiId, uri, startNanos, endNanos, true)
+    }
+
+    private fun add(name: String, traceId: Long, cgiId: Int, uri: String, start: Long, end: Long, async: Boolean) {
+        val t = Thread.currentThread()
+        val span = Span(name, traceId, cgiId, uri, start, end, async, t.id, t.name)
+        slots.set((cursor.getAndIncrement() and (CAPACITY - 1).toLong()).toInt(), span)
+    }
+
+    /**
+     * 缓冲中的 span 数量
+     */
+    fun size(): Int = minOf(cursor.get(), CAPACITY.toLong()).toInt()
+
+    fun clear() {
+        for (i in 0 until CAPACITY) slots.set(i, null)
+        cursor.set(0)
+    }
+
+    private fun snapshot(): List<Span> {
+        val list = ArrayList<Span>(size())
+        for (i in 0 until CAPACITY) slots.get(i)?.let { list.add(it) }
+        list.sortBy { it.startNanos }
+        return list
+    }
+
+    /**
+     * 导出为 Chrome trace event 格式，返回写入的文件
+     * 同步 span 为 "X" 事件，网络等待为以 traceId 为 id 的 "b"/"e" 异步事件，时间单位为微秒
+     */
+    fun export(): File {
+        val pid = Process.myPid()
+        val events = JSONArray()
+        val threads = HashMap<Long, String>()
+        for (s in snapshot()) {
+            val args = JSONObject()
+                .put("traceId", s.traceId)
+                .put("cgiId", s.cgiId)
+                .put("uri", s.uri)
+            val ts = s.startNanos / 1000.0
+            if (s.async) {
+                val id = "0x" + java.lang.Long.toHexString(s.traceId)
+                events.put(event(s.name, "b", ts, pid, s.tid).put("id", id).put("args", args))
+                events.put(event(s.name, "e", s.endNanos / 1000.0, pid, s.tid).put("id", id))
+            } else {
+                events.put(event(s.name, "X", ts, pid, s.tid)
+                    .put("dur", (s.endNanos - s.startNanos) / 1000.0)
+                    .put("args", args))
+            }
+            threads[s.tid] = s.threadName
+        }
+        for ((tid, name) in threads) {
+            events.put(JSONObject()
+                .put("name", "thread_name")
+                .put("ph", "M")
+                .put("pid", pid)
+                .put("tid", tid)
+                .put("args", JSONObject().put("name", name)))
+        }
+        val root = JSONObject()
+            .put("traceEvents", events)
+            .put("displayTimeUnit", "ms")
+
+        val dir = File(PathTool.getModuleDataPath(), DIR_NAME)
+        dir.mkdirs()
+        val name = SimpleDateFormat("yyyyMMdd_HHmmss", Locale.ROOT).format(Date())
+        val file = File(dir, "trace_$name.json")
+        file.writeText(root.toString())
+        return file
+    }
+
+    private fun event(name: String, ph: String, ts: Double, pid: Int, tid: Long): JSONObject = JSONObject()
+        .put("name", name)
+        .put("cat", "wepkg")
+        .put("ph", ph)
+        .put("ts", ts)
+        .put("pid", pid)
+        .put("tid", tid)
+}
@@ -0,0 +1,131 @@
+package moe.ouom.wekit.hooks.sdk.protocol
+
+import moe.ouom.wekit.util.ProtoPlan
+import moe.ouom.wekit.util.ProtoSchema
+import moe.ouom.wekit.util.common.SyncUtils
+import moe.ouom.wekit.util.io.PathTool
+import moe.ouom.wekit.util.log.WeLogger
+import org.json.JSONObject
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 按 CGI 推断并持久化请求 / 响应的消息结构
+ * 只观察 [CgiClassTable] 中的 CGI，结构稳定后降低采样频率；
+ * 稳定的结构会编译为 [ProtoPlan]，通过 PacketContext.plan 供拦截器按字段名快速读写
+ *
+ * 结构保存在 WeKit/proto_schema/{cgiId}_req.json / _resp.json，可直接编辑其中的 name 字段为字段命名
+ */
+object ProtoSchemaRegistry {
+    private const val TAG = "ProtoSchemaRegistry"
+    private const val DIR_NAME = "proto_schema"
+    private const val SAVE_DELAY_MS = 15_000L
+
+    // 稳定后每 N 个数据包抽样一次，用于发现版本更新带来的结构变化
+    private const val STABLE_SAMPLE_INTERVAL = 64
+
+    private class Entry(val schema: ProtoSchema) {
+        val counter = AtomicInteger()
+        @Volatile var plan: ProtoPlan? = null
+        @Volatile var planVersion = -1
+        @Volatile var dirty = false
+    }
+
+    private val entries = ConcurrentHashMap<Long, Entry>()
+    private val savePending = AtomicBoolean(false)
+
+    private fun key(cgiId: Int, isRequest: Boolean): Long =
+        (cgiId.toLong() shl 1) or (if (isRequest) 1L else 0L)
+
+    private fun fileOf(cgiId: Int, isRequest: Boolean): File =
+        File(PathTool.getModuleDataPath() + "/" + DIR_NAME, "${cgiId}_${if (isRequest) "req" else "resp"}.json")
+
+    private fun entry(cgiId: Int, isRequest: Boolean): Entry =
+        entries.getOrPut(key(cgiId, isRequest)) { Entry(load(cgiId, isRequest)) }
+
+    private fun load(cgiId: Int, isRequest: Boolean): ProtoSchema {
+        try {
+            val file = fileOf(cgiId, isRequest)
+            if (file.exists()) return ProtoSchema.fromJSON(JSONObject(file.readText()))
+        } catch (e: Exception) {
+            WeLogger.w(TAG, "load schema failed: cgi=$cgiId, ${e.message}")
+        }
+        return ProtoSchema()
+    }
+
+    /**
+     * 观察一个数据包，由 [WePkgManager] 在观察者后台线程上调用
+     */
+    fun observe(cgiId: Int, isRequest: Boolean, bytes: ByteArray) {
+        if (!CgiClassTable.contains(cgiId)) return
+        val e = entry(cgiId, isRequest)
+        if (e.schema.isStable && e.counter.incrementAndGet() % STABLE_SAMPLE_INTERVAL != 0) return
+
+        if (e.schema.observe(bytes)) {
+            e.dirty = true
+            scheduleSave()
+        } else if (e.schema.samples % ProtoSchema.STABLE_SAMPLES == 0) {
+            // 样本计数也需要定期落盘，避免每次启动都重新积累
+            e.dirty = true
+            scheduleSave()
+        }
+    }
+
+    /**
+     * 获取已稳定的编解码计划，结构尚未加载或尚未稳定时返回 null
+     * 只读取内存中已有的结构，不触发读盘，可在网络线程上调用
+     */
+    fun getPlan(cgiId: Int, isRequest: Boolean): ProtoPlan? {
+        val e = entries[key(cgiId, isRequest)] ?: return null
+        if (!e.schema.isStable) return null
+        val version = e.schema.version
+        var plan = e.plan
+        if (plan == null || e.planVersion != version) {
+            plan = e.schema.compile()
+            e.plan = plan
+            e.planVersion = version
+        }
+        return plan
+    }
+
+    fun getSchema(cgiId: Int, isRequest: Boolean): ProtoSchema = entry(cgiId, isRequest).schema
+
+    /**
+     * 为字段路径命名，例如 setFieldName(522, true, "2/1/1", "toUser")
+     */
+    fun setFieldName(cgiId: Int, isRequest: Boolean, path: String, name: String?): Boolean {
+        val e = entry(cgiId, isRequest)
+        if (!e.schema.setName(path, name)) return false
+        e.dirty = true
+        scheduleSave()
+        return true
+    }
+
+    private fun scheduleSave() {
+        if (!savePending.compareAndSet(false, true)) return
+        SyncUtils.postDelayed(SAVE_DELAY_MS) {
+            SyncUtils.async {
+                savePending.set(false)
+                saveAll()
+            }
+        }
+    }
+
+    private fun saveAll() {
+        for ((key, e) in entries) {
+            if (!e.dirty) continue
+            e.dirty = false
+            val cgiId = (key shr 1).toInt()
+            val isRequest = (key and 1L) == 1L
+            try {
+                val file = fileOf(cgiId, isRequest)
+                file.parentFile?.mkdirs()
+                file.writeText(e.schema.toJSON().toString(2))
+            } catch (ex: Exception) {
+                WeLogger.w(TAG, "save schema failed: cgi=$cgiId, ${ex.message}")
+            }
+        }
+    }
+}
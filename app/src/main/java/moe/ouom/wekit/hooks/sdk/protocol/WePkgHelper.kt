@@ -1,27 +1,36 @@
 package moe.ouom.wekit.hooks.sdk.protocol
 
 import android.annotation.SuppressLint
-import android.os.Handler
-import android.os.Looper
 import de.robv.android.xposed.XposedHelpers
+import kotlinx.coroutines.future.await
 import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.dsl.dexMethod
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IDexFind
+import moe.ouom.wekit.host.HostInfo
 import moe.ouom.wekit.hooks.core.annotation.HookItem
 import moe.ouom.wekit.hooks.sdk.protocol.intf.WeReqCallback
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiBatchItem
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiBatchResult
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiException
+import moe.ouom.wekit.hooks.sdk.protocol.model.CgiResponse
 import moe.ouom.wekit.util.WeProtoData
+import moe.ouom.wekit.util.codegen.CallbackClassMaker
+import moe.ouom.wekit.util.codegen.ICallbackHandler
 import moe.ouom.wekit.util.Initiator.loadClass
 import moe.ouom.wekit.util.ProtoJsonBuilder
+import moe.ouom.wekit.util.common.IntObjectMap
+import moe.ouom.wekit.util.common.SyncUtils
 import moe.ouom.wekit.util.log.WeLogger
 import org.json.JSONObject
 import org.luckypray.dexkit.DexKitBridge
 import org.luckypray.dexkit.query.enums.OpCodeMatchType
 import org.luckypray.dexkit.query.matchers.base.IntRange
-import java.lang.reflect.InvocationHandler
-import java.lang.reflect.Method
+import java.io.File
 import java.lang.reflect.Modifier
-import java.lang.reflect.Proxy
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicBoolean
 
 @HookItem(path = "protocol/通用发包服务")
 class WePkgHelper : ApiHookItem(), IDexFind {
@@ -51,7 +60,12 @@ class WePkgHelper : ApiHookItem(), IDexFind {
     private val dexMethodNetDispatch by dexMethod()
 
     private var classLoader: ClassLoader? = null
-    private val cgiReqClassMap = mutableMapOf<Int, Class<*>>()
+
+    // 回调包装类在首次发包时生成一次
+    private val sceneEndCallbackClass by lazy { CallbackClassMaker.get(dexClsIOnSceneEnd.clazz) }
+    private val netCallbackClass by lazy { CallbackClassMaker.get(dexClsCallbackIface.clazz) }
+    // 单独定位的请求类，优先于 CgiClassTable
+    private val cgiReqClassOverrides = IntObjectMap<Class<*>>()
 
     private val signers = listOf(
         NewSendMsgSigner(),
@@ -71,11 +85,20 @@ class WePkgHelper : ApiHookItem(), IDexFind {
         INSTANCE = this
 
         // 映射业务请求类
-        cgiReqClassMap[522] = dexClsNewSendMsgReq.clazz
-        cgiReqClassMap[681] = dexClsOplogReq.clazz
+        cgiReqClassOverrides.replaceWith(mapOf(
+            522 to dexClsNewSendMsgReq.clazz,
+            681 to dexClsOplogReq.clazz
+        ))
 
+        WeLogger.i(TAG, "WePkgHelper 核心组件已加载，CGI 请求表 ${CgiClassTable.size()} 项")
+    }
 
-        WeLogger.i(TAG, "WePkgHelper 核心组件已加载")
+    override fun loadFromCache(cache: Map<String, Any>) {
+        super.loadFromCache(cache)
+        // 旧版本缓存没有该表或格式不符时触发重新扫描
+        if (!CgiClassTable.load(cache[CgiClassTable.CACHE_KEY] as? String)) {
+            throw IllegalStateException("Cache incomplete for ${javaClass.simpleName}: missing ${CgiClassTable.CACHE_KEY}")
+        }
     }
 
     @SuppressLint("NonUniqueDexKitData")
@@ -177,6 +200,20 @@ class WePkgHelper : ApiHookItem(), IDexFind {
             }
         }
 
+        // 从各 NetScene 填充 ConfigBuilder 的代码中提取 CGI 请求表，扫描失败时保存空表，发包退回通用 RawReq
+        val cgiSpecs = try {
+            CgiClassScanner.scan(
+                dexKit,
+                dexClsConfigBuilder.getDescriptorString() ?: "",
+                File(HostInfo.getApplication().packageCodePath)
+            )
+        } catch (e: Throwable) {
+            WeLogger.e(TAG, "CGI 请求表扫描失败", e)
+            emptyList()
+        }
+        CgiClassTable.load(cgiSpecs)
+        descriptors[CgiClassTable.CACHE_KEY] = CgiClassTable.encode(cgiSpecs)
+
         // 查找响应 GenericResp
         dexClsGenericResp.find(dexKit, descriptors) {
             matcher {
@@ -391,14 +428,108 @@ class WePkgHelper : ApiHookItem(), IDexFind {
         return false
     }
 
-    fun sendCgi(uri: String, cgiId: Int, funcId: Int, routeId: Int, jsonPayload: String, dslBlock: WeReqDsl.() -> Unit) {
+    fun sendCgi(
+        uri: String, cgiId: Int, funcId: Int, routeId: Int, jsonPayload: String,
+        priority: Int = PkgSendScheduler.PRIORITY_NORMAL, dslBlock: WeReqDsl.() -> Unit
+    ): Boolean {
         val dsl = WeReqDsl().apply(dslBlock)
-        sendCgi(uri, cgiId, funcId, routeId, jsonPayload, dsl as WeReqCallback)
+        return sendCgi(uri, cgiId, funcId, routeId, jsonPayload, dsl as WeReqCallback, priority)
+    }
+
+    /**
+     * 构造并发送请求，由 [PkgSendScheduler] 按 routeId 排队执行，callback 在主线程回调
+     * 请求类取自 [CgiClassTable]，表中没有、类已不存在或 parseFrom 失败时使用通用 RawReq；
+     * funcId / routeId 按传入值发送，传 [CgiClassTable.FROM_TABLE] 时取表中的值
+     *
+     * @param priority 同一路由内数值越大越先发送
+     * @return 是否进入发送队列；队列已满被拒绝时 callback 会收到 onFail(-1, -2, 原因)
+     */
+    fun sendCgi(
+        uri: String, cgiId: Int, funcId: Int, routeId: Int, jsonPayload: String,
+        callback: WeReqCallback? = null, priority: Int = PkgSendScheduler.PRIORITY_NORMAL
+    ): Boolean {
+        val call = CgiCall<CgiResponse>(CgiCall.MAIN)
+        CgiCall.deliver(call, callback)
+        return enqueue(uri, cgiId, funcId, routeId, jsonPayload, priority, call)
+    }
+
+    /**
+     * sendCgi 的 CompletableFuture 版本
+     * 队列已满、构造失败或服务器返回错误时以 [CgiException] 完成，超时以 TimeoutException 完成；
+     * cancel() 后丢弃回包，原生模式下同时注销队列回调，尚未发出的请求不再发送
+     *
+     * @param timeoutMs 从调用开始计时，0 表示不限
+     * @param executor 解码回包并完成 future 的线程，默认后台线程池，需要主线程时传入 [CgiCall.MAIN]
+     */
+    fun sendCgiAsync(
+        uri: String, cgiId: Int, funcId: Int, routeId: Int, jsonPayload: String,
+        timeoutMs: Long = 0, executor: Executor = CgiCall.BACKGROUND, priority: Int = PkgSendScheduler.PRIORITY_NORMAL
+    ): CompletableFuture<CgiResponse> {
+        val call = CgiCall<CgiResponse>(executor)
+        call.timeout(timeoutMs)
+        enqueue(uri, cgiId, funcId, routeId, jsonPayload, priority, call)
+        return call
+    }
+
+    /**
+     * sendCgi 的挂起版本，协程被取消时等同于 cancel()
+     */
+    suspend fun sendCgiAwait(
+        uri: String, cgiId: Int, funcId: Int, routeId: Int, jsonPayload: String,
+        timeoutMs: Long = 0, executor: Executor = CgiCall.BACKGROUND, priority: Int = PkgSendScheduler.PRIORITY_NORMAL
+    ): CgiResponse = sendCgiAsync(uri, cgiId, funcId, routeId, jsonPayload, timeoutMs, executor, priority).await()
+
+    /**
+     * 批量发送，最多 maxInFlight 个请求同时在途，每个请求完成后立即发出下一个
+     * 返回的 future 在全部请求结束后按输入顺序给出每个请求的结果，单个请求失败不影响其它请求；
+     * cancel() 会取消在途请求，未发出的请求以 CancellationException 记录
+     *
+     * @param itemTimeoutMs 单个请求的超时，0 表示不限
+     * @param onItem 每个请求结束时调用，在 executor 上执行
+     */
+    fun sendCgiBatch(
+        items: List<CgiBatchItem>,
+        maxInFlight: Int = 4,
+        itemTimeoutMs: Long = 15_000,
+        executor: Executor = CgiCall.BACKGROUND,
+        priority: Int = PkgSendScheduler.PRIORITY_NORMAL,
+        onItem: ((CgiBatchResult) -> Unit)? = null
+    ): CompletableFuture<List<CgiBatchResult>> {
+        val batch = CgiBatch(items, maxInFlight, { item ->
+            sendCgiAsync(item.uri, item.cgiId, item.funcId, item.routeId, item.jsonPayload, itemTimeoutMs, executor, priority)
+        }, onItem, CgiCall(executor))
+        batch.start()
+        return batch.future
     }
 
-    fun sendCgi(uri: String, cgiId: Int, funcId: Int, routeId: Int, jsonPayload: String, callback: WeReqCallback? = null) {
-        val loader = classLoader ?: return
-        Thread {
+    /**
+     * sendCgiBatch 的挂起版本，协程被取消时等同于 cancel()
+     */
+    suspend fun sendCgiBatchAwait(
+        items: List<CgiBatchItem>,
+        maxInFlight: Int = 4,
+        itemTimeoutMs: Long = 15_000,
+        executor: Executor = CgiCall.BACKGROUND,
+        priority: Int = PkgSendScheduler.PRIORITY_NORMAL,
+        onItem: ((CgiBatchResult) -> Unit)? = null
+    ): List<CgiBatchResult> = sendCgiBatch(items, maxInFlight, itemTimeoutMs, executor, priority, onItem).await()
+
+    private fun enqueue(
+        uri: String, cgiId: Int, funcId: Int, routeId: Int, jsonPayload: String,
+        priority: Int, call: CgiCall<CgiResponse>
+    ): Boolean {
+        val loader = classLoader
+        if (loader == null) {
+            call.failOn(CgiException(-1, CgiException.CODE_ENGINE, "WePkgHelper 未初始化"))
+            return false
+        }
+        // 调用方要求时使用 CGI 请求表中的 funcId / routeId
+        val spec = if (funcId == CgiClassTable.FROM_TABLE || routeId == CgiClassTable.FROM_TABLE) CgiClassTable.get(cgiId) else null
+        val fid = if (funcId == CgiClassTable.FROM_TABLE) spec?.funcId ?: 0 else funcId
+        val rid = if (routeId == CgiClassTable.FROM_TABLE) spec?.routeId ?: 0 else routeId
+        return PkgSendScheduler.submit(cgiId, rid, priority, {
+            // 排队期间已超时或被取消
+            if (call.isDone) return@submit
             try {
                 var jsonObj = JSONObject(jsonPayload)
                 var nativeNetScene: Any? = null
@@ -416,37 +547,12 @@ class WePkgHelper : ApiHookItem(), IDexFind {
                 // 发送逻辑
                 if (nativeNetScene != null) {
                     val netQueue = XposedHelpers.callStaticMethod(dexClsKernel.clazz, dexMethodGetNetQueue.method.name)
-                    val cgiType = XposedHelpers.callMethod(nativeNetScene, "getType") as Int
-
-                    val callbackProxy = Proxy.newProxyInstance(
-                        loader,
-                        arrayOf(dexClsIOnSceneEnd.clazz)
-                    ) { proxy, method, args ->
-                        when (method.name) {
-                            "hashCode" -> return@newProxyInstance System.identityHashCode(proxy)
-                            "equals" -> return@newProxyInstance proxy === args?.get(0)
-                            "toString" -> return@newProxyInstance "WeKitNativeCallback@${Integer.toHexString(System.identityHashCode(proxy))}"
-                        }
-
-                        if (method.name == "onSceneEnd" && args != null) {
-                            try {
-                                XposedHelpers.callMethod(netQueue, "q", cgiType, proxy)
-                            } catch (e: Throwable) {
-                                WeLogger.w(TAG, "注销原生回调失败: ${e.message}")
-                            }
-
-                            NativeResponseHandler(cgiId, callback, successAction).invoke(
-                                proxy,
-                                method,
-                                args
-                            )
-                        }
-
-                        return@newProxyInstance null
-                    }
 
                     // 注册并入队
-                    XposedHelpers.callMethod(netQueue, "a", cgiType, callbackProxy)
+                    val unregister = watchSceneEnd(netQueue, nativeNetScene) { args ->
+                        NativeResponseHandler(call, successAction).onSceneEnd(args)
+                    }
+                    call.onAbandon(unregister)
                     XposedHelpers.callMethod(netQueue, "g", nativeNetScene)
 
                     WeLogger.i(TAG, "[$cgiId] 原生模式：已注册监听并入队发送")
@@ -454,15 +560,28 @@ class WePkgHelper : ApiHookItem(), IDexFind {
                     // 通用发包模式
                     val bytes = ProtoJsonBuilder.makeBytes(jsonObj)
 
-                    val finalReqObject: Any
-
-                    val specificReqCls = cgiReqClassMap[cgiId]
+                    var finalReqObject: Any? = null
 
-                    if (specificReqCls != null) {
-                        finalReqObject = XposedHelpers.newInstance(specificReqCls)
+                    val overrideCls = cgiReqClassOverrides.get(cgiId)
+                    if (overrideCls != null) {
+                        finalReqObject = XposedHelpers.newInstance(overrideCls)
                         XposedHelpers.callMethod(finalReqObject, "parseFrom", bytes)
-                        WeLogger.i(TAG, "[$cgiId] 使用业务特定类: ${specificReqCls.name}")
+                        WeLogger.i(TAG, "[$cgiId] 使用业务特定类: ${overrideCls.name}")
                     } else {
+                        // 扫描得到的类可能与负载不符，解析失败时退回 RawReq
+                        val tableCls = CgiClassTable.requestClass(cgiId, loader)
+                        if (tableCls != null) {
+                            try {
+                                val req = XposedHelpers.newInstance(tableCls)
+                                XposedHelpers.callMethod(req, "parseFrom", bytes)
+                                finalReqObject = req
+                                WeLogger.i(TAG, "[$cgiId] 使用业务特定类: ${tableCls.name}")
+                            } catch (e: Throwable) {
+                                WeLogger.w(TAG, "[$cgiId] ${tableCls.name} 解析失败，改用通用原始类: ${e.message}")
+                            }
+                        }
+                    }
+                    if (finalReqObject == null) {
                         val rawCls = dexClsRawReq.clazz
                         finalReqObject = XposedHelpers.newInstance(rawCls, bytes)
                         WeLogger.i(TAG, "[$cgiId] 使用通用原始类: ${rawCls.name}")
@@ -479,16 +598,15 @@ class WePkgHelper : ApiHookItem(), IDexFind {
                     )
                     XposedHelpers.setObjectField(builder, "c", uri)
                     XposedHelpers.setIntField(builder, "d", cgiId)
-                    XposedHelpers.setIntField(builder, "e", funcId)
-                    XposedHelpers.setIntField(builder, "f", routeId)
+                    XposedHelpers.setIntField(builder, "e", fid)
+                    XposedHelpers.setIntField(builder, "f", rid)
                     XposedHelpers.setIntField(builder, "l", 1)
                     XposedHelpers.setObjectField(builder, "n", bytes)
 
                     val rr = XposedHelpers.callMethod(builder, "a")
-                    val cbProxy = Proxy.newProxyInstance(
-                        loader,
-                        arrayOf(dexClsCallbackIface.clazz),
-                        ResponseHandler(cgiId, callback, successAction)
+                    val cbProxy = netCallbackClass.wrap(
+                        null,
+                        ResponseHandler(netCallbackClass.indexOf("callback"), call, successAction)
                     )
 
                     val methodD = XposedHelpers.findMethodExact(
@@ -505,85 +623,111 @@ class WePkgHelper : ApiHookItem(), IDexFind {
 
             } catch (e: Throwable) {
                 WeLogger.e(TAG, "[$cgiId] 引擎异常", e)
-                Handler(Looper.getMainLooper()).post { callback?.onFail(-1, -1, e.message ?: "") }
+                call.failOn(CgiException(-1, CgiException.CODE_ENGINE, e.message ?: "", e))
             }
-        }.start()
+        }) { reason ->
+            call.failOn(CgiException(-1, CgiException.CODE_REJECTED, reason))
+        }
+    }
+
+    /**
+     * 在 NetSceneQueue 上监听 netScene 的 onSceneEnd，触发一次后自动注销
+     * 队列回调按 cgi 类型注册，同类型的其它 NetScene 结束时也会调用，这里只处理 netScene 本身
+     *
+     * @param onEnd 参数为 onSceneEnd(int errType, int errCode, String errMsg, NetScene) 的参数
+     * @return 注销监听，已触发时不做任何事
+     */
+    internal fun watchSceneEnd(netQueue: Any, netScene: Any, onEnd: (Array<Any?>) -> Unit): () -> Unit {
+        val cgiType = XposedHelpers.callMethod(netScene, "getType") as Int
+        val sceneEndIndex = sceneEndCallbackClass.indexOf("onSceneEnd")
+        val fired = AtomicBoolean()
+        val callbackProxy = sceneEndCallbackClass.wrap(null) { self, method, args ->
+            if (method == sceneEndIndex && args[3] === netScene && fired.compareAndSet(false, true)) {
+                unregisterSceneEnd(netQueue, cgiType, self)
+                onEnd(args)
+            }
+            null
+        }
+        XposedHelpers.callMethod(netQueue, "a", cgiType, callbackProxy)
+        return {
+            if (fired.compareAndSet(false, true)) unregisterSceneEnd(netQueue, cgiType, callbackProxy)
+        }
+    }
+
+    private fun unregisterSceneEnd(netQueue: Any, cgiType: Int, callback: Any) {
+        try {
+            XposedHelpers.callMethod(netQueue, "q", cgiType, callback)
+        } catch (e: Throwable) {
+            WeLogger.w(TAG, "注销原生回调失败: ${e.message}")
+        }
     }
 
     // 处理原生 NetScene 的回调
     private class NativeResponseHandler(
-        val cgiId: Int,
-        val userCallback: WeReqCallback?,
+        val call: CgiCall<CgiResponse>,
         val successAction: (() -> Unit)?
-    ) : InvocationHandler {
-        override fun invoke(proxy: Any, method: Method, args: Array<out Any>?): Any? {
-            if (method.declaringClass == Any::class.java) return null
-
-            // void onSceneEnd(int errType, int errCode, String errMsg, m1 netScene);
-            if (method.name == "onSceneEnd" && args != null) {
-                val errType = args[0] as Int
-                val errCode = args[1] as Int
-                val errMsg = args[2] as? String ?: "null"
-                val netScene = args[3]
-
-                Handler(Looper.getMainLooper()).post {
-                    if (errType == 0 && errCode == 0) {
-                        successAction?.invoke()
-
-                        var bytes: ByteArray? = null
-                        var json = "{}"
-
-                        try {
-                            val loader = netScene.javaClass.classLoader
-                            val v0Class = XposedHelpers.findClass("com.tencent.mm.network.v0", loader)
-                            val rrField = netScene.javaClass.declaredFields.firstOrNull {
-                                v0Class.isAssignableFrom(it.type)
-                            }
+    ) {
+        // void onSceneEnd(int errType, int errCode, String errMsg, m1 netScene);
+        fun onSceneEnd(args: Array<Any?>) {
+            val errType = args[0] as Int
+            val errCode = args[1] as Int
+            val errMsg = args[2] as? String ?: "null"
+            val netScene = args[3]!!
+
+            if (errType == 0 && errCode == 0) {
+                successAction?.let { action -> SyncUtils.runOnUiThread { action() } }
+                call.completeOn {
+                    var bytes: ByteArray? = null
+                    var json = "{}"
+
+                    try {
+                        val loader = netScene.javaClass.classLoader
+                        val v0Class = XposedHelpers.findClass("com.tencent.mm.network.v0", loader)
+                        val rrField = netScene.javaClass.declaredFields.firstOrNull {
+                            v0Class.isAssignableFrom(it.type)
+                        }
 
-                            val rrObj = if (rrField != null) {
-                                rrField.isAccessible = true
-                                rrField.get(netScene)
-                            } else {
-                                XposedHelpers.getObjectField(netScene, "d")
-                            }
+                        val rrObj = if (rrField != null) {
+                            rrField.isAccessible = true
+                            rrField.get(netScene)
+                        } else {
+                            XposedHelpers.getObjectField(netScene, "d")
+                        }
 
-                            if (rrObj != null) {
-                                val respWrapper = XposedHelpers.getObjectField(rrObj, "b")
-                                val protoObj = XposedHelpers.getObjectField(respWrapper, "a")
-                                bytes = XposedHelpers.callMethod(protoObj, "toByteArray") as? ByteArray
-                                if (bytes != null) {
-                                    json = WeProtoData().also { it.fromBytes(bytes) }.toJSON().toString()
-                                }
+                        if (rrObj != null) {
+                            val respWrapper = XposedHelpers.getObjectField(rrObj, "b")
+                            val protoObj = XposedHelpers.getObjectField(respWrapper, "a")
+                            bytes = XposedHelpers.callMethod(protoObj, "toByteArray") as? ByteArray
+                            if (bytes != null) {
+                                json = WeProtoData().also { it.fromBytes(bytes) }.toJSON().toString()
                             }
-                        } catch (e: Throwable) {
-                            WeLogger.w("NativeResponseHandler", "提取回包 Bytes 失败: ${e.message}")
                         }
-
-                        userCallback?.onSuccess(json, bytes)
-                    } else {
-                        userCallback?.onFail(errType, errCode, errMsg)
+                    } catch (e: Throwable) {
+                        WeLogger.w("NativeResponseHandler", "提取回包 Bytes 失败: ${e.message}")
                     }
+
+                    CgiResponse(json, bytes)
                 }
+            } else {
+                call.failOn(CgiException(errType, errCode, errMsg))
             }
-            return null
         }
     }
 
     // 处理通用发包的回调
     private class ResponseHandler(
-        val cgiId: Int,
-        val userCallback: WeReqCallback?,
+        val callbackIndex: Int,
+        val call: CgiCall<CgiResponse>,
         val successAction: (() -> Unit)?
-    ) : InvocationHandler {
-        override fun invoke(proxy: Any, method: Method, args: Array<out Any>?): Any? {
-            if (method.declaringClass == Any::class.java) return null
-            if (method.name == "callback" && args != null) {
+    ) : ICallbackHandler {
+        override fun onCall(self: Any, method: Int, args: Array<Any?>): Any? {
+            if (method == callbackIndex) {
                 val errType = args[0] as Int
                 val errCode = args[1] as Int
                 val reqResp = args[3]
-                Handler(Looper.getMainLooper()).post {
-                    if (errType == 0 && errCode == 0) {
-                        successAction?.invoke()
+                if (errType == 0 && errCode == 0) {
+                    successAction?.let { action -> SyncUtils.runOnUiThread { action() } }
+                    call.completeOn {
                         val respWrapper = XposedHelpers.getObjectField(reqResp, "b")
                         val yd = XposedHelpers.getObjectField(respWrapper, "a")
                         val bytes = try {
@@ -595,10 +739,10 @@ class WePkgHelper : ApiHookItem(), IDexFind {
                         val json =
                             if (bytes != null) WeProtoData().also { it.fromBytes(bytes) }.toJSON()
                                 .toString() else "{}"
-                        userCallback?.onSuccess(json, bytes)
-                    } else {
-                        userCallback?.onFail(errType, errCode, args[2] as? String ?: "null (No Error Message)")
+                        CgiResponse(json, bytes)
                     }
+                } else {
+                    call.failOn(CgiException(errType, errCode, args[2] as? String ?: "null (No Error Message)"))
                 }
                 return 0
             }
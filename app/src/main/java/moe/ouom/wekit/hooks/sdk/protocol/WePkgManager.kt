@@ -2,46 +2,273 @@ package moe.ouom.wekit.hooks.sdk.protocol
 
 import moe.ouom.wekit.config.WeConfig
 import moe.ouom.wekit.constants.Constants
+import moe.ouom.wekit.hooks.sdk.protocol.capture.PacketCapture
 import moe.ouom.wekit.hooks.sdk.protocol.intf.IWePkgInterceptor
+import moe.ouom.wekit.hooks.sdk.protocol.intf.IWePkgObserver
+import moe.ouom.wekit.hooks.sdk.protocol.model.PacketContext
+import moe.ouom.wekit.hooks.sdk.protocol.model.PacketSnapshot
+import moe.ouom.wekit.util.ProtoDiff
 import moe.ouom.wekit.util.WeProtoData
+import moe.ouom.wekit.util.common.SyncUtils
+import moe.ouom.wekit.util.common.Toasts
+import moe.ouom.wekit.util.log.ChunkedLogWriter
 import moe.ouom.wekit.util.log.WeLogger
-import java.util.concurrent.CopyOnWriteArrayList
 
 object WePkgManager {
-    private val listeners = CopyOnWriteArrayList<IWePkgInterceptor>()
+    private const val DEFAULT_LOG_MAX_DEPTH = 32
+    private const val DEFAULT_LOG_MAX_CHARS = 800_000
+    private const val DEFAULT_LOG_MAX_HEX_BYTES = 512
+    private const val OBSERVER_QUEUE_CAPACITY = 1024
+    private const val DEFAULT_BUDGET_MS = 50
+    private const val DEFAULT_COOLDOWN_SEC = 60
 
-    fun addInterceptor(interceptor: IWePkgInterceptor) = listeners.addIfAbsent(interceptor)
+    private val routes = ArrayList<PkgRoute>()
 
-    fun removeInterceptor(interceptor: IWePkgInterceptor) = listeners.remove(interceptor)
+    @Volatile
+    private var table = PkgRouteTable.NONE
 
-    internal fun handleRequestTamper(uri: String, cgiId: Int, reqBytes: ByteArray): ByteArray? {
-        if (WeConfig.dGetBoolean(Constants.PrekVerboseLog)) {
-            val data = WeProtoData()
-            data.fromBytes(reqBytes)
-            WeLogger.logChunkedI("WePkgInterceptor-Request",
-                "Request: $uri, CGI=$cgiId, LEN=${reqBytes.size}, Data=${data.toJSON()}, Stack=${WeLogger.getStackTraceString()}"
-            )
+    // 拦截器耗时预算，-1 表示尚未读取；设置页修改后由 reloadConfig 刷新，避免每个包都解析一次配置
+    @Volatile
+    private var budgetNanos = -1L
+
+    // 详细日志与抓包作为内置观察者在后台线程处理
+    private val observerBus = PkgObserverBus(OBSERVER_QUEUE_CAPACITY) { snapshot ->
+        if (PacketCapture.enabled) PacketCapture.record(snapshot)
+        if (WeConfig.dGetBoolean(Constants.PrekVerboseLog)) logSnapshot(snapshot)
+        // 结构推断的递归合并与首次读盘都在后台线程完成
+        if (WeConfig.dGetBoolean(Constants.PrekProtoSchemaInfer)) {
+            ProtoSchemaRegistry.observe(snapshot.cgiId, snapshot.isRequest, snapshot.originalBytes)
+        }
+    }
+
+    /**
+     * 注册拦截器
+     * cgiIds 与 uriPrefixes 都为 null 时接收全部数据包，否则只接收 cgiId 命中或 URI 以任一前缀开头的数据包；
+     * 传入空数组表示暂不接收任何数据包。已注册的拦截器只更新订阅范围并返回 false
+     */
+    fun addInterceptor(
+        interceptor: IWePkgInterceptor,
+        cgiIds: IntArray? = null,
+        uriPrefixes: Array<String>? = null
+    ): Boolean = synchronized(routes) {
+        val index = routes.indexOfFirst { it.interceptor === interceptor }
+        if (index >= 0) {
+            routes[index] = PkgRoute(interceptor, cgiIds, uriPrefixes, routes[index].breaker)
+        } else {
+            routes.add(PkgRoute(interceptor, cgiIds, uriPrefixes))
+        }
+        table = PkgRouteTable(routes)
+        index < 0
+    }
+
+    /**
+     * 更新已注册拦截器的订阅范围，未注册时不做任何事
+     */
+    fun updateRoute(
+        interceptor: IWePkgInterceptor,
+        cgiIds: IntArray? = null,
+        uriPrefixes: Array<String>? = null
+    ): Boolean = synchronized(routes) {
+        val index = routes.indexOfFirst { it.interceptor === interceptor }
+        if (index < 0) return false
+        routes[index] = PkgRoute(interceptor, cgiIds, uriPrefixes, routes[index].breaker)
+        table = PkgRouteTable(routes)
+        true
+    }
+
+    fun removeInterceptor(interceptor: IWePkgInterceptor): Boolean = synchronized(routes) {
+        if (!routes.removeAll { it.interceptor === interceptor }) return false
+        table = PkgRouteTable(routes)
+        true
+    }
+
+    /**
+     * 各拦截器的耗时与熔断状态
+     */
+    internal fun interceptorHealth(): List<PkgCircuitBreaker.Status> {
+        val now = System.nanoTime()
+        return synchronized(routes) { routes.map { it.breaker } }.map { it.status(now) }
+    }
+
+    /**
+     * 立即恢复所有被熔断的拦截器
+     */
+    internal fun resetBreakers() {
+        synchronized(routes) { routes.map { it.breaker } }.forEach { it.reset() }
+    }
+
+    /**
+     * 注册只读观察者，在后台线程上接收每个数据包经过拦截器链后的快照
+     */
+    fun addObserver(observer: IWePkgObserver): Boolean = observerBus.add(observer)
+
+    fun removeObserver(observer: IWePkgObserver): Boolean = observerBus.remove(observer)
+
+    /**
+     * 观察者队列已满而被丢弃的快照数
+     */
+    val droppedPackets: Long
+        get() = observerBus.droppedCount
+
+    /**
+     * 是否有人需要该数据包的字节内容（拦截器、观察者、统计、抓包、详细日志或结构推断）
+     * 返回 false 时调用方可以跳过序列化
+     */
+    internal fun hasListener(uri: String, cgiId: Int): Boolean {
+        if (table.hasRoute(uri, cgiId)) return true
+        if (observerBus.hasObservers) return true
+        if (PkgMetrics.enabled || PacketCapture.enabled) return true
+        if (WeConfig.dGetBoolean(Constants.PrekVerboseLog)) return true
+        return WeConfig.dGetBoolean(Constants.PrekProtoSchemaInfer) && CgiClassTable.contains(cgiId)
+    }
+
+    internal fun handleRequestTamper(uri: String, cgiId: Int, reqBytes: ByteArray): ByteArray? =
+        runChain(PacketContext(uri, cgiId, true, reqBytes))
+
+    internal fun handleResponseTamper(uri: String, cgiId: Int, respBytes: ByteArray): ByteArray? =
+        runChain(PacketContext(uri, cgiId, false, respBytes))
+
+    /**
+     * 依次交给所有命中的拦截器，每个拦截器都在同一个上下文上修改
+     * 返回修改后的字节，未修改时返回 null；需要时把结果快照投递给观察者
+     */
+    private fun runChain(ctx: PacketContext): ByteArray? {
+        val uri = ctx.uri
+        val cgiId = ctx.cgiId
+        val original = ctx.originalBytes
+
+        val verbose = WeConfig.dGetBoolean(Constants.PrekVerboseLog)
+        val infer = WeConfig.dGetBoolean(Constants.PrekProtoSchemaInfer) && CgiClassTable.contains(cgiId)
+        val observed = verbose || observerBus.hasObservers || PacketCapture.enabled || infer
+        val metrics = PkgMetrics.enabled
+        val chainStart = System.nanoTime()
+        val cached = budgetNanos
+        val budgetNanos = if (cached >= 0) cached else reloadConfig()
+        val timestamp = if (observed) System.currentTimeMillis() else 0L
+        var modifiedBy: MutableList<String>? = null
+        for (route in table.candidates(cgiId)) {
+            if (!route.accepts(uri, cgiId)) continue
+            val listener = route.interceptor
+            val breaker = route.breaker
+            val start = System.nanoTime()
+            // 冷却期内跳过
+            if (breaker.isOpen(start)) continue
+            val version = ctx.version
+            var failed = false
+            try {
+                if (ctx.isRequest) listener.onRequest(ctx) else listener.onResponse(ctx)
+            } catch (e: Throwable) {
+                failed = true
+                WeLogger.e("WePkgManager", "Interceptor failed: ${listener.javaClass.name}, CGI=$cgiId", e)
+            }
+            val end = System.nanoTime()
+            val elapsed = end - start
+            if (metrics) PkgMetrics.recordInterceptor(listener, elapsed)
+            if (breaker.record(elapsed, failed, budgetNanos, end)) onTripped(breaker, cgiId, elapsed, end)
+            if (observed && ctx.version != version) {
+                (modifiedBy ?: ArrayList<String>().also { modifiedBy = it }).add(listener.javaClass.name)
+            }
         }
 
-        for (listener in listeners) {
-            val tampered = listener.onRequest(uri, cgiId, reqBytes)
-            if (tampered != null) return tampered
+        val result = if (ctx.isModified) ctx.bytes else null
+        if (metrics) {
+            PkgMetrics.recordPacket(uri, cgiId, ctx.isRequest, (result ?: original).size, System.nanoTime() - chainStart)
         }
-        return null
+        if (observed) {
+            // 调用栈只能在发包线程上采集，格式化留给后台线程
+            val stack = if (verbose && ctx.isRequest) Thread.currentThread().stackTrace else null
+            observerBus.publish(
+                PacketSnapshot(uri, cgiId, ctx.isRequest, original, result, modifiedBy ?: emptyList(), timestamp, stack)
+            )
+        }
+        return result
     }
 
-    internal fun handleResponseTamper(uri: String, cgiId: Int, respBytes: ByteArray): ByteArray? {
-        if (WeConfig.dGetBoolean(Constants.PrekVerboseLog)) {
-            val data = WeProtoData()
-            data.fromBytes(respBytes)
-            WeLogger.logChunkedI("WePkgInterceptor-Response",
-                "Received: $uri, CGI=$cgiId, LEN=${respBytes.size}, Data=${data.toJSON()}"
+    private fun onTripped(breaker: PkgCircuitBreaker, cgiId: Int, elapsed: Long, now: Long) {
+        breaker.open(now, readIntConfig(Constants.PrekInterceptorCooldownSec, DEFAULT_COOLDOWN_SEC) * 1_000_000_000L)
+        val status = breaker.status(now)
+        WeLogger.w("WePkgManager",
+            "Interceptor bypassed: ${breaker.name}, CGI=$cgiId, last=${elapsed / 1000}us, " +
+                "p99=${status.p99Nanos / 1000}us, failures=${status.failures}, cooldown=${status.bypassRemainingMs}ms"
+        )
+        val simpleName = breaker.name.substringAfterLast('.')
+        SyncUtils.runOnUiThread { Toasts.showToast("拦截器 $simpleName 耗时过长或出错，已暂时跳过") }
+    }
+
+    private fun logSnapshot(s: PacketSnapshot) {
+        val uri = s.uri
+        val cgiId = s.cgiId
+        val original = s.originalBytes
+        val tag = if (s.isRequest) "WePkgInterceptor-Request" else "WePkgInterceptor-Response"
+        val kind = if (s.isRequest) "Request" else "Response"
+        val tampered = s.tamperedBytes
+        val stack = s.stackTrace?.let { WeLogger.getStackTraceString(it) }
+        if (tampered != null) {
+            logDiff(tag,
+                "$kind tampered: $uri, CGI=$cgiId, LEN=${original.size}->${tampered.size}, By=${s.modifiedBy.joinToString(",")}",
+                original, tampered, stack
+            )
+        } else if (s.isRequest) {
+            logPacket(tag, cgiId,
+                "Request: $uri, CGI=$cgiId, LEN=${original.size}, Data=", original,
+                stack?.let { ", Stack=$it" } ?: ""
+            )
+        } else {
+            logPacket(tag, cgiId,
+                "Received: $uri, CGI=$cgiId, LEN=${original.size}, Data=", original
             )
         }
-        for (listener in listeners) {
-            val tampered = listener.onResponse(uri, cgiId, respBytes)
-            if (tampered != null) return tampered
+    }
+
+    /**
+     * 被篡改的数据包只输出与原包的结构化差异，不再输出完整内容；请求附带发包调用栈
+     */
+    private fun logDiff(tag: String, head: String, before: ByteArray, after: ByteArray, stack: String? = null) {
+        ChunkedLogWriter.info(tag).use { out ->
+            out.append(head)
+            try {
+                val changes = ProtoDiff.diff(before, after)
+                out.append(", Changes=${changes.size}\n")
+                ProtoDiff.write(changes, out)
+            } catch (e: Exception) {
+                out.append(", <diff failed: ${e.message}>\n")
+            }
+            if (stack != null) out.append("Stack=").append(stack)
         }
-        return null
     }
-}
\ No newline at end of file
+
+    /**
+     * 将数据包以 JSON 形式直接流式写入 logcat，不构建中间的 JSONObject 和完整字符串
+     */
+    private fun logPacket(tag: String, cgiId: Int, head: String, bytes: ByteArray, tail: String = "") {
+        ChunkedLogWriter.info(tag).use { out ->
+            out.append(head)
+            try {
+                val data = WeProtoData()
+                data.fromBytes(bytes)
+                data.setCgiId(cgiId)
+                data.writeJson(
+                    out,
+                    readIntConfig(Constants.PrekVerboseLogMaxDepth, DEFAULT_LOG_MAX_DEPTH),
+                    readIntConfig(Constants.PrekVerboseLogMaxChars, DEFAULT_LOG_MAX_CHARS),
+                    readIntConfig(Constants.PrekVerboseLogMaxHexBytes, DEFAULT_LOG_MAX_HEX_BYTES)
+                )
+            } catch (e: Exception) {
+                out.append("<parse failed: ${e.message}>")
+            }
+            out.append(tail)
+        }
+    }
+
+    /**
+     * 重新读取拦截器耗时预算，返回新的预算（纳秒）
+     */
+    internal fun reloadConfig(): Long {
+        val nanos = readIntConfig(Constants.PrekInterceptorBudgetMs, DEFAULT_BUDGET_MS).coerceAtLeast(0) * 1_000_000L
+        budgetNanos = nanos
+        return nanos
+    }
+
+    private fun readIntConfig(key: String, def: Int): Int =
+        WeConfig.dGetString(key, "")?.trim()?.toIntOrNull() ?: def
+}
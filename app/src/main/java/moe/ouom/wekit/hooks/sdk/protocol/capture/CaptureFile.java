@@ -0,0 +1,349 @@
+package moe.ouom.wekit.hooks.sdk.protocol.capture;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 内存映射的二进制抓包环形文件
+ * <p>
+ * 数据文件（.dat）在固定大小的数据区中循环追加记录，空间不足时从最旧的记录开始覆盖；
+ * 记录按 8 字节对齐，剩余空间放不下下一条记录时写入填充记录并回到数据区开头：
+ * <pre>
+ * int len | byte kind | byte flags | short uriLen | long seq | long timestamp | int cgiId | int payloadLen | uri | payload
+ * </pre>
+ * 索引文件（.idx）按 seq 循环存放定长条目，同一 cgiId 的条目以 prevSeq 串成链表，
+ * 按 cgiId 或时间翻页只需读取索引和记录头，不会把数据包内容读入堆内存
+ * <p>
+ * 所有方法在实例上同步，写入方只有观察者后台线程
+ */
+public final class CaptureFile implements Closeable {
+
+    private static final long DATA_MAGIC = 0x57_4B_43_41_50_44_41_54L; // WKCAPDAT
+    private static final long INDEX_MAGIC = 0x57_4B_43_41_50_49_44_58L; // WKCAPIDX
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    // 数据文件头
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 8;
+    private static final int H_CAPACITY = 12;
+    private static final int H_NEXT_SEQ = 16;
+    private static final int H_WRITE_POS = 24;
+    private static final int H_FIRST_POS = 32;
+    private static final int H_FIRST_SEQ = 40;
+
+    private static final int REC_HEADER = 32;
+    private static final byte KIND_RECORD = 1;
+    private static final byte KIND_PAD = 2;
+
+    public static final int FLAG_REQUEST = 1;
+    public static final int FLAG_TAMPERED = 1 << 1;
+    public static final int FLAG_TRUNCATED = 1 << 2;
+
+    private static final int INDEX_ENTRY = 32;
+    // 索引条目
+    private static final int I_POS = 0;
+    private static final int I_TIMESTAMP = 8;
+    private static final int I_PREV_SEQ = 16;
+    private static final int I_CGI = 24;
+    private static final int I_LEN = 28;
+
+    private final RandomAccessFile dataRaf;
+    private final RandomAccessFile indexRaf;
+    private final MappedByteBuffer data;
+    private final MappedByteBuffer index;
+    private final int capacity;
+    private final int indexCapacity;
+    private final int maxRecord;
+
+    // 每个 cgiId 最新一条记录的 seq，打开时从索引重建
+    private final HashMap<Integer, Long> heads = new HashMap<>();
+
+    private long nextSeq;
+    private long writePos;
+    private long firstPos;
+    private long firstSeq;
+
+    /**
+     * @param capacity      数据区字节数，向下取整为 8 的倍数
+     * @param indexCapacity 索引条目数
+     */
+    public CaptureFile(@NonNull File dataFile, @NonNull File indexFile, int capacity, int indexCapacity) throws IOException {
+        this.capacity = capacity & ~7;
+        this.indexCapacity = indexCapacity;
+        this.maxRecord = this.capacity / 4;
+        dataRaf = new RandomAccessFile(dataFile, "rw");
+        indexRaf = new RandomAccessFile(indexFile, "rw");
+        try {
+            data = dataRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) this.capacity);
+            index = indexRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) indexCapacity * INDEX_ENTRY);
+        } catch (IOException e) {
+            closeQuietly();
+            throw e;
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        index.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (data.getLong(H_MAGIC) == DATA_MAGIC && data.getInt(H_VERSION) == VERSION
+                && data.getInt(H_CAPACITY) == this.capacity
+                && index.getLong(H_MAGIC) == INDEX_MAGIC && index.getInt(H_CAPACITY) == indexCapacity) {
+            nextSeq = data.getLong(H_NEXT_SEQ);
+            writePos = data.getLong(H_WRITE_POS);
+            firstPos = data.getLong(H_FIRST_POS);
+            firstSeq = data.getLong(H_FIRST_SEQ);
+            rebuildHeads();
+        } else {
+            reset();
+        }
+    }
+
+    /**
+     * 按文件头中记录的容量打开已有的抓包文件，用于离线读取
+     */
+    @NonNull
+    public static CaptureFile openExisting(@NonNull File dataFile, @NonNull File indexFile) throws IOException {
+        int capacity = readHeaderInt(dataFile, DATA_MAGIC);
+        int indexCapacity = readHeaderInt(indexFile, INDEX_MAGIC);
+        return new CaptureFile(dataFile, indexFile, capacity, indexCapacity);
+    }
+
+    private static int readHeaderInt(File file, long magic) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] header = new byte[HEADER_SIZE];
+            raf.readFully(header);
+            ByteBuffer buf = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getLong(H_MAGIC) != magic) throw new IOException("not a capture file: " + file);
+            return buf.getInt(H_CAPACITY);
+        }
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public synchronized void clear() {
+        reset();
+    }
+
+    private void reset() {
+        nextSeq = 0;
+        writePos = 0;
+        firstPos = 0;
+        firstSeq = 0;
+        heads.clear();
+        data.putLong(H_MAGIC, DATA_MAGIC);
+        data.putInt(H_VERSION, VERSION);
+        data.putInt(H_CAPACITY, capacity);
+        writeHeader();
+        index.putLong(H_MAGIC, INDEX_MAGIC);
+        index.putInt(H_VERSION, VERSION);
+        index.putInt(H_CAPACITY, indexCapacity);
+    }
+
+    private void writeHeader() {
+        data.putLong(H_NEXT_SEQ, nextSeq);
+        data.putLong(H_WRITE_POS, writePos);
+        data.putLong(H_FIRST_POS, firstPos);
+        data.putLong(H_FIRST_SEQ, firstSeq);
+    }
+
+    private void rebuildHeads() {
+        heads.clear();
+        for (long seq = oldestSeq(); seq < nextSeq; seq++) {
+            heads.put(index.getInt(entry(seq) + I_CGI), seq);
+        }
+    }
+
+    private int entry(long seq) {
+        return HEADER_SIZE + (int) (seq % indexCapacity) * INDEX_ENTRY;
+    }
+
+    private int offset(long pos) {
+        return HEADER_SIZE + (int) (pos % capacity);
+    }
+
+    /**
+     * 仍可读取的最旧记录的 seq
+     */
+    public synchronized long oldestSeq() {
+        return Math.max(firstSeq, nextSeq - indexCapacity);
+    }
+
+    public synchronized long nextSeq() {
+        return nextSeq;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 记录的 seq
+     */
+    public synchronized long append(long timestamp, int cgiId, @NonNull String uri, int flags, @NonNull byte[] payload) {
+        byte[] uriBytes = uri.getBytes(StandardCharsets.UTF_8);
+        int uriLen = Math.min(uriBytes.length, Short.MAX_VALUE);
+        int payloadLen = payload.length;
+        int len = align(REC_HEADER + uriLen + payloadLen);
+        if (len > maxRecord) {
+            payloadLen = Math.max(0, maxRecord - REC_HEADER - uriLen) & ~7;
+            len = align(REC_HEADER + uriLen + payloadLen);
+            flags |= FLAG_TRUNCATED;
+        }
+
+        int remaining = capacity - (int) (writePos % capacity);
+        if (len > remaining) {
+            evict(remaining);
+            int off = offset(writePos);
+            data.putInt(off, remaining);
+            data.put(off + 4, KIND_PAD);
+            writePos += remaining;
+        }
+        evict(len);
+
+        long seq = nextSeq;
+        int off = offset(writePos);
+        data.putInt(off, len);
+        data.put(off + 4, KIND_RECORD);
+        data.put(off + 5, (byte) flags);
+        data.putShort(off + 6, (short) uriLen);
+        data.putLong(off + 8, seq);
+        data.putLong(off + 16, timestamp);
+        data.putInt(off + 24, cgiId);
+        data.putInt(off + 28, payloadLen);
+        data.position(off + REC_HEADER);
+        data.put(uriBytes, 0, uriLen);
+        data.put(payload, 0, payloadLen);
+
+        Long prev = heads.get(cgiId);
+        int e = entry(seq);
+        index.putLong(e + I_POS, writePos);
+        index.putLong(e + I_TIMESTAMP, timestamp);
+        index.putLong(e + I_PREV_SEQ, prev != null ? prev : -1);
+        index.putInt(e + I_CGI, cgiId);
+        index.putInt(e + I_LEN, payloadLen);
+        heads.put(cgiId, seq);
+
+        writePos += len;
+        nextSeq = seq + 1;
+        writeHeader();
+        return seq;
+    }
+
+    // 腾出 need 字节，覆盖最旧的记录
+    private void evict(int need) {
+        while (writePos + need - firstPos > capacity && firstPos < writePos) {
+            int off = offset(firstPos);
+            int len = data.getInt(off);
+            if (data.get(off + 4) == KIND_RECORD) firstSeq = data.getLong(off + 8) + 1;
+            firstPos += len;
+        }
+    }
+
+    private static int align(int n) {
+        return (n + 7) & ~7;
+    }
+
+    /**
+     * 按 seq 从新到旧翻页
+     *
+     * @param cgiId     只返回该 cgiId 的记录，传 null 返回全部
+     * @param beforeSeq 只返回 seq 小于该值的记录，从最新开始时传 Long.MAX_VALUE
+     * @param limit     最多返回的条数
+     */
+    @NonNull
+    public synchronized List<CaptureRecord> query(@Nullable Integer cgiId, long beforeSeq, int limit) {
+        ArrayList<CaptureRecord> out = new ArrayList<>(Math.min(limit, 64));
+        long oldest = oldestSeq();
+        long seq;
+        if (cgiId == null) {
+            seq = Math.min(beforeSeq, nextSeq) - 1;
+        } else {
+            Long head = heads.get(cgiId);
+            seq = head != null ? head : -1;
+            while (seq >= oldest && seq >= beforeSeq) seq = index.getLong(entry(seq) + I_PREV_SEQ);
+        }
+        while (seq >= oldest && out.size() < limit) {
+            CaptureRecord r = readRecord(seq);
+            if (r != null) out.add(r);
+            seq = cgiId == null ? seq - 1 : index.getLong(entry(seq) + I_PREV_SEQ);
+        }
+        return out;
+    }
+
+    /**
+     * 第一个时间戳不早于 timestamp 的记录的 seq，用于按时间跳转
+     * 时间戳按写入顺序近似递增，二分查找只读取索引
+     */
+    public synchronized long seqAtTime(long timestamp) {
+        long lo = oldestSeq();
+        long hi = nextSeq;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (index.getLong(entry(mid) + I_TIMESTAMP) < timestamp) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    @Nullable
+    private CaptureRecord readRecord(long seq) {
+        int e = entry(seq);
+        long pos = index.getLong(e + I_POS);
+        if (pos < firstPos) return null;
+        int off = offset(pos);
+        if (data.get(off + 4) != KIND_RECORD || data.getLong(off + 8) != seq) return null;
+        int flags = data.get(off + 5);
+        int uriLen = data.getShort(off + 6);
+        byte[] uri = new byte[uriLen];
+        data.position(off + REC_HEADER);
+        data.get(uri);
+        return new CaptureRecord(seq, data.getLong(off + 16), data.getInt(off + 24),
+                new String(uri, StandardCharsets.UTF_8),
+                (flags & FLAG_REQUEST) != 0, (flags & FLAG_TAMPERED) != 0, (flags & FLAG_TRUNCATED) != 0,
+                data.getInt(off + 28), pos);
+    }
+
+    /**
+     * 读取记录的数据包内容，记录已被覆盖时返回 null
+     */
+    @Nullable
+    public synchronized byte[] readPayload(@NonNull CaptureRecord record) {
+        if (record.pos < firstPos) return null;
+        int off = offset(record.pos);
+        if (data.get(off + 4) != KIND_RECORD || data.getLong(off + 8) != record.seq) return null;
+        int uriLen = data.getShort(off + 6);
+        byte[] payload = new byte[data.getInt(off + 28)];
+        data.position(off + REC_HEADER + uriLen);
+        data.get(payload);
+        return payload;
+    }
+
+    @Override
+    public synchronized void close() {
+        data.force();
+        index.force();
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        try {
+            dataRaf.close();
+        } catch (IOException ignored) {
+        }
+        try {
+            indexRaf.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
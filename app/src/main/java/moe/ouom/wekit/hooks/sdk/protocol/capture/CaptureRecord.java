@@ -0,0 +1,36 @@
+package moe.ouom.wekit.hooks.sdk.protocol.capture;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 抓包记录的摘要，不包含数据包内容，内容通过 {@link CaptureFile#readPayload(CaptureRecord)} 按需读取
+ */
+public final class CaptureRecord {
+
+    public final long seq;
+    public final long timestamp;
+    public final int cgiId;
+    @NonNull
+    public final String uri;
+    public final boolean isRequest;
+    public final boolean tampered;
+    /** 数据包过大，只保存了前面一部分 */
+    public final boolean truncated;
+    public final int payloadLength;
+
+    // 记录在数据区中的绝对位置
+    final long pos;
+
+    CaptureRecord(long seq, long timestamp, int cgiId, @NonNull String uri, boolean isRequest,
+                  boolean tampered, boolean truncated, int payloadLength, long pos) {
+        this.seq = seq;
+        this.timestamp = timestamp;
+        this.cgiId = cgiId;
+        this.uri = uri;
+        this.isRequest = isRequest;
+        this.tampered = tampered;
+        this.truncated = truncated;
+        this.payloadLength = payloadLength;
+        this.pos = pos;
+    }
+}
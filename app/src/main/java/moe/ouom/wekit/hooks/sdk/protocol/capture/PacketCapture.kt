@@ -0,0 +1,53 @@
+package moe.ouom.wekit.hooks.sdk.protocol.capture
+
+import moe.ouom.wekit.config.WeConfig
+import moe.ouom.wekit.constants.Constants
+import moe.ouom.wekit.hooks.sdk.protocol.model.PacketSnapshot
+import moe.ouom.wekit.util.io.PathTool
+import moe.ouom.wekit.util.log.WeLogger
+import java.io.File
+
+/**
+ * 二进制抓包，开启 [Constants.PrekPacketCapture] 后由观察者后台线程把每个数据包追加到 WeKit/capture 下的环形文件
+ * 文件大小固定，写满后覆盖最旧的记录
+ */
+object PacketCapture {
+    private const val TAG = "PacketCapture"
+    private const val DIR_NAME = "capture"
+    private const val DATA_CAPACITY = 32 shl 20
+    private const val INDEX_CAPACITY = 128 * 1024
+
+    @Volatile
+    private var file: CaptureFile? = null
+    private var openFailed = false
+
+    val enabled: Boolean
+        get() = WeConfig.dGetBoolean(Constants.PrekPacketCapture)
+
+    /**
+     * 打开抓包文件，失败后不再重试
+     */
+    @Synchronized
+    fun open(): CaptureFile? {
+        file?.let { return it }
+        if (openFailed) return null
+        return try {
+            val dir = File(PathTool.getModuleDataPath(), DIR_NAME)
+            dir.mkdirs()
+            CaptureFile(File(dir, "packets.dat"), File(dir, "packets.idx"), DATA_CAPACITY, INDEX_CAPACITY)
+                .also { file = it }
+        } catch (e: Throwable) {
+            WeLogger.e(TAG, "open capture file failed", e)
+            openFailed = true
+            null
+        }
+    }
+
+    internal fun record(s: PacketSnapshot) {
+        val f = file ?: open() ?: return
+        var flags = 0
+        if (s.isRequest) flags = flags or CaptureFile.FLAG_REQUEST
+        if (s.tamperedBytes != null) flags = flags or CaptureFile.FLAG_TAMPERED
+        f.append(s.timestamp, s.cgiId, s.uri, flags, s.bytes)
+    }
+}
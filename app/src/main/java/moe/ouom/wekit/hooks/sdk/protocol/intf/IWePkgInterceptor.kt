@@ -1,6 +1,33 @@
 package moe.ouom.wekit.hooks.sdk.protocol.intf
 
+import moe.ouom.wekit.hooks.sdk.protocol.model.PacketContext
+import moe.ouom.wekit.util.ProtoPatch
+
 interface IWePkgInterceptor {
+    /**
+     * 在共享的 [PacketContext] 上原地修改数据包，所有拦截器依次执行，链路结束时统一编码一次
+     * 默认实现转调下面基于字节的旧接口，传入的是副本：旧接口可能原地修改后返回同一个数组，
+     * 不能让它改到 [PacketContext.originalBytes]
+     */
+    fun onRequest(ctx: PacketContext) {
+        val copy = ctx.bytes.copyOf()
+        onRequest(ctx.uri, ctx.cgiId, copy)?.let { ctx.setBytes(it); return }
+        onRequestPatch(ctx.uri, ctx.cgiId, copy)?.let { ctx.applyPatch(it) }
+    }
+
+    fun onResponse(ctx: PacketContext) {
+        val copy = ctx.bytes.copyOf()
+        onResponse(ctx.uri, ctx.cgiId, copy)?.let { ctx.setBytes(it); return }
+        onResponsePatch(ctx.uri, ctx.cgiId, copy)?.let { ctx.applyPatch(it) }
+    }
+
     fun onRequest(uri: String, cgiId: Int, reqBytes: ByteArray): ByteArray? = null
     fun onResponse(uri: String, cgiId: Int, respBytes: ByteArray): ByteArray? = null
+
+    /**
+     * 只需改动少量字段时返回 ProtoPatch，由 WePkgManager 直接在原始字节上修补
+     * 仅在 onRequest / onResponse 返回 null 时调用
+     */
+    fun onRequestPatch(uri: String, cgiId: Int, reqBytes: ByteArray): ProtoPatch? = null
+    fun onResponsePatch(uri: String, cgiId: Int, respBytes: ByteArray): ProtoPatch? = null
 }
@@ -0,0 +1,12 @@
+package moe.ouom.wekit.hooks.sdk.protocol.intf
+
+import moe.ouom.wekit.hooks.sdk.protocol.model.PacketSnapshot
+
+/**
+ * 只读数据包观察者，适合日志、统计、抓包等不需要修改数据包的场景
+ * 在后台线程上按顺序回调，不会阻塞微信的网络线程；
+ * 后台线程处理不过来时新的数据包会被直接丢弃，见 WePkgManager.droppedPackets
+ */
+fun interface IWePkgObserver {
+    fun onPacket(packet: PacketSnapshot)
+}
@@ -0,0 +1,112 @@
+package moe.ouom.wekit.hooks.sdk.protocol.listener
+
+import java.lang.reflect.Field
+import java.lang.reflect.Method
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * WePkgDispatcher 热路径上的反射访问器
+ * 按具体类缓存已解析的 Method / Field，每个类只在第一次出现时按名称查找一次，之后每个数据包只剩一次 Map 查询和 invoke
+ * 不依赖 Xposed，便于在 benchmark 模块中直接测量
+ */
+object PkgAccessors {
+
+    /**
+     * NetScene 的 ReqResp 对象（dispatch 的第二个参数 / onGYNetEnd 的第五个参数）
+     */
+    class ReqResp(cls: Class<*>) {
+        private val getUri = findMethod(cls, "getUri")
+        private val getType = findMethod(cls, "getType")
+        private val getReqObj = findMethod(cls, "getReqObj")
+        private val getRespObj = findMethod(cls, "getRespObj")
+        private val fieldB = findField(cls, "b")
+
+        // Kinda 框架的 WXPCommReqResp
+        private val getWXPRespData = findMethod(cls, "getWXPRespData")
+        private val setWXPRespData = findMethod(cls, "setWXPRespData", ByteArray::class.java)
+
+        fun uri(obj: Any): String? = getUri?.invoke(obj) as? String
+
+        fun type(obj: Any): Int = require(getType, "getType").invoke(obj) as Int
+
+        fun reqWrapper(obj: Any): Any? = require(getReqObj, "getReqObj").invoke(obj)
+
+        /**
+         * 优先读取字段 b，没有该字段时调用 getRespObj
+         */
+        fun respWrapper(obj: Any): Any? =
+            if (fieldB != null) fieldB.get(obj) else require(getRespObj, "getRespObj").invoke(obj)
+
+        fun wxpRespData(obj: Any): ByteArray? = getWXPRespData?.invoke(obj) as? ByteArray
+
+        fun setWxpRespData(obj: Any, data: ByteArray) {
+            require(setWXPRespData, "setWXPRespData").invoke(obj, data)
+        }
+    }
+
+    /**
+     * Req / Resp 包装对象，字段 a 为 Protobuf 消息
+     */
+    class Wrapper(cls: Class<*>) {
+        private val fieldA = findField(cls, "a")
+
+        fun message(obj: Any): Any? = fieldA?.get(obj)
+    }
+
+    /**
+     * Protobuf 消息对象
+     */
+    class Message(cls: Class<*>) {
+        private val toByteArray = findMethod(cls, "toByteArray")
+        private val parseFrom = findMethod(cls, "parseFrom", ByteArray::class.java)
+
+        fun toBytes(obj: Any): ByteArray = require(toByteArray, "toByteArray").invoke(obj) as ByteArray
+
+        fun parseFrom(obj: Any, bytes: ByteArray) {
+            require(parseFrom, "parseFrom").invoke(obj, bytes)
+        }
+    }
+
+    private val reqResps = ConcurrentHashMap<Class<*>, ReqResp>()
+    private val wrappers = ConcurrentHashMap<Class<*>, Wrapper>()
+    private val messages = ConcurrentHashMap<Class<*>, Message>()
+
+    fun reqResp(obj: Any): ReqResp = reqResps[obj.javaClass] ?: reqResps.getOrPut(obj.javaClass) { ReqResp(obj.javaClass) }
+
+    fun wrapper(obj: Any): Wrapper = wrappers[obj.javaClass] ?: wrappers.getOrPut(obj.javaClass) { Wrapper(obj.javaClass) }
+
+    fun message(obj: Any): Message = messages[obj.javaClass] ?: messages.getOrPut(obj.javaClass) { Message(obj.javaClass) }
+
+    private fun require(m: Method?, name: String): Method = m ?: throw NoSuchMethodError(name)
+
+    /**
+     * 沿继承链查找参数完全匹配的方法，找不到时返回 null
+     */
+    private fun findMethod(cls: Class<*>, name: String, vararg params: Class<*>): Method? {
+        try {
+            return cls.getMethod(name, *params).apply { isAccessible = true }
+        } catch (_: NoSuchMethodException) {
+        }
+        var c: Class<*>? = cls
+        while (c != null) {
+            try {
+                return c.getDeclaredMethod(name, *params).apply { isAccessible = true }
+            } catch (_: NoSuchMethodException) {
+            }
+            c = c.superclass
+        }
+        return null
+    }
+
+    private fun findField(cls: Class<*>, name: String): Field? {
+        var c: Class<*>? = cls
+        while (c != null) {
+            try {
+                return c.getDeclaredField(name).apply { isAccessible = true }
+            } catch (_: NoSuchFieldException) {
+            }
+            c = c.superclass
+        }
+        return null
+    }
+}
@@ -5,12 +5,16 @@ import moe.ouom.wekit.core.dsl.dexClass
 import moe.ouom.wekit.core.model.ApiHookItem
 import moe.ouom.wekit.dexkit.intf.IDexFind
 import moe.ouom.wekit.hooks.core.annotation.HookItem
+import moe.ouom.wekit.hooks.sdk.protocol.CgiClassTable
+import moe.ouom.wekit.hooks.sdk.protocol.PkgMetrics
+import moe.ouom.wekit.hooks.sdk.protocol.PkgTracer
 import moe.ouom.wekit.hooks.sdk.protocol.WePkgHelper
 import moe.ouom.wekit.hooks.sdk.protocol.WePkgManager
+import moe.ouom.wekit.util.codegen.CallbackClassMaker
+import moe.ouom.wekit.util.codegen.ICallbackHandler
 import moe.ouom.wekit.util.common.SyncUtils
 import moe.ouom.wekit.util.log.WeLogger
 import org.luckypray.dexkit.DexKitBridge
-import java.lang.reflect.Proxy
 
 @HookItem(path = "protocol/wepkg_dispatcher", desc = "WePkg 请求/响应数据包拦截与篡改")
 class WePkgDispatcher : ApiHookItem(), IDexFind {
@@ -20,6 +24,9 @@ class WePkgDispatcher : ApiHookItem(), IDexFind {
         SyncUtils.postDelayed(3000) {
             val netSceneBaseClass = WePkgHelper.INSTANCE?.dexClsNetSceneBase?.clazz
             val callbackInterface = dexClsOnGYNetEnd.clazz
+            // 启动时为回调接口生成一次包装类，之后每个请求只需创建实例
+            val callbackClass = CallbackClassMaker.get(callbackInterface)
+            val onGYNetEndIndex = callbackClass.indexOf("onGYNetEnd")
 
 //            hookBuilder()
 
@@ -29,81 +36,120 @@ class WePkgDispatcher : ApiHookItem(), IDexFind {
             }
 
             hookBefore(netSceneBaseClass, "dispatch") { param ->
+                val dispatchTime = System.nanoTime()
                 val v0Var = param.args[1] ?: return@hookBefore
                 val originalCallback = param.args[2] ?: return@hookBefore
 
+                val v0Acc = PkgAccessors.reqResp(v0Var)
                 // 有时 getUri 返回 null
-                val uri = (XposedHelpers.callMethod(v0Var, "getUri") ?: "null") as String
-                val cgiId = XposedHelpers.callMethod(v0Var, "getType") as Int
-                try {
-                    val reqWrapper = XposedHelpers.callMethod(v0Var, "getReqObj")
-                    val reqPbObj = XposedHelpers.getObjectField(reqWrapper, "a") // m.a
-                    val reqBytes = XposedHelpers.callMethod(reqPbObj, "toByteArray") as ByteArray
+                val uri = v0Acc.uri(v0Var) ?: "null"
+                val cgiId = v0Acc.type(v0Var)
+                val traceId = if (PkgTracer.enabled) PkgTracer.newTraceId() else 0L
+                // 没有订阅该数据包时不做序列化
+                if (WePkgManager.hasListener(uri, cgiId)) {
+                    val tamperStart = System.nanoTime()
+                    try {
+                        val reqWrapper = v0Acc.reqWrapper(v0Var)!!
+                        val reqPbObj = PkgAccessors.wrapper(reqWrapper).message(reqWrapper)!! // m.a
+                        val reqPbAcc = PkgAccessors.message(reqPbObj)
+                        val reqBytes = reqPbAcc.toBytes(reqPbObj)
+
+                        WePkgManager.handleRequestTamper(uri, cgiId, reqBytes)?.let { tampered ->
+                            reqPbAcc.parseFrom(reqPbObj, tampered)
+                            WeLogger.i("PkgDispatcher", "Request Tampered: $uri")
+                        }
+                    } catch (_: Throwable) {  }
+                    if (traceId != 0L) {
+                        PkgTracer.span(PkgTracer.REQUEST_TAMPER, traceId, cgiId, uri, tamperStart, System.nanoTime())
+                    }
+                }
+
+                if (CallbackClassMaker.isWrapped(originalCallback)) return@hookBefore
+
+                val handler = GYNetEndHandler(uri, cgiId, v0Var, onGYNetEndIndex, dispatchTime, traceId)
+                param.args[2] = callbackClass.wrap(originalCallback, handler)
+                if (traceId != 0L) {
+                    handler.sentTime = System.nanoTime()
+                    PkgTracer.span(PkgTracer.DISPATCH, traceId, cgiId, uri, dispatchTime, handler.sentTime)
+                }
+            }
+        }
+    }
 
-                    WePkgManager.handleRequestTamper(uri, cgiId, reqBytes)?.let { tampered ->
-                        XposedHelpers.callMethod(reqPbObj, "parseFrom", tampered)
-                        WeLogger.i("PkgDispatcher", "Request Tampered: $uri")
+    /**
+     * onGYNetEnd 回调前篡改响应，之后由生成的回调类直接转发给原回调
+     * traceId 不为 0 时记录网络等待、响应篡改与原回调的 span
+     */
+    private class GYNetEndHandler(
+        val uri: String,
+        val cgiId: Int,
+        val v0Var: Any,
+        val onGYNetEndIndex: Int,
+        val dispatchTime: Long,
+        val traceId: Long
+    ) : ICallbackHandler {
+        /** dispatch hook 结束的时间，网络等待从这里开始 */
+        @Volatile
+        var sentTime = 0L
+
+        /** onCall 结束的时间，原回调从这里开始 */
+        private var callbackStart = 0L
+
+        override fun onCall(self: Any, method: Int, args: Array<Any?>): Any? {
+            if (method != onGYNetEndIndex) return null
+            val now = System.nanoTime()
+            if (PkgMetrics.enabled) PkgMetrics.recordRoundTrip(cgiId, now - dispatchTime)
+            if (traceId != 0L) {
+                PkgTracer.asyncSpan(PkgTracer.NETWORK, traceId, cgiId, uri, if (sentTime != 0L) sentTime else dispatchTime, now)
+            }
+            if (WePkgManager.hasListener(uri, cgiId)) {
+                tamperResponse(args)
+                if (traceId != 0L) PkgTracer.span(PkgTracer.RESPONSE_TAMPER, traceId, cgiId, uri, now, System.nanoTime())
+            }
+            if (traceId != 0L) callbackStart = System.nanoTime()
+            return null
+        }
+
+        override fun onReturn(self: Any, method: Int) {
+            if (method != onGYNetEndIndex || callbackStart == 0L) return
+            PkgTracer.span(PkgTracer.CALLBACK, traceId, cgiId, uri, callbackStart, System.nanoTime())
+        }
+
+        private fun tamperResponse(args: Array<Any?>) {
+            try {
+                val respV0 = args[4] ?: v0Var
+                val className = respV0.javaClass.name
+                val respAcc = PkgAccessors.reqResp(respV0)
+
+                // 处理 Kinda 框架的 WXPCommReqResp
+                if (className == "com.tencent.kinda.framework.module.impl.WXPCommReqResp") {
+                    val originalRespBytes = respAcc.wxpRespData(respV0)
+                    if (originalRespBytes != null) {
+                        WePkgManager.handleResponseTamper(uri, cgiId, originalRespBytes)?.let { tampered ->
+                            respAcc.setWxpRespData(respV0, tampered)
+                            WeLogger.i("PkgDispatcher", "Response Tampered (WXP): $uri")
+                        }
                     }
-                } catch (_: Throwable) {  }
-
-                if (Proxy.isProxyClass(originalCallback.javaClass)) return@hookBefore
-
-                param.args[2] = Proxy.newProxyInstance(
-                    classLoader,
-                    arrayOf(callbackInterface)
-                ) { _, method, args ->
-                    when (method.name) {
-                        "hashCode" -> return@newProxyInstance originalCallback.hashCode()
-                        "toString" -> return@newProxyInstance originalCallback.toString()
-                        "equals" -> return@newProxyInstance originalCallback.equals(args?.get(0))
-                        "onGYNetEnd" -> {
-                            try {
-                                val respV0 = args!![4] ?: v0Var
-                                val className = respV0.javaClass.name
-
-                                // 处理 Kinda 框架的 WXPCommReqResp
-                                if (className == "com.tencent.kinda.framework.module.impl.WXPCommReqResp") {
-                                    val originalRespBytes = XposedHelpers.callMethod(respV0, "getWXPRespData") as? ByteArray
-                                    if (originalRespBytes != null) {
-                                        WePkgManager.handleResponseTamper(uri, cgiId, originalRespBytes)?.let { tampered ->
-                                            XposedHelpers.callMethod(respV0, "setWXPRespData", tampered)
-                                            WeLogger.i("PkgDispatcher", "Response Tampered (WXP): $uri")
-                                        }
-                                    }
-                                }
-                                // 处理标准混淆的 ICommReqResp 实现
-                                else {
-                                    var respWrapper: Any?
-                                    try {
-                                        respWrapper = XposedHelpers.getObjectField(respV0, "b")
-                                    } catch (_: NoSuchFieldError) {
-                                        respWrapper = XposedHelpers.callMethod(respV0, "getRespObj")
-                                    }
-
-                                    if (respWrapper != null) {
-                                        val respPbObj = try {
-                                            XposedHelpers.getObjectField(respWrapper, "a")
-                                        } catch (_: NoSuchFieldError) {
-                                            null
-                                        }
-
-                                        if (respPbObj != null) {
-                                            val originalRespBytes = XposedHelpers.callMethod(respPbObj, "toByteArray") as ByteArray
-                                            WePkgManager.handleResponseTamper(uri, cgiId, originalRespBytes)?.let { tampered ->
-                                                XposedHelpers.callMethod(respPbObj, "parseFrom", tampered)
-                                                WeLogger.i("PkgDispatcher", "Response Tampered (PB): $uri")
-                                            }
-                                        }
-                                    }
-                                }
-                            } catch (t: Throwable) {
-                                WeLogger.e("PkgDispatcher", "Tamper inner logic fail", t)
+                }
+                // 处理标准混淆的 ICommReqResp 实现
+                else {
+                    val respWrapper = respAcc.respWrapper(respV0)
+
+                    if (respWrapper != null) {
+                        val respPbObj = PkgAccessors.wrapper(respWrapper).message(respWrapper)
+
+                        if (respPbObj != null) {
+                            val respPbAcc = PkgAccessors.message(respPbObj)
+                            val originalRespBytes = respPbAcc.toBytes(respPbObj)
+                            WePkgManager.handleResponseTamper(uri, cgiId, originalRespBytes)?.let { tampered ->
+                                respPbAcc.parseFrom(respPbObj, tampered)
+                                WeLogger.i("PkgDispatcher", "Response Tampered (PB): $uri")
                             }
                         }
                     }
-
-                    return@newProxyInstance method.invoke(originalCallback, *(args ?: emptyArray()))
                 }
+            } catch (t: Throwable) {
+                WeLogger.e("PkgDispatcher", "Tamper inner logic fail", t)
             }
         }
     }
@@ -151,7 +197,14 @@ class WePkgDispatcher : ApiHookItem(), IDexFind {
                 } catch (_: Throwable) { }
 
                 val configLog = "$cgiId to Triple(\"$reqClassName\", $funcId, $routeId), // $uri"
-                WeLogger.w("WePkgListener-gen", configLog)
+                // 与扫描得到的 CGI 请求表对照，便于发现提取遗漏或不一致
+                val spec = CgiClassTable.get(cgiId)
+                val state = when {
+                    spec == null -> "missing"
+                    spec.requestClass != reqClassName || spec.funcId != funcId || spec.routeId != routeId -> "mismatch: $spec"
+                    else -> "ok"
+                }
+                WeLogger.w("WePkgListener-gen", "$configLog [$state]")
             }
         } catch (e: Throwable) {
             WeLogger.e("WePkgListener-gen", "Builder Hook 失败: ${e.message}")
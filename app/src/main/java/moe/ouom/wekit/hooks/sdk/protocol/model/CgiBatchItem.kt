@@ -0,0 +1,12 @@
+package moe.ouom.wekit.hooks.sdk.protocol.model
+
+/**
+ * sendCgiBatch 中的一个请求，参数含义同 sendCgi
+ */
+class CgiBatchItem(
+    val uri: String,
+    val cgiId: Int,
+    val jsonPayload: String,
+    val funcId: Int = 0,
+    val routeId: Int = 0
+)
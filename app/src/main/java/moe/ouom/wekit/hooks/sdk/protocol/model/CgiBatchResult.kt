@@ -0,0 +1,17 @@
+package moe.ouom.wekit.hooks.sdk.protocol.model
+
+/**
+ * sendCgiBatch 中一个请求的结果
+ * @param index 在输入列表中的位置
+ * @param error 失败原因：[CgiException]、TimeoutException 或 CancellationException
+ * @param elapsedMs 从发出到完成的耗时，未发出的请求为 0
+ */
+class CgiBatchResult(
+    val index: Int,
+    val item: CgiBatchItem,
+    val response: CgiResponse?,
+    val error: Throwable?,
+    val elapsedMs: Long
+) {
+    val isSuccess: Boolean get() = response != null
+}
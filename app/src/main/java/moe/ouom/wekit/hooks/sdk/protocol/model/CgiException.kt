@@ -0,0 +1,26 @@
+package moe.ouom.wekit.hooks.sdk.protocol.model
+
+/**
+ * 请求失败：errType / errCode 不为 0 的回包，或本地错误（errType 为 -1，errCode 见下方常量）
+ */
+class CgiException(
+    val errType: Int,
+    val errCode: Int,
+    val errMsg: String,
+    cause: Throwable? = null
+) : Exception("errType=$errType, errCode=$errCode, $errMsg", cause) {
+
+    companion object {
+        /** 构造或发送请求时出现异常 */
+        const val CODE_ENGINE = -1
+
+        /** 发送队列已满 */
+        const val CODE_REJECTED = -2
+
+        /** 超时 */
+        const val CODE_TIMEOUT = -3
+
+        /** 已取消 */
+        const val CODE_CANCELLED = -4
+    }
+}
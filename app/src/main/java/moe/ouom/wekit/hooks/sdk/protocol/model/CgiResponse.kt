@@ -0,0 +1,8 @@
+package moe.ouom.wekit.hooks.sdk.protocol.model
+
+/**
+ * sendCgi 的回包
+ * @param json 按 WeProtoData 解码的 JSON，解码失败时为 "{}"
+ * @param bytes 原始回包，取不到时为 null
+ */
+class CgiResponse(val json: String, val bytes: ByteArray?)
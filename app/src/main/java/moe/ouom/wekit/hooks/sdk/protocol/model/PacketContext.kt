@@ -0,0 +1,105 @@
+package moe.ouom.wekit.hooks.sdk.protocol.model
+
+import moe.ouom.wekit.hooks.sdk.protocol.ProtoSchemaRegistry
+import moe.ouom.wekit.util.ProtoPatch
+import moe.ouom.wekit.util.ProtoPlan
+import moe.ouom.wekit.util.WeProtoData
+
+/**
+ * 在拦截器链中传递的数据包上下文
+ * 同一个数据包只解析一次：[data] 在首次访问时懒解析并由所有拦截器共享，拦截器原地修改后调用 [markDirty]；
+ * 链路结束时只有被标记过的数据包才会重新编码一次
+ */
+class PacketContext(
+    val uri: String,
+    val cgiId: Int,
+    val isRequest: Boolean,
+    /** 进入拦截器链前的原始字节 */
+    val originalBytes: ByteArray
+) {
+    private var current = originalBytes
+    private var proto: WeProtoData? = null
+    private var dirty = false
+    private var replaced = false
+
+    /**
+     * 每次修改递增，用于记录是哪些拦截器改动了数据包
+     */
+    internal var version = 0
+        private set
+
+    /**
+     * 共享的解析结果，首次访问时解析当前字节
+     */
+    val data: WeProtoData
+        get() {
+            proto?.let { return it }
+            val d = WeProtoData()
+            d.fromBytes(current)
+            d.setCgiId(cgiId)
+            proto = d
+            return d
+        }
+
+    /**
+     * 该 CGI 已推断稳定的编解码计划，结构推断未开启或结构尚未稳定时为 null
+     * 字段类型已知，可按字段名直接从 [bytes] 读取或整体解码，不经过 [data] 的通用试探解析
+     */
+    val plan: ProtoPlan? by lazy(LazyThreadSafetyMode.NONE) { ProtoSchemaRegistry.getPlan(cgiId, isRequest) }
+
+    /**
+     * 当前字节内容，[data] 有未写回的改动时会先编码
+     */
+    val bytes: ByteArray
+        get() {
+            flush()
+            return current
+        }
+
+    /**
+     * 相对原始字节是否有改动
+     */
+    val isModified: Boolean
+        get() = replaced || isPending()
+
+    /**
+     * 声明已修改 [data]
+     */
+    fun markDirty() {
+        dirty = true
+        version++
+    }
+
+    /**
+     * 整体替换字节内容，之前对 [data] 的改动会被丢弃
+     * 与旧的字节接口一致，传入同一个数组（原地修改后返回）同样视为已修改
+     */
+    fun setBytes(b: ByteArray) {
+        current = b
+        replaced = true
+        proto = null
+        dirty = false
+        version++
+    }
+
+    /**
+     * 在当前字节上应用修补
+     */
+    fun applyPatch(patch: ProtoPatch) {
+        // 没有改动或路径都未命中时 applyTo 返回 null，保持原样
+        patch.applyTo(bytes)?.let(::setBytes)
+    }
+
+    // 未调用 markDirty 但 data 已被改动时同样写回，避免改动静默丢失
+    private fun isPending(): Boolean = dirty || proto?.isModified == true
+
+    private fun flush() {
+        val d = proto ?: return
+        if (!isPending()) return
+        current = d.toPacketBytes()
+        replaced = true
+        // 编码后 WeProtoData 仍会报告已修改，下次访问 data 时按新字节重新懒解析
+        proto = null
+        dirty = false
+    }
+}
@@ -0,0 +1,27 @@
+package moe.ouom.wekit.hooks.sdk.protocol.model
+
+/**
+ * 拦截器链结束后交给观察者的只读数据包快照
+ * 字节数组与拦截器链共享而不复制，观察者不得修改其内容
+ */
+class PacketSnapshot(
+    val uri: String,
+    val cgiId: Int,
+    val isRequest: Boolean,
+    /** 进入拦截器链前的原始字节 */
+    val originalBytes: ByteArray,
+    /** 拦截器修改后的字节，未修改时为 null */
+    val tamperedBytes: ByteArray?,
+    /** 修改过数据包的拦截器类名 */
+    val modifiedBy: List<String>,
+    /** 进入拦截器链时的 System.currentTimeMillis() */
+    val timestamp: Long,
+    /** 发包线程的调用栈，只在开启详细日志时采集 */
+    val stackTrace: Array<StackTraceElement>?
+) {
+    /**
+     * 实际发出或交给微信的字节
+     */
+    val bytes: ByteArray
+        get() = tamperedBytes ?: originalBytes
+}
@@ -167,6 +167,7 @@ abstract class BaseRikkaDialog(
      * @param summary 选项显示的摘要/说明
      * @param iconName 图标资源名称 (可选，默认为 null)
      * @param useFullKey 是否使用完整 Key。true: 直接使用传入的 key; false: 自动拼接 Constants.PrekXXX 前缀
+     * @param onChanged 新值保存后的回调，用于通知缓存了该配置的模块刷新 (可选)
      * @return 返回该选项的根 View，通常用于后续建立依赖关系 (setDependency)
      */
     protected fun addSwitchPreference(
@@ -174,7 +175,8 @@ abstract class BaseRikkaDialog(
         title: String,
         summary: String,
         iconName: String? = null,
-        useFullKey: Boolean = false
+        useFullKey: Boolean = false,
+        onChanged: ((Boolean) -> Unit)? = null
     ): View {
         val layoutId = ModuleRes.getId("module_item_switch", "layout")
         if (layoutId == 0) return View(context)
@@ -208,6 +210,7 @@ abstract class BaseRikkaDialog(
             WeConfig.getDefaultConfig().edit().putBoolean(configKey, checked).apply()
             WeLogger.d("BaseRikkaDialog: Config changed [$configKey] -> $checked")
             updateDependencies(configKey, checked)
+            onChanged?.invoke(checked)
         }
 
         switchWidget.setOnCheckedChangeListener(listener)
@@ -235,6 +238,7 @@ abstract class BaseRikkaDialog(
      * @param iconName 图标资源名称 (可选)
      * @param useFullKey 是否使用完整 Key
      * @param summaryFormatter 自定义摘要格式化函数。参数为当前值，返回显示的文本。如果为 null，则使用默认格式 "$summary: $value"
+     * @param onChanged 新值保存后的回调，用于通知缓存了该配置的模块刷新 (可选)
      * @return 返回该选项的根 View
      */
     protected fun addEditTextPreference(
@@ -248,7 +252,8 @@ abstract class BaseRikkaDialog(
         singleLine: Boolean = true,
         iconName: String? = null,
         useFullKey: Boolean = false,
-        summaryFormatter: ((String) -> String)? = null
+        summaryFormatter: ((String) -> String)? = null,
+        onChanged: ((String) -> Unit)? = null
     ): View {
         val configKey = if (useFullKey) key else "${Constants.PrekXXX}$key"
 
@@ -277,7 +282,8 @@ abstract class BaseRikkaDialog(
                     singleLine = singleLine,
                     summaryView = summaryView,
                     baseSummary = summary,
-                    summaryFormatter = summaryFormatter
+                    summaryFormatter = summaryFormatter,
+                    onChanged = onChanged
                 )
             }
         )
@@ -427,7 +433,8 @@ abstract class BaseRikkaDialog(
         singleLine: Boolean,
         summaryView: TextView?,
         baseSummary: String,
-        summaryFormatter: ((String) -> String)?
+        summaryFormatter: ((String) -> String)?,
+        onChanged: ((String) -> Unit)?
     ) {
         // 修复 NPE：必须使用 Activity Context 作为 Wrapper 的基础，不能使用 Module Context
         val wrappedContext = CommonContextWrapper.createAppCompatContext(context)
@@ -455,6 +462,7 @@ abstract class BaseRikkaDialog(
                 summaryView?.text = displayText
 
                 WeLogger.d("BaseRikkaDialog: Config changed [$key] -> $newValue")
+                onChanged?.invoke(newValue)
             }
             .negativeButton(text = "取消") { dialog ->
                 dialog.dismiss()
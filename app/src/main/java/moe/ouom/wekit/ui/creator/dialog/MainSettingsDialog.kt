@@ -1,8 +1,11 @@
 package moe.ouom.wekit.ui.creator.dialog
 
 import android.content.Context
+import android.text.InputType
 import moe.ouom.wekit.BuildConfig
 import moe.ouom.wekit.constants.Constants
+import moe.ouom.wekit.hooks.sdk.protocol.PkgSendScheduler
+import moe.ouom.wekit.hooks.sdk.protocol.WePkgManager
 import moe.ouom.wekit.util.common.Utils.jumpUrl
 import java.text.SimpleDateFormat
 import java.util.Date
@@ -68,6 +71,119 @@ class MainSettingsDialog(context: Context) : BaseRikkaDialog(context, "WeKit") {
             useFullKey = true
         )
 
+        // 数据包日志的输出上限，留空使用默认值
+        listOf(
+            Triple(Constants.PrekVerboseLogMaxDepth, "数据包日志最大层数", "超出层数的子消息以 hex 输出"),
+            Triple(Constants.PrekVerboseLogMaxChars, "数据包日志最大字符数", "单个数据包最多输出的字符数"),
+            Triple(Constants.PrekVerboseLogMaxHexBytes, "数据包日志 hex 截断", "单个 hex 字段最多输出的字节数"),
+        ).forEach { (key, title, summary) ->
+            val view = addEditTextPreference(
+                key = key,
+                title = title,
+                summary = summary,
+                hint = "0 表示不限制，留空使用默认值",
+                inputType = InputType.TYPE_CLASS_NUMBER,
+                maxLength = 9,
+                iconName = "ic_debug",
+                useFullKey = true
+            )
+            setDependency(
+                dependentView = view,
+                dependencyKey = Constants.PrekVerboseLog,
+                enableWhen = true,
+                useFullKey = true
+            )
+        }
+
+        addSwitchPreference(
+            key = Constants.PrekProtoSchemaInfer,
+            title = "协议结构推断",
+            summary = "按 CGI 记录数据包结构，保存到 WeKit/proto_schema",
+            iconName = "ic_debug",
+            useFullKey = true
+        )
+
+        addSwitchPreference(
+            key = Constants.PrekPkgMetrics,
+            title = "数据包统计",
+            summary = "按 CGI 统计流量与耗时，在 开发者选项/数据包统计 中查看",
+            iconName = "ic_debug",
+            useFullKey = true
+        )
+
+        addSwitchPreference(
+            key = Constants.PrekPacketCapture,
+            title = "二进制抓包",
+            summary = "把原始数据包写入 WeKit/capture 下的环形文件 (这可能会暴露你的隐私信息）",
+            iconName = "ic_debug",
+            useFullKey = true
+        )
+
+        addSwitchPreference(
+            key = Constants.PrekPkgTrace,
+            title = "请求链路追踪",
+            summary = "记录每个请求各阶段的耗时，在 开发者选项/请求追踪 中导出为 Perfetto trace",
+            iconName = "ic_debug",
+            useFullKey = true
+        )
+
+        // 拦截器熔断，留空使用默认值
+        listOf(
+            Triple(Constants.PrekInterceptorBudgetMs, "拦截器耗时预算 (ms)", "单次调用超出预算或出错多次后暂时跳过该拦截器，默认 50，0 表示只在出错时熔断"),
+            Triple(Constants.PrekInterceptorCooldownSec, "拦截器熔断时长 (s)", "被跳过的拦截器在冷却结束后恢复，默认 60"),
+        ).forEach { (key, title, summary) ->
+            addEditTextPreference(
+                key = key,
+                title = title,
+                summary = summary,
+                hint = "留空使用默认值",
+                inputType = InputType.TYPE_CLASS_NUMBER,
+                maxLength = 6,
+                iconName = "ic_debug",
+                useFullKey = true,
+                // 耗时预算缓存在 WePkgManager 中
+                onChanged = { WePkgManager.reloadConfig() }
+            )
+        }
+
+        // 发包队列，留空使用默认值
+        listOf(
+            Triple(Constants.PrekSendWorkers, "发包线程数", "sendCgi 的工作线程数，默认 2，重启后生效"),
+            Triple(Constants.PrekSendQueueCapacity, "发包队列长度", "排队中的请求上限，默认 256"),
+        ).forEach { (key, title, summary) ->
+            addEditTextPreference(
+                key = key,
+                title = title,
+                summary = summary,
+                hint = "留空使用默认值",
+                inputType = InputType.TYPE_CLASS_NUMBER,
+                maxLength = 6,
+                iconName = "ic_debug",
+                useFullKey = true,
+                // 队列长度缓存在 PkgSendScheduler 中，线程数重启后生效
+                onChanged = { PkgSendScheduler.reloadConfig() }
+            )
+        }
+
+        addEditTextPreference(
+            key = Constants.PrekSendRateLimits,
+            title = "发包限速",
+            summary = "按 cgiId 限制每秒发送次数，格式 cgiId:每秒次数[:突发数]，逗号分隔，例如 522:2,681:0.5",
+            hint = "留空不限速",
+            iconName = "ic_debug",
+            useFullKey = true,
+            onChanged = { PkgSendScheduler.reloadConfig() }
+        )
+
+        addSwitchPreference(
+            key = Constants.PrekSendBlockWhenFull,
+            title = "发包队列满时等待",
+            summary = "开启后队列满时阻塞调用线程直到有空位（最多 30s），关闭时直接拒绝；主线程调用始终拒绝",
+            iconName = "ic_debug",
+            useFullKey = true,
+            onChanged = { PkgSendScheduler.reloadConfig() }
+        )
+
         // ==========================================
         // 兼容 (Compatibility)
         // ==========================================
@@ -0,0 +1,291 @@
+package moe.ouom.wekit.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 两个 Protobuf 数据包的结构化差异
+ * 每层按 (字段号, 第几次出现) 对齐，字节完全相同的 LEN 字段直接跳过，只有两侧都是子消息时才向下比较。
+ * 路径语法与 {@link ProtoReader#find(String)} / {@link ProtoPatch} 相同，如 "3/1[2]/5"
+ * <pre>
+ * for (ProtoDiff.Change c : ProtoDiff.diff(before, after)) Log.i(TAG, c.toString());
+ * </pre>
+ */
+public final class ProtoDiff {
+
+    public static final int ADDED = 0;
+    public static final int REMOVED = 1;
+    public static final int CHANGED = 2;
+    /**
+     * 差异数量超过上限，之后的差异未列出
+     */
+    public static final int TRUNCATED = 3;
+
+    private static final int MAX_DEPTH = 64;
+    private static final int DEFAULT_MAX_CHANGES = 256;
+    private static final int MAX_TEXT_CHARS = 80;
+    private static final int MAX_HEX_BYTES = 32;
+
+    public static final class Change {
+        public final int kind;
+        public final String path;
+        public final String before;
+        public final String after;
+
+        Change(int kind, String path, String before, String after) {
+            this.kind = kind;
+            this.path = path;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case ADDED:
+                    return "+ " + path + ": " + after;
+                case REMOVED:
+                    return "- " + path + ": " + before;
+                case TRUNCATED:
+                    return "... more changes omitted";
+                default:
+                    return "~ " + path + ": " + before + " -> " + after;
+            }
+        }
+    }
+
+    /**
+     * 一层消息中的全部字段，按出现顺序存放
+     */
+    private static final class Level {
+        int size;
+        int[] numbers = new int[16];
+        int[] occurrences = new int[16];
+        int[] wireTypes = new int[16];
+        int[] offsets = new int[16];
+        int[] lengths = new int[16];
+        long[] values = new long[16];
+
+        void add(ProtoReader r, int occurrence) {
+            if (size == numbers.length) {
+                int n = size * 2;
+                numbers = Arrays.copyOf(numbers, n);
+                occurrences = Arrays.copyOf(occurrences, n);
+                wireTypes = Arrays.copyOf(wireTypes, n);
+                offsets = Arrays.copyOf(offsets, n);
+                lengths = Arrays.copyOf(lengths, n);
+                values = Arrays.copyOf(values, n);
+            }
+            numbers[size] = r.getFieldNumber();
+            occurrences[size] = occurrence;
+            wireTypes[size] = r.getWireType();
+            offsets[size] = r.getValueOffset();
+            lengths[size] = r.getValueLength();
+            values[size] = r.getLong();
+            size++;
+        }
+
+        long key(int i) {
+            return (long) numbers[i] << 32 | occurrences[i];
+        }
+    }
+
+    private final byte[] a;
+    private final byte[] b;
+    private final int maxChanges;
+    private final List<Change> changes = new ArrayList<>();
+    private boolean truncated;
+
+    private ProtoDiff(byte[] a, byte[] b, int maxChanges) {
+        this.a = a;
+        this.b = b;
+        this.maxChanges = maxChanges;
+    }
+
+    public static List<Change> diff(byte[] before, byte[] after) {
+        return diff(before, after, DEFAULT_MAX_CHANGES);
+    }
+
+    /**
+     * 比较两个数据包（可带 4 字节包头），最多返回 maxChanges 条差异，超出时末尾附加一条 TRUNCATED
+     * 任一侧整体无法按 Protobuf 解析时返回一条根路径 "" 上的 CHANGED
+     */
+    public static List<Change> diff(byte[] before, byte[] after, int maxChanges) {
+        ProtoDiff d = new ProtoDiff(before, after, maxChanges);
+        int ao = WeProtoData.hasPacketPrefix(before) ? 4 : 0;
+        int bo = WeProtoData.hasPacketPrefix(after) ? 4 : 0;
+        d.diffMessage(ao, before.length - ao, bo, after.length - bo, "", 0);
+        if (d.truncated) d.changes.add(new Change(TRUNCATED, "", null, null));
+        return d.changes;
+    }
+
+    public static List<Change> diff(WeProtoData before, WeProtoData after) {
+        return diff(before.toPacketBytes(), after.toPacketBytes());
+    }
+
+    /**
+     * 逐行写出差异
+     */
+    public static void write(List<Change> changes, Appendable out) throws IOException {
+        for (Change c : changes) {
+            out.append(c.toString()).append('\n');
+        }
+    }
+
+    private void add(int kind, String path, String before, String after) {
+        if (changes.size() < maxChanges) {
+            changes.add(new Change(kind, path, before, after));
+        } else {
+            truncated = true;
+        }
+    }
+
+    private void diffMessage(int ao, int al, int bo, int bl, String path, int depth) {
+        if (sameBytes(ao, al, bo, bl)) return;
+
+        Level la = parse(a, ao, al);
+        Level lb = parse(b, bo, bl);
+        if (la == null || lb == null) {
+            add(CHANGED, path, formatLen(a, ao, al), formatLen(b, bo, bl));
+            return;
+        }
+
+        // 顺序一致的前缀直接逐一比较，绝大多数篡改只改值不改字段顺序
+        int p = 0;
+        while (p < la.size && p < lb.size && la.numbers[p] == lb.numbers[p]) {
+            if (truncated) return;
+            compare(la, p, lb, p, path, depth);
+            p++;
+        }
+        if (p == la.size && p == lb.size) return;
+
+        Map<Long, Integer> rest = new HashMap<>();
+        for (int j = p; j < lb.size; j++) rest.put(lb.key(j), j);
+        boolean[] matched = new boolean[lb.size];
+        for (int i = p; i < la.size; i++) {
+            if (truncated) return;
+            Integer j = rest.get(la.key(i));
+            if (j != null) {
+                matched[j] = true;
+                compare(la, i, lb, j, path, depth);
+            } else {
+                add(REMOVED, childPath(path, la, i), format(a, la, i), null);
+            }
+        }
+        for (int j = p; j < lb.size; j++) {
+            if (matched[j]) continue;
+            if (truncated) return;
+            add(ADDED, childPath(path, lb, j), null, format(b, lb, j));
+        }
+    }
+
+    private void compare(Level la, int i, Level lb, int j, String path, int depth) {
+        int wt = la.wireTypes[i];
+        if (wt != lb.wireTypes[j]) {
+            add(CHANGED, childPath(path, la, i), format(a, la, i), format(b, lb, j));
+            return;
+        }
+        if (wt != ProtoReader.WIRETYPE_LENGTH_DELIMITED) {
+            if (la.values[i] != lb.values[j]) {
+                add(CHANGED, childPath(path, la, i), format(a, la, i), format(b, lb, j));
+            }
+            return;
+        }
+
+        int ao = la.offsets[i];
+        int al = la.lengths[i];
+        int bo = lb.offsets[j];
+        int bl = lb.lengths[j];
+        if (sameBytes(ao, al, bo, bl)) return;
+
+        // 两侧都是文本时按文本展示，避免恰好能按结构解析的字符串被拆开比较
+        boolean text = WeProtoData.isUtf8(a, ao, al, true) && WeProtoData.isUtf8(b, bo, bl, true);
+        if (!text && depth < MAX_DEPTH && ProtoReader.isMessage(a, ao, al) && ProtoReader.isMessage(b, bo, bl)) {
+            diffMessage(ao, al, bo, bl, childPath(path, la, i), depth + 1);
+            return;
+        }
+        add(CHANGED, childPath(path, la, i), formatLen(a, ao, al), formatLen(b, bo, bl));
+    }
+
+    // Arrays.equals 的区间重载需要 API 33
+    private boolean sameBytes(int ao, int al, int bo, int bl) {
+        if (al != bl) return false;
+        for (int k = 0; k < al; k++) {
+            if (a[ao + k] != b[bo + k]) return false;
+        }
+        return true;
+    }
+
+    private static Level parse(byte[] buf, int off, int len) {
+        try {
+            Level level = new Level();
+            int[] small = new int[32];
+            Map<Integer, Integer> large = null;
+            ProtoReader r = new ProtoReader(buf, off, len);
+            while (r.next()) {
+                int n = r.getFieldNumber();
+                int occ;
+                if (n < small.length) {
+                    occ = small[n]++;
+                } else {
+                    if (large == null) large = new HashMap<>();
+                    Integer c = large.get(n);
+                    occ = c == null ? 0 : c;
+                    large.put(n, occ + 1);
+                }
+                level.add(r, occ);
+            }
+            return level;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String childPath(String parent, Level l, int i) {
+        String seg = l.occurrences[i] == 0
+                ? String.valueOf(l.numbers[i])
+                : l.numbers[i] + "[" + l.occurrences[i] + "]";
+        return parent.isEmpty() ? seg : parent + "/" + seg;
+    }
+
+    private static String format(byte[] buf, Level l, int i) {
+        switch (l.wireTypes[i]) {
+            case ProtoReader.WIRETYPE_LENGTH_DELIMITED:
+                return formatLen(buf, l.offsets[i], l.lengths[i]);
+            case ProtoReader.WIRETYPE_FIXED32:
+                return "fixed32->" + (int) l.values[i];
+            case ProtoReader.WIRETYPE_FIXED64:
+                return "fixed64->" + l.values[i];
+            default:
+                return String.valueOf(l.values[i]);
+        }
+    }
+
+    private static String formatLen(byte[] buf, int off, int len) {
+        if (WeProtoData.isUtf8(buf, off, len, true)) {
+            String s = new String(buf, off, len, StandardCharsets.UTF_8);
+            StringBuilder sb = new StringBuilder(Math.min(s.length(), MAX_TEXT_CHARS) + 16).append('"');
+            int n = Math.min(s.length(), MAX_TEXT_CHARS);
+            for (int k = 0; k < n; k++) {
+                char c = s.charAt(k);
+                if (c == '"' || c == '\\') sb.append('\\').append(c);
+                else if (c == '\n') sb.append("\\n");
+                else if (c == '\r') sb.append("\\r");
+                else if (c == '\t') sb.append("\\t");
+                else sb.append(c);
+            }
+            sb.append('"');
+            if (s.length() > n) sb.append("...(+").append(s.length() - n).append(" chars)");
+            return sb.toString();
+        }
+        if (ProtoReader.isMessage(buf, off, len)) return "{message " + len + " bytes}";
+        int n = Math.min(len, MAX_HEX_BYTES);
+        String hex = "hex->" + WeProtoData.bytesToHex(buf, off, n);
+        return len > n ? hex + "...(+" + (len - n) + " bytes)" : hex;
+    }
+}
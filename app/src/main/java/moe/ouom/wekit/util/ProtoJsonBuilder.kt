@@ -1,89 +1,243 @@
 package moe.ouom.wekit.util
 
+import com.google.protobuf.CodedOutputStream
+import com.google.protobuf.WireFormat
 import org.json.JSONArray
 import org.json.JSONObject
-import java.io.ByteArrayOutputStream
-import java.nio.charset.StandardCharsets
+import java.math.BigInteger
 
 /**
  * 通用 JSON -> Protobuf 字节流转换器
+ *
+ * 键为字段号，值按类型编码：
+ * - 整数 / Boolean：varint
+ * - JSONObject：子消息，JSONArray：repeated 字段
+ * - ByteArray：原始字节
+ * - 字符串：UTF-8 文本，带以下前缀时按指定类型编码（与 WeProtoData.toJSON 的 hex-> 约定一致）
+ *   hex-> / varint-> / sint32-> / sint64-> / fixed32-> / sfixed32-> / fixed64-> / sfixed64-> / float-> / double->
+ *
+ * 先计算每层子消息的长度，再一次写入大小确定的数组，嵌套层级不会产生额外的拷贝
  */
 object ProtoJsonBuilder {
 
-    private const val WIRETYPE_VARINT = 0
-    private const val WIRETYPE_LENGTH_DELIMITED = 2
+    private const val MAX_DEPTH = 100
+
+    // 显式类型前缀
+    private const val T_STRING = 0
+    private const val T_HEX = 1
+    private const val T_VARINT = 2
+    private const val T_SINT32 = 3
+    private const val T_SINT64 = 4
+    private const val T_FIXED32 = 5
+    private const val T_FIXED64 = 6
+    private const val T_FLOAT = 7
+    private const val T_DOUBLE = 8
+
+    private val PREFIXES = arrayOf(
+        "hex" to T_HEX,
+        "varint" to T_VARINT,
+        "sint32" to T_SINT32,
+        "sint64" to T_SINT64,
+        "fixed32" to T_FIXED32,
+        "sfixed32" to T_FIXED32,
+        "fixed64" to T_FIXED64,
+        "sfixed64" to T_FIXED64,
+        "float" to T_FLOAT,
+        "double" to T_DOUBLE,
+    )
+
+    /**
+     * 按先序记录每个子消息的长度，写入阶段按相同顺序取用
+     */
+    private class SizeTable {
+        var sizes = IntArray(16)
+        var count = 0
+        var cursor = 0
+
+        fun reserve(): Int {
+            if (count == sizes.size) sizes = sizes.copyOf(count * 2)
+            return count++
+        }
+
+        fun next(): Int = sizes[cursor++]
+    }
 
     fun makeBytes(json: JSONObject): ByteArray {
-        val output = ByteArrayOutputStream()
+        val table = SizeTable()
+        val size = messageSize(json, table, 0)
+        val out = ByteArray(size)
+        val cos = CodedOutputStream.newInstance(out)
+        writeMessage(cos, json, table)
+        cos.checkNoSpaceLeft()
+        return out
+    }
+
+    // ========== 长度计算 ==========
+
+    private fun messageSize(json: JSONObject, table: SizeTable, depth: Int): Int {
+        if (depth > MAX_DEPTH) throw IllegalArgumentException("JSON nesting too deep")
+        var size = 0
         val keys = json.keys()
         while (keys.hasNext()) {
             val key = keys.next()
             val tag = key.toIntOrNull() ?: continue
-            val value = json.get(key)
-            writeTagData(output, tag, value)
+            size += fieldSize(tag, json.opt(key), table, depth)
         }
-        return output.toByteArray()
+        return size
     }
 
-    private fun writeTagData(os: ByteArrayOutputStream, tag: Int, value: Any?) {
-        when (value) {
-            is Int -> writeVarintTag(os, tag, value.toLong())
-            is Long -> writeVarintTag(os, tag, value)
-            is Boolean -> writeVarintTag(os, tag, if (value) 1L else 0L)
-            is String -> writeStringTag(os, tag, value)
-            is JSONObject -> {
-                val nestedBytes = makeBytes(value)
-                writeLengthDelimitedTag(os, tag, nestedBytes)
-            }
+    private fun fieldSize(tag: Int, value: Any?, table: SizeTable, depth: Int): Int {
+        return when (value) {
+            null, JSONObject.NULL -> 0
             is JSONArray -> {
-                for (i in 0 until value.length()) {
-                    writeTagData(os, tag, value.get(i))
-                }
+                var size = 0
+                for (i in 0 until value.length()) size += fieldSize(tag, value.opt(i), table, depth)
+                size
+            }
+            is JSONObject -> {
+                val idx = table.reserve()
+                val len = messageSize(value, table, depth + 1)
+                table.sizes[idx] = len
+                lenFieldSize(tag, len)
             }
-            // 兼容部分数字可能被识别为 String 的情况
-            else -> if (value != null) writeStringTag(os, tag, value.toString())
+            is ByteArray -> lenFieldSize(tag, value.size)
+            is Int, is Long, is Short, is Byte, is BigInteger ->
+                CodedOutputStream.computeUInt64Size(tag, (value as Number).toLong())
+            is Boolean -> CodedOutputStream.computeUInt64Size(tag, if (value) 1L else 0L)
+            is String -> typedSize(tag, value)
+            // 兼容部分数字可能被识别为其他类型的情况
+            else -> typedSize(tag, value.toString())
         }
     }
 
-    private fun writeVarintTag(os: ByteArrayOutputStream, tag: Int, value: Long) {
-        writeRawVarint32(os, (tag shl 3) or WIRETYPE_VARINT)
-        writeRawVarint64(os, value)
+    private fun typedSize(tag: Int, s: String): Int {
+        val sep = s.indexOf("->")
+        val type = typeOf(s, sep)
+        if (type == T_STRING) {
+            val len = CodedOutputStream.computeStringSizeNoTag(s)
+            return CodedOutputStream.computeTagSize(tag) + len
+        }
+        val body = s.substring(sep + 2)
+        return when (type) {
+            T_HEX -> lenFieldSize(tag, (countHexDigits(body) + 1) / 2)
+            T_VARINT -> CodedOutputStream.computeUInt64Size(tag, parseLong(body))
+            T_SINT32 -> CodedOutputStream.computeSInt32Size(tag, parseLong(body).toInt())
+            T_SINT64 -> CodedOutputStream.computeSInt64Size(tag, parseLong(body))
+            T_FIXED32, T_FLOAT -> CodedOutputStream.computeFixed32Size(tag, 0)
+            else -> CodedOutputStream.computeFixed64Size(tag, 0)
+        }
     }
 
-    private fun writeStringTag(os: ByteArrayOutputStream, tag: Int, value: String) {
-        val bytes = value.toByteArray(StandardCharsets.UTF_8)
-        writeLengthDelimitedTag(os, tag, bytes)
+    private fun lenFieldSize(tag: Int, len: Int): Int =
+        CodedOutputStream.computeTagSize(tag) + CodedOutputStream.computeUInt32SizeNoTag(len) + len
+
+    // ========== 写入 ==========
+
+    private fun writeMessage(cos: CodedOutputStream, json: JSONObject, table: SizeTable) {
+        val keys = json.keys()
+        while (keys.hasNext()) {
+            val key = keys.next()
+            val tag = key.toIntOrNull() ?: continue
+            writeField(cos, tag, json.opt(key), table)
+        }
     }
 
-    private fun writeLengthDelimitedTag(os: ByteArrayOutputStream, tag: Int, bytes: ByteArray) {
-        writeRawVarint32(os, (tag shl 3) or WIRETYPE_LENGTH_DELIMITED)
-        writeRawVarint32(os, bytes.size)
-        os.write(bytes)
+    private fun writeField(cos: CodedOutputStream, tag: Int, value: Any?, table: SizeTable) {
+        when (value) {
+            null, JSONObject.NULL -> {}
+            is JSONArray -> {
+                for (i in 0 until value.length()) writeField(cos, tag, value.opt(i), table)
+            }
+            is JSONObject -> {
+                writeLenHeader(cos, tag, table.next())
+                writeMessage(cos, value, table)
+            }
+            is ByteArray -> {
+                writeLenHeader(cos, tag, value.size)
+                cos.writeRawBytes(value)
+            }
+            is Int, is Long, is Short, is Byte, is BigInteger ->
+                cos.writeUInt64(tag, (value as Number).toLong())
+            is Boolean -> cos.writeUInt64(tag, if (value) 1L else 0L)
+            is String -> writeTyped(cos, tag, value)
+            else -> writeTyped(cos, tag, value.toString())
+        }
     }
 
-    private fun writeRawVarint32(os: ByteArrayOutputStream, value: Int) {
-        var v = value
-        while (true) {
-            if ((v and 0x7F.inv()) == 0) {
-                os.write(v)
-                return
-            } else {
-                os.write((v and 0x7F) or 0x80)
-                v = v ushr 7
+    private fun writeTyped(cos: CodedOutputStream, tag: Int, s: String) {
+        val sep = s.indexOf("->")
+        val type = typeOf(s, sep)
+        if (type == T_STRING) {
+            cos.writeString(tag, s)
+            return
+        }
+        val body = s.substring(sep + 2)
+        when (type) {
+            T_HEX -> {
+                writeLenHeader(cos, tag, (countHexDigits(body) + 1) / 2)
+                writeHex(cos, body)
             }
+            T_VARINT -> cos.writeUInt64(tag, parseLong(body))
+            T_SINT32 -> cos.writeSInt32(tag, parseLong(body).toInt())
+            T_SINT64 -> cos.writeSInt64(tag, parseLong(body))
+            T_FIXED32 -> cos.writeFixed32(tag, parseLong(body).toInt())
+            T_FIXED64 -> cos.writeFixed64(tag, parseLong(body))
+            T_FLOAT -> cos.writeFloat(tag, body.trim().toFloat())
+            else -> cos.writeDouble(tag, body.trim().toDouble())
+        }
+    }
+
+    private fun writeLenHeader(cos: CodedOutputStream, tag: Int, len: Int) {
+        cos.writeTag(tag, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+        cos.writeUInt32NoTag(len)
+    }
+
+    // ========== 工具 ==========
+
+    private fun typeOf(s: String, sep: Int): Int {
+        if (sep <= 0) return T_STRING
+        for ((name, type) in PREFIXES) {
+            if (name.length == sep && s.startsWith(name)) return type
         }
+        return T_STRING
+    }
+
+    /**
+     * 同时接受有符号与无符号写法，例如 fixed64->18446744073709551615 与 fixed64->-1 等价
+     */
+    private fun parseLong(s: String): Long {
+        val t = s.trim()
+        if (t.startsWith("0x") || t.startsWith("0X")) return java.lang.Long.parseUnsignedLong(t.substring(2), 16)
+        return t.toLongOrNull() ?: java.lang.Long.parseUnsignedLong(t)
+    }
+
+    private fun hexValue(c: Char): Int = when (c) {
+        in '0'..'9' -> c - '0'
+        in 'a'..'f' -> c - 'a' + 10
+        in 'A'..'F' -> c - 'A' + 10
+        else -> -1
+    }
+
+    private fun countHexDigits(s: String): Int {
+        var n = 0
+        for (c in s) if (hexValue(c) >= 0) n++
+        return n
     }
 
-    private fun writeRawVarint64(os: ByteArrayOutputStream, value: Long) {
-        var v = value
-        while (true) {
-            if ((v and 0x7F.inv()) == 0L) {
-                os.write(v.toInt())
-                return
+    /**
+     * 跳过非 hex 字符，奇数位时首字节只取一位（与 WeProtoData.fromJSON 使用的 hexToBytes 一致）
+     */
+    private fun writeHex(cos: CodedOutputStream, s: String) {
+        var pending = if (countHexDigits(s) % 2 == 1) 0 else -1
+        for (c in s) {
+            val v = hexValue(c)
+            if (v < 0) continue
+            if (pending < 0) {
+                pending = v
             } else {
-                os.write((v.toInt() and 0x7F) or 0x80)
-                v = v ushr 7
+                cos.writeRawByte(((pending shl 4) or v).toByte())
+                pending = -1
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,206 @@
+package moe.ouom.wekit.util;
+
+import java.nio.ByteBuffer;
+
+import moe.ouom.wekit.config.WeConfig;
+import moe.ouom.wekit.util.common.SyncUtils;
+import moe.ouom.wekit.util.log.WeLogger;
+
+/**
+ * WeProtoData LEN 字段分类缓存
+ * 以 (cgiId, 字段路径) 为键记录该位置上一次判定的结果（子消息 / 文本 / hex），
+ * 下次解析同一 CGI 时先按记录的结果做一次扫描验证，只有未命中或验证失败才回退到试探解析并重新记录
+ * <p>
+ * 结果保存在 WeConfig.getCache() 中，跨启动保留。读取无锁，
+ * 偶尔读到旧值只会让对应字段多做一次试探，不影响正确性
+ */
+public final class ProtoLenHints {
+
+    private static final String TAG = "ProtoLenHints";
+    private static final String CACHE_KEY = "proto_len_hints";
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_ENTRIES = 1 << 16;
+    private static final long SAVE_DELAY_MS = 10_000L;
+
+    public static final byte UNKNOWN = 0;
+    public static final byte SUB = 1;
+    public static final byte UTF8 = 2;
+    public static final byte HEX = 3;
+
+    /**
+     * 最外层消息的路径值
+     */
+    public static final long ROOT = 0x6A09E667F3BCC909L;
+
+    private static final class Table {
+        final long[] keys;
+        final byte[] kinds;
+        final int mask;
+        int size;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            kinds = new byte[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private static volatile Table table;
+    private static boolean savePending;
+
+    private ProtoLenHints() {
+    }
+
+    /**
+     * 子字段的路径值，重复字段的各次出现共用同一路径
+     */
+    public static long childPath(long parentPath, int fieldNumber) {
+        return mix(parentPath * 31 + fieldNumber);
+    }
+
+    private static long key(int cgiId, long path) {
+        long k = mix(path ^ ((long) cgiId << 32 | (cgiId & 0xFFFFFFFFL)));
+        return k != 0 ? k : 1;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static Table table() {
+        Table t = table;
+        if (t != null) return t;
+        synchronized (ProtoLenHints.class) {
+            if (table == null) table = load();
+            return table;
+        }
+    }
+
+    public static byte get(int cgiId, long path) {
+        Table t = table();
+        long k = key(cgiId, path);
+        for (int i = (int) k & t.mask; ; i = (i + 1) & t.mask) {
+            long cur = t.keys[i];
+            if (cur == k) return t.kinds[i];
+            if (cur == 0) return UNKNOWN;
+        }
+    }
+
+    public static void put(int cgiId, long path, byte kind) {
+        if (kind == UNKNOWN) return;
+        long k = key(cgiId, path);
+        synchronized (ProtoLenHints.class) {
+            Table t = table();
+            int i = (int) k & t.mask;
+            while (t.keys[i] != 0 && t.keys[i] != k) i = (i + 1) & t.mask;
+            if (t.keys[i] == k) {
+                if (t.kinds[i] == kind) return;
+                t.kinds[i] = kind;
+            } else {
+                if (t.size >= MAX_ENTRIES) return;
+                if ((t.size + 1) * 2 > t.keys.length) {
+                    t = grow(t);
+                    i = (int) k & t.mask;
+                    while (t.keys[i] != 0) i = (i + 1) & t.mask;
+                }
+                // 先写分类再写键，并发读取到键时分类已就绪
+                t.kinds[i] = kind;
+                t.keys[i] = k;
+                t.size++;
+            }
+            scheduleSave();
+        }
+    }
+
+    private static Table grow(Table old) {
+        Table t = new Table(old.keys.length * 2);
+        for (int j = 0; j < old.keys.length; j++) {
+            long k = old.keys[j];
+            if (k == 0) continue;
+            int i = (int) k & t.mask;
+            while (t.keys[i] != 0) i = (i + 1) & t.mask;
+            t.kinds[i] = old.kinds[j];
+            t.keys[i] = k;
+        }
+        t.size = old.size;
+        table = t;
+        return t;
+    }
+
+    public static synchronized void clear() {
+        table = new Table(1024);
+        try {
+            WeConfig.getCache().remove(CACHE_KEY);
+        } catch (Throwable e) {
+            WeLogger.w(TAG, "clear failed: " + e);
+        }
+    }
+
+    // ========== 持久化 ==========
+
+    private static Table load() {
+        try {
+            byte[] data = WeConfig.getCache().getBytes(CACHE_KEY, null);
+            if (data != null && data.length >= 8) {
+                ByteBuffer bb = ByteBuffer.wrap(data);
+                int version = bb.getInt();
+                int count = bb.getInt();
+                if (version == FORMAT_VERSION && count >= 0 && count <= MAX_ENTRIES
+                        && bb.remaining() == count * 9) {
+                    int capacity = 1024;
+                    while (capacity < count * 2) capacity <<= 1;
+                    Table t = new Table(capacity);
+                    for (int n = 0; n < count; n++) {
+                        long k = bb.getLong();
+                        byte kind = bb.get();
+                        if (k == 0 || kind == UNKNOWN) continue;
+                        int i = (int) k & t.mask;
+                        while (t.keys[i] != 0 && t.keys[i] != k) i = (i + 1) & t.mask;
+                        if (t.keys[i] == 0) t.size++;
+                        t.kinds[i] = kind;
+                        t.keys[i] = k;
+                    }
+                    return t;
+                }
+            }
+        } catch (Throwable e) {
+            // 没有 MMKV（如 JVM 单元环境）时只在内存中使用
+            WeLogger.w(TAG, "load failed: " + e);
+        }
+        return new Table(1024);
+    }
+
+    private static void scheduleSave() {
+        if (savePending) return;
+        savePending = true;
+        try {
+            SyncUtils.postDelayed(() -> SyncUtils.async(ProtoLenHints::save), SAVE_DELAY_MS);
+        } catch (Throwable e) {
+            savePending = false;
+        }
+    }
+
+    private static void save() {
+        byte[] data;
+        synchronized (ProtoLenHints.class) {
+            savePending = false;
+            Table t = table();
+            ByteBuffer bb = ByteBuffer.allocate(8 + t.size * 9);
+            bb.putInt(FORMAT_VERSION);
+            bb.putInt(t.size);
+            for (int i = 0; i < t.keys.length; i++) {
+                if (t.keys[i] == 0) continue;
+                bb.putLong(t.keys[i]);
+                bb.put(t.kinds[i]);
+            }
+            data = bb.array();
+        }
+        try {
+            WeConfig.getCache().putBytes(CACHE_KEY, data);
+        } catch (Throwable e) {
+            WeLogger.w(TAG, "save failed: " + e);
+        }
+    }
+}
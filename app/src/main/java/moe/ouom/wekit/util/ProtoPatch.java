@@ -0,0 +1,343 @@
+package moe.ouom.wekit.util;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import moe.ouom.wekit.util.log.WeLogger;
+
+/**
+ * Protobuf 字节级补丁
+ * 按路径（与 {@link ProtoReader#find(String)} 语法相同）描述修改，applyTo 时直接在原始字节上拼接，
+ * 并修正所有祖先 LEN 字段的长度前缀，只拷贝一次未改动的区段，不解析、不重新编码整个数据包
+ * <pre>
+ * byte[] out = new ProtoPatch()
+ *         .setVarint("3/1/5", 0)
+ *         .setString("2/1", "hello")
+ *         .remove("4[1]")
+ *         .applyTo(bytes);
+ * </pre>
+ */
+public final class ProtoPatch {
+
+    private static final String TAG = "ProtoPatch";
+
+    private static final int OP_SET = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_ADD = 2;
+
+    private static final class Edit {
+        final int op;
+        final String pathString;
+        final int[] path;
+        final byte[] field;
+
+        Edit(int op, String pathString, int[] path, byte[] field) {
+            this.op = op;
+            this.pathString = pathString;
+            this.path = path;
+            this.field = field;
+        }
+    }
+
+    /**
+     * 被修改字段所在的 LEN 祖先节点
+     */
+    private static final class Node {
+        final int lengthOffset;
+        final int valueOffset;
+        final int valueLength;
+        final int depth;
+        final Node parent;
+        int delta;
+
+        Node(int lengthOffset, int valueOffset, int valueLength, int depth, Node parent) {
+            this.lengthOffset = lengthOffset;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.depth = depth;
+            this.parent = parent;
+        }
+    }
+
+    private static final class Splice {
+        final int start;
+        final int end;
+        final byte[] bytes;
+        final int depth;
+
+        Splice(int start, int end, byte[] bytes, int depth) {
+            this.start = start;
+            this.end = end;
+            this.bytes = bytes;
+            this.depth = depth;
+        }
+    }
+
+    private final List<Edit> edits = new ArrayList<>();
+
+    public boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    public ProtoPatch setVarint(String path, long value) {
+        int[] p = parsePath(path, false);
+        return add(OP_SET, path, p, encodeVarint(lastField(p), value));
+    }
+
+    public ProtoPatch setFixed64(String path, long value) {
+        int[] p = parsePath(path, false);
+        return add(OP_SET, path, p, encodeFixed64(lastField(p), value));
+    }
+
+    public ProtoPatch setFixed32(String path, int value) {
+        int[] p = parsePath(path, false);
+        return add(OP_SET, path, p, encodeFixed32(lastField(p), value));
+    }
+
+    public ProtoPatch setString(String path, String value) {
+        return setBytes(path, value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+    }
+
+    /**
+     * 替换 LEN 字段的内容（字符串、bytes 或已编码的子消息）
+     */
+    public ProtoPatch setBytes(String path, byte[] value) {
+        int[] p = parsePath(path, false);
+        return add(OP_SET, path, p, encodeBytes(lastField(p), value));
+    }
+
+    public ProtoPatch remove(String path) {
+        return add(OP_REMOVE, path, parsePath(path, false), new byte[0]);
+    }
+
+    /**
+     * 在 parentPath 指向的子消息末尾追加字段，parentPath 为空串表示最外层
+     */
+    public ProtoPatch addVarint(String parentPath, int fieldNumber, long value) {
+        return add(OP_ADD, parentPath, parsePath(parentPath, true), encodeVarint(fieldNumber, value));
+    }
+
+    public ProtoPatch addString(String parentPath, int fieldNumber, String value) {
+        return addBytes(parentPath, fieldNumber, value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+    }
+
+    public ProtoPatch addBytes(String parentPath, int fieldNumber, byte[] value) {
+        return add(OP_ADD, parentPath, parsePath(parentPath, true), encodeBytes(fieldNumber, value));
+    }
+
+    private ProtoPatch add(int op, String pathString, int[] path, byte[] field) {
+        edits.add(new Edit(op, pathString, path, field));
+        return this;
+    }
+
+    /**
+     * 将补丁应用到数据包（可带 4 字节包头），返回新的字节数组
+     * 找不到目标的修改会被跳过；没有任何修改生效时返回 null
+     *
+     * @throws IllegalArgumentException 多个修改的区间互相覆盖时抛出，例如同时删除 "3" 和修改 "3/1"
+     */
+    public byte[] applyTo(byte[] packet) {
+        if (packet == null || edits.isEmpty()) return null;
+
+        int base = WeProtoData.hasPacketPrefix(packet) ? 4 : 0;
+        ProtoReader reader = new ProtoReader(packet, base, packet.length - base);
+        Map<Integer, Node> nodes = new HashMap<>();
+        List<Splice> splices = new ArrayList<>();
+
+        for (Edit e : edits) {
+            try {
+                if (!resolve(reader.rewind(), e, packet.length, nodes, splices)) {
+                    WeLogger.w(TAG, "path not found, skip: " + e.pathString);
+                }
+            } catch (InvalidProtocolBufferException ex) {
+                WeLogger.w(TAG, "malformed packet at " + e.pathString + ": " + ex.getMessage());
+            }
+        }
+        if (splices.isEmpty()) return null;
+
+        // 由内向外修正长度前缀，内层前缀长度的变化会继续累加到外层
+        List<Node> ordered = new ArrayList<>(nodes.values());
+        Collections.sort(ordered, (a, b) -> Integer.compare(b.depth, a.depth));
+        for (Node n : ordered) {
+            if (n.delta == 0) continue;
+            byte[] prefix = encodeLength(n.valueLength + n.delta);
+            splices.add(new Splice(n.lengthOffset, n.valueOffset, prefix, n.depth));
+            int prefixDelta = prefix.length - (n.valueOffset - n.lengthOffset);
+            for (Node p = n.parent; p != null; p = p.parent) p.delta += prefixDelta;
+        }
+
+        Collections.sort(splices, (a, b) -> {
+            if (a.start != b.start) return Integer.compare(a.start, b.start);
+            if (a.end != b.end) return Integer.compare(a.end, b.end);
+            return Integer.compare(b.depth, a.depth);
+        });
+
+        int size = packet.length;
+        for (int i = 0; i < splices.size(); i++) {
+            Splice s = splices.get(i);
+            if (i > 0 && splices.get(i - 1).end > s.start) {
+                throw new IllegalArgumentException("Overlapping edits at offset " + s.start);
+            }
+            size += s.bytes.length - (s.end - s.start);
+        }
+
+        byte[] out = new byte[size];
+        int src = 0;
+        int dst = 0;
+        for (Splice s : splices) {
+            int gap = s.start - src;
+            System.arraycopy(packet, src, out, dst, gap);
+            dst += gap;
+            System.arraycopy(s.bytes, 0, out, dst, s.bytes.length);
+            dst += s.bytes.length;
+            src = s.end;
+        }
+        System.arraycopy(packet, src, out, dst, packet.length - src);
+        return out;
+    }
+
+    private static boolean resolve(ProtoReader reader, Edit e, int packetLength,
+                                   Map<Integer, Node> nodes, List<Splice> splices)
+            throws InvalidProtocolBufferException {
+        int segments = e.path.length / 2;
+        int ancestors = e.op == OP_ADD ? segments : segments - 1;
+        Node parent = null;
+
+        for (int k = 0; k < segments; k++) {
+            if (k > 0) reader.enter();
+            if (!reader.seek(e.path[k * 2], e.path[k * 2 + 1])) return false;
+            if (k < ancestors) {
+                if (reader.getWireType() != ProtoReader.WIRETYPE_LENGTH_DELIMITED) return false;
+                Node n = nodes.get(reader.getValueOffset());
+                if (n == null) {
+                    n = new Node(reader.getLengthOffset(), reader.getValueOffset(), reader.getValueLength(), k + 1, parent);
+                    nodes.put(n.valueOffset, n);
+                }
+                parent = n;
+            }
+        }
+
+        int start;
+        int end;
+        if (e.op == OP_ADD) {
+            start = parent != null ? parent.valueOffset + parent.valueLength : packetLength;
+            end = start;
+        } else {
+            start = reader.getTagOffset();
+            end = reader.getFieldEnd();
+        }
+
+        splices.add(new Splice(start, end, e.field, ancestors + 1));
+        int delta = e.field.length - (end - start);
+        for (Node n = parent; n != null; n = n.parent) n.delta += delta;
+        return true;
+    }
+
+    /**
+     * 将 "3/1[2]/5" 解析为 [3, 0, 1, 2, 5, 0]
+     */
+    private static int[] parsePath(String path, boolean allowEmpty) {
+        if (path == null) path = "";
+        List<Integer> out = new ArrayList<>();
+        int i = 0;
+        int n = path.length();
+        while (i < n) {
+            int fn = 0;
+            int occ = 0;
+            int segStart = i;
+            while (i < n && Character.isDigit(path.charAt(i))) fn = fn * 10 + (path.charAt(i++) - '0');
+            if (i == segStart || fn == 0) throw new IllegalArgumentException("Invalid path: " + path);
+            if (i < n && path.charAt(i) == '[') {
+                i++;
+                int occStart = i;
+                while (i < n && Character.isDigit(path.charAt(i))) occ = occ * 10 + (path.charAt(i++) - '0');
+                if (i == occStart || i >= n || path.charAt(i++) != ']') {
+                    throw new IllegalArgumentException("Invalid path: " + path);
+                }
+            }
+            if (i < n && path.charAt(i++) != '/') throw new IllegalArgumentException("Invalid path: " + path);
+            out.add(fn);
+            out.add(occ);
+        }
+        if (out.isEmpty() && !allowEmpty) throw new IllegalArgumentException("Empty path");
+        int[] result = new int[out.size()];
+        for (int k = 0; k < result.length; k++) result[k] = out.get(k);
+        return result;
+    }
+
+    private static int lastField(int[] path) {
+        return path[path.length - 2];
+    }
+
+    // ========== 编码 ==========
+
+    private static byte[] encodeVarint(int fieldNumber, long value) {
+        byte[] b = new byte[CodedOutputStream.computeUInt64Size(fieldNumber, value)];
+        try {
+            CodedOutputStream out = CodedOutputStream.newInstance(b);
+            out.writeUInt64(fieldNumber, value);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return b;
+    }
+
+    private static byte[] encodeFixed64(int fieldNumber, long value) {
+        byte[] b = new byte[CodedOutputStream.computeFixed64Size(fieldNumber, value)];
+        try {
+            CodedOutputStream out = CodedOutputStream.newInstance(b);
+            out.writeFixed64(fieldNumber, value);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return b;
+    }
+
+    private static byte[] encodeFixed32(int fieldNumber, int value) {
+        byte[] b = new byte[CodedOutputStream.computeFixed32Size(fieldNumber, value)];
+        try {
+            CodedOutputStream out = CodedOutputStream.newInstance(b);
+            out.writeFixed32(fieldNumber, value);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return b;
+    }
+
+    private static byte[] encodeBytes(int fieldNumber, byte[] value) {
+        if (value == null) value = new byte[0];
+        byte[] b = new byte[CodedOutputStream.computeByteArraySize(fieldNumber, value)];
+        try {
+            CodedOutputStream out = CodedOutputStream.newInstance(b);
+            out.writeByteArray(fieldNumber, value);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return b;
+    }
+
+    private static byte[] encodeLength(int length) {
+        byte[] b = new byte[CodedOutputStream.computeUInt32SizeNoTag(length)];
+        try {
+            CodedOutputStream out = CodedOutputStream.newInstance(b);
+            out.writeUInt32NoTag(length);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return b;
+    }
+
+}
@@ -0,0 +1,426 @@
+package moe.ouom.wekit.util;
+
+import static cn.hutool.core.convert.Convert.hexToBytes;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由 {@link ProtoSchema} 编译出的编解码计划
+ * 字段类型已知，解码时直接按类型读取，不再试探子消息 / UTF-8；键使用字段名（未命名时为字段号）
+ * 已知为 repeated 的字段始终输出为数组，便于脚本按固定结构访问
+ * <pre>
+ * int[] uin = plan.path("baseRequest.uin");
+ * long v = plan.getLong(bytes, uin, 0);
+ * </pre>
+ */
+public final class ProtoPlan {
+
+    private static final class PlanField {
+        final int number;
+        final String key;
+        final int type;
+        final boolean repeated;
+        final PlanMessage message;
+
+        PlanField(int number, String key, int type, boolean repeated, PlanMessage message) {
+            this.number = number;
+            this.key = key;
+            this.type = type;
+            this.repeated = repeated;
+            this.message = message;
+        }
+    }
+
+    private static final class PlanMessage {
+        // 字段号较小时直接按下标查找，否则二分
+        final int[] numbers;
+        final PlanField[] fields;
+        final PlanField[] direct;
+        final Map<String, PlanField> byKey = new HashMap<>();
+
+        PlanMessage(List<PlanField> list) {
+            numbers = new int[list.size()];
+            fields = list.toArray(new PlanField[0]);
+            int max = 0;
+            for (int i = 0; i < fields.length; i++) {
+                numbers[i] = fields[i].number;
+                max = Math.max(max, fields[i].number);
+                byKey.put(fields[i].key, fields[i]);
+                byKey.put(String.valueOf(fields[i].number), fields[i]);
+            }
+            direct = max <= 64 ? new PlanField[max + 1] : null;
+            if (direct != null) {
+                for (PlanField f : fields) direct[f.number] = f;
+            }
+        }
+
+        PlanField get(int number) {
+            if (direct != null) return number < direct.length ? direct[number] : null;
+            int i = Arrays.binarySearch(numbers, number);
+            return i >= 0 ? fields[i] : null;
+        }
+    }
+
+    private final PlanMessage root;
+
+    ProtoPlan(ProtoSchema.Message schema) {
+        root = compile(schema, 0);
+    }
+
+    private static PlanMessage compile(ProtoSchema.Message m, int depth) {
+        List<PlanField> list = new ArrayList<>();
+        for (ProtoSchema.Field f : m.fields.values()) {
+            int type = f.getType();
+            PlanMessage sub = null;
+            if (type == ProtoSchema.TYPE_MESSAGE && f.message != null && depth < 64) {
+                sub = compile(f.message, depth + 1);
+            } else if (type == ProtoSchema.TYPE_MESSAGE) {
+                type = ProtoSchema.TYPE_BYTES;
+            }
+            String key = f.name != null ? f.name : String.valueOf(f.number);
+            list.add(new PlanField(f.number, key, type, f.repeated, sub));
+        }
+        return new PlanMessage(list);
+    }
+
+    // ========== 解码 ==========
+
+    /**
+     * 按计划解码数据包（可带 4 字节包头），计划中没有的字段以字段号为键按通用规则输出
+     */
+    public JSONObject decode(byte[] packet) throws Exception {
+        ProtoReader r = ProtoReader.ofPacket(packet);
+        return decodeMessage(root, r);
+    }
+
+    private static JSONObject decodeMessage(PlanMessage m, ProtoReader r) throws Exception {
+        JSONObject obj = new JSONObject();
+        while (r.next()) {
+            PlanField f = m != null ? m.get(r.getFieldNumber()) : null;
+            Object v;
+            String key;
+            boolean repeated;
+            if (f != null && matchesWireType(f.type, r.getWireType())) {
+                key = f.key;
+                repeated = f.repeated;
+                v = decodeValue(f, r);
+            } else {
+                key = String.valueOf(r.getFieldNumber());
+                repeated = false;
+                v = decodeGeneric(r);
+            }
+            put(obj, key, v, repeated);
+        }
+        return obj;
+    }
+
+    private static boolean matchesWireType(int type, int wireType) {
+        switch (type) {
+            case ProtoSchema.TYPE_VARINT:
+                return wireType == ProtoReader.WIRETYPE_VARINT;
+            case ProtoSchema.TYPE_FIXED64:
+                return wireType == ProtoReader.WIRETYPE_FIXED64;
+            case ProtoSchema.TYPE_FIXED32:
+                return wireType == ProtoReader.WIRETYPE_FIXED32;
+            case ProtoSchema.TYPE_MESSAGE:
+            case ProtoSchema.TYPE_STRING:
+            case ProtoSchema.TYPE_BYTES:
+                return wireType == ProtoReader.WIRETYPE_LENGTH_DELIMITED;
+            default:
+                return false;
+        }
+    }
+
+    private static Object decodeValue(PlanField f, ProtoReader r) throws Exception {
+        switch (f.type) {
+            case ProtoSchema.TYPE_VARINT:
+            case ProtoSchema.TYPE_FIXED64:
+                return r.getLong();
+            case ProtoSchema.TYPE_FIXED32:
+                return r.getInt();
+            case ProtoSchema.TYPE_STRING: {
+                // 个别样本不是合法 UTF-8 时按 hex 输出，保证能原样编码回去
+                byte[] raw = r.getBytes();
+                if (WeProtoData.isUtf8(raw, 0, raw.length, false)) return new String(raw, StandardCharsets.UTF_8);
+                return "hex->" + WeProtoData.bytesToHex(raw);
+            }
+            case ProtoSchema.TYPE_MESSAGE: {
+                int off = r.getValueOffset();
+                int len = r.getValueLength();
+                r.enter();
+                try {
+                    return decodeMessage(f.message, r);
+                } catch (Exception e) {
+                    // 与计划不符时退回 hex
+                    return "hex->" + WeProtoData.bytesToHex(r.getBytes(off, len));
+                } finally {
+                    r.exit();
+                }
+            }
+            default:
+                return "hex->" + WeProtoData.bytesToHex(r.getBytes());
+        }
+    }
+
+    private static Object decodeGeneric(ProtoReader r) throws Exception {
+        if (r.getWireType() == ProtoReader.WIRETYPE_FIXED32) return r.getInt();
+        if (r.getWireType() != ProtoReader.WIRETYPE_LENGTH_DELIMITED) return r.getLong();
+        byte[] raw = r.getBytes();
+        return WeProtoData.lenValueToJson(raw, 0, raw.length);
+    }
+
+    private static void put(JSONObject obj, String key, Object v, boolean repeated) throws Exception {
+        if (v == null) return;
+        Object existing = obj.opt(key);
+        if (existing == null) {
+            if (repeated) {
+                JSONArray arr = new JSONArray();
+                arr.put(v);
+                obj.put(key, arr);
+            } else {
+                obj.put(key, v);
+            }
+        } else if (existing instanceof JSONArray) {
+            ((JSONArray) existing).put(v);
+        } else {
+            JSONArray arr = new JSONArray();
+            arr.put(existing);
+            arr.put(v);
+            obj.put(key, arr);
+        }
+    }
+
+    // ========== 编码 ==========
+
+    private static final int MAX_DEPTH = 100;
+
+    // 单个值的编码方式
+    private static final int E_SKIP = 0;
+    private static final int E_VARINT = 1;
+    private static final int E_FIXED64 = 2;
+    private static final int E_FIXED32 = 3;
+    private static final int E_MESSAGE = 4;
+    private static final int E_HEX = 5;
+    private static final int E_STRING = 6;
+
+    /**
+     * 按先序记录每个子消息的长度，写入阶段按相同顺序取用（与 ProtoJsonBuilder 相同）
+     */
+    private static final class SizeTable {
+        int[] sizes = new int[16];
+        int count;
+        int cursor;
+
+        int reserve() {
+            if (count == sizes.length) sizes = Arrays.copyOf(sizes, count * 2);
+            return count++;
+        }
+
+        int next() {
+            return sizes[cursor++];
+        }
+    }
+
+    /**
+     * 将 decode 格式的 JSON 按计划编码为消息体，键可以是字段名或字段号
+     * 先计算每层子消息的长度，再一次写入大小确定的数组
+     */
+    public byte[] encode(JSONObject obj) throws IOException {
+        SizeTable table = new SizeTable();
+        byte[] out = new byte[messageSize(root, obj, table, 0)];
+        CodedOutputStream cos = CodedOutputStream.newInstance(out);
+        writeMessage(cos, root, obj, table);
+        cos.checkNoSpaceLeft();
+        return out;
+    }
+
+    private static PlanField fieldOf(PlanMessage m, String key) {
+        return m != null ? m.byKey.get(key) : null;
+    }
+
+    /**
+     * 已命名字段用字段号作键时，说明 decode 时线型与计划不符，按通用规则编码
+     */
+    private static PlanField plannedOf(PlanField f, String key) {
+        return f != null && f.key.equals(key) ? f : null;
+    }
+
+    private static int numberOf(PlanField f, String key) throws IOException {
+        if (f != null) return f.number;
+        try {
+            return Integer.parseInt(key);
+        } catch (NumberFormatException e) {
+            throw new IOException("Unknown field: " + key);
+        }
+    }
+
+    /**
+     * 计划中的类型只在值的形态相符时使用，否则按 WeProtoData 的 JSON 约定编码：
+     * decode 时线型与计划不符的字段以字段号为键、按通用规则输出，编码时同样按通用规则写回
+     */
+    private static int kindOf(PlanField f, Object v) {
+        if (v == null || v == JSONObject.NULL) return E_SKIP;
+        if (v instanceof Number) {
+            if (f != null && f.type == ProtoSchema.TYPE_FIXED64) return E_FIXED64;
+            if (f != null && f.type == ProtoSchema.TYPE_FIXED32) return E_FIXED32;
+            return E_VARINT;
+        }
+        if (v instanceof JSONObject) return E_MESSAGE;
+        return String.valueOf(v).startsWith("hex->") ? E_HEX : E_STRING;
+    }
+
+    private static PlanMessage subPlan(PlanField f) {
+        return f != null && f.type == ProtoSchema.TYPE_MESSAGE ? f.message : null;
+    }
+
+    private static byte[] hexBytes(String s) {
+        byte[] raw = hexToBytes(s.substring(5).replaceAll("[^0-9A-Fa-f]", ""));
+        return raw != null ? raw : new byte[0];
+    }
+
+    private static int lenFieldSize(int number, int len) {
+        return CodedOutputStream.computeTagSize(number) + CodedOutputStream.computeUInt32SizeNoTag(len) + len;
+    }
+
+    // ---------- 长度计算 ----------
+
+    private static int messageSize(PlanMessage m, JSONObject obj, SizeTable table, int depth) throws IOException {
+        if (depth > MAX_DEPTH) throw new IOException("JSON nesting too deep");
+        int size = 0;
+        Iterator<String> it = obj.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            PlanField f = fieldOf(m, key);
+            int number = numberOf(f, key);
+            f = plannedOf(f, key);
+            Object v = obj.opt(key);
+            if (v instanceof JSONArray) {
+                JSONArray arr = (JSONArray) v;
+                for (int i = 0; i < arr.length(); i++) size += valueSize(f, number, arr.opt(i), table, depth);
+            } else {
+                size += valueSize(f, number, v, table, depth);
+            }
+        }
+        return size;
+    }
+
+    private static int valueSize(PlanField f, int number, Object v, SizeTable table, int depth) throws IOException {
+        switch (kindOf(f, v)) {
+            case E_VARINT:
+                return CodedOutputStream.computeUInt64Size(number, ((Number) v).longValue());
+            case E_FIXED64:
+                return CodedOutputStream.computeFixed64Size(number, 0);
+            case E_FIXED32:
+                return CodedOutputStream.computeFixed32Size(number, 0);
+            case E_MESSAGE: {
+                int idx = table.reserve();
+                int len = messageSize(subPlan(f), (JSONObject) v, table, depth + 1);
+                table.sizes[idx] = len;
+                return lenFieldSize(number, len);
+            }
+            case E_HEX:
+                return lenFieldSize(number, hexBytes(String.valueOf(v)).length);
+            case E_STRING:
+                return CodedOutputStream.computeStringSize(number, String.valueOf(v));
+            default:
+                return 0;
+        }
+    }
+
+    // ---------- 写入 ----------
+
+    private static void writeMessage(CodedOutputStream out, PlanMessage m, JSONObject obj, SizeTable table) throws IOException {
+        Iterator<String> it = obj.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            PlanField f = fieldOf(m, key);
+            int number = numberOf(f, key);
+            f = plannedOf(f, key);
+            Object v = obj.opt(key);
+            if (v instanceof JSONArray) {
+                JSONArray arr = (JSONArray) v;
+                for (int i = 0; i < arr.length(); i++) writeValue(out, f, number, arr.opt(i), table);
+            } else {
+                writeValue(out, f, number, v, table);
+            }
+        }
+    }
+
+    private static void writeValue(CodedOutputStream out, PlanField f, int number, Object v, SizeTable table) throws IOException {
+        switch (kindOf(f, v)) {
+            case E_VARINT:
+                out.writeUInt64(number, ((Number) v).longValue());
+                return;
+            case E_FIXED64:
+                out.writeFixed64(number, ((Number) v).longValue());
+                return;
+            case E_FIXED32:
+                out.writeFixed32(number, ((Number) v).intValue());
+                return;
+            case E_MESSAGE:
+                out.writeTag(number, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                out.writeUInt32NoTag(table.next());
+                writeMessage(out, subPlan(f), (JSONObject) v, table);
+                return;
+            case E_HEX:
+                out.writeByteArray(number, hexBytes(String.valueOf(v)));
+                return;
+            case E_STRING:
+                out.writeString(number, String.valueOf(v));
+                return;
+            default:
+        }
+    }
+
+    // ========== 按名称访问 ==========
+
+    /**
+     * 将 "baseRequest.uin" 或 "1/3" 形式的路径编译为字段号序列，找不到时返回 null
+     */
+    public int[] path(String path) {
+        String[] segs = path.split("[./]");
+        int[] out = new int[segs.length];
+        PlanMessage m = root;
+        for (int i = 0; i < segs.length; i++) {
+            PlanField f = m != null ? m.byKey.get(segs[i]) : null;
+            if (f == null) return null;
+            out[i] = f.number;
+            m = f.message;
+        }
+        return out;
+    }
+
+    public long getLong(byte[] packet, int[] path, long def) {
+        if (path == null) return def;
+        ProtoReader r = ProtoReader.ofPacket(packet);
+        if (!r.find(path) || r.getWireType() == ProtoReader.WIRETYPE_LENGTH_DELIMITED) return def;
+        return r.getLong();
+    }
+
+    public String getString(byte[] packet, int[] path) {
+        if (path == null) return null;
+        ProtoReader r = ProtoReader.ofPacket(packet);
+        if (!r.find(path)) return null;
+        return r.getString();
+    }
+
+    public byte[] getBytes(byte[] packet, int[] path) {
+        if (path == null) return null;
+        ProtoReader r = ProtoReader.ofPacket(packet);
+        if (!r.find(path)) return null;
+        return r.getBytes();
+    }
+}
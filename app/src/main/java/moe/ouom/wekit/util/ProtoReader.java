@@ -0,0 +1,417 @@
+package moe.ouom.wekit.util;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 流式 Protobuf 读取游标
+ * 直接在 byte[] / ByteBuffer 上按顺序遍历 tag，不构建字段树，遍历过程中不做任何分配
+ * 适合只需要读取少量字段的拦截器，例如 {@code ProtoReader.readVarint(bytes, "3/1/5", 0)}
+ * <p>
+ * 路径语法：以 / 分隔的字段号，可选 [n] 指定第 n 次出现（从 0 开始），如 "2/1[3]/4"
+ * 所有偏移量均为底层数组（或 ByteBuffer 绝对位置）中的下标
+ */
+public final class ProtoReader {
+
+    public static final int WIRETYPE_VARINT = 0;
+    public static final int WIRETYPE_FIXED64 = 1;
+    public static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    public static final int WIRETYPE_FIXED32 = 5;
+
+    /**
+     * 字段访问器，返回 false 终止遍历
+     */
+    public interface Visitor {
+        boolean onField(ProtoReader reader);
+    }
+
+    private byte[] array;
+    private ByteBuffer buffer;
+
+    private int start;
+    private int end;
+    private int pos;
+    private int limit;
+
+    private int fieldNumber;
+    private int wireType;
+    private int tagOffset;
+    private int lengthOffset;
+    private int valueOffset;
+    private int valueLength;
+    private long value;
+
+    private int[] limitStack = new int[8];
+    private int depth;
+
+    public ProtoReader(byte[] b) {
+        reset(b, 0, b != null ? b.length : 0);
+    }
+
+    public ProtoReader(byte[] b, int off, int len) {
+        reset(b, off, len);
+    }
+
+    public ProtoReader(ByteBuffer bb) {
+        reset(bb);
+    }
+
+    /**
+     * 复用当前实例读取新的数据
+     */
+    public ProtoReader reset(byte[] b, int off, int len) {
+        if (b == null) b = new byte[0];
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", size=" + b.length);
+        }
+        array = b;
+        buffer = null;
+        start = off;
+        end = off + len;
+        return rewind();
+    }
+
+    public ProtoReader reset(ByteBuffer bb) {
+        if (bb.hasArray()) {
+            return reset(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+        }
+        array = null;
+        buffer = bb;
+        start = bb.position();
+        end = bb.limit();
+        return rewind();
+    }
+
+    /**
+     * 回到最外层消息的起点
+     */
+    public ProtoReader rewind() {
+        pos = start;
+        limit = end;
+        depth = 0;
+        fieldNumber = 0;
+        wireType = 0;
+        tagOffset = start;
+        lengthOffset = start;
+        valueOffset = start;
+        valueLength = 0;
+        value = 0;
+        return this;
+    }
+
+    private byte byteAt(int i) {
+        return array != null ? array[i] : buffer.get(i);
+    }
+
+    private long readRawVarint() throws InvalidProtocolBufferException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= limit) throw new InvalidProtocolBufferException("Truncated message");
+            byte b = byteAt(pos++);
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new InvalidProtocolBufferException("Malformed varint");
+    }
+
+    private long readRawLittleEndian(int size) throws InvalidProtocolBufferException {
+        if (limit - pos < size) throw new InvalidProtocolBufferException("Truncated message");
+        long result = 0;
+        for (int i = 0; i < size; i++) {
+            result |= (long) (byteAt(pos + i) & 0xFF) << (i * 8);
+        }
+        pos += size;
+        return result;
+    }
+
+    /**
+     * 读取当前层级的下一个字段，到达末尾时返回 false
+     * 调用后游标已越过该字段的值，可通过 getter 读取
+     */
+    public boolean next() throws InvalidProtocolBufferException {
+        if (pos >= limit) return false;
+
+        tagOffset = pos;
+        int tag = (int) readRawVarint();
+        fieldNumber = tag >>> 3;
+        wireType = tag & 7;
+        if (fieldNumber == 0) throw new InvalidProtocolBufferException("Invalid tag: field number 0");
+
+        switch (wireType) {
+            case WIRETYPE_VARINT: {
+                valueOffset = pos;
+                value = readRawVarint();
+                valueLength = pos - valueOffset;
+                break;
+            }
+            case WIRETYPE_FIXED64: {
+                valueOffset = pos;
+                value = readRawLittleEndian(8);
+                valueLength = 8;
+                break;
+            }
+            case WIRETYPE_LENGTH_DELIMITED: {
+                lengthOffset = pos;
+                int n = (int) readRawVarint();
+                if (n < 0) throw new InvalidProtocolBufferException("Negative length: " + n);
+                if (limit - pos < n) throw new InvalidProtocolBufferException("Truncated message");
+                valueOffset = pos;
+                valueLength = n;
+                value = n;
+                pos += n;
+                break;
+            }
+            case WIRETYPE_FIXED32: {
+                valueOffset = pos;
+                value = (int) readRawLittleEndian(4);
+                valueLength = 4;
+                break;
+            }
+            default:
+                throw new InvalidProtocolBufferException("Unexpected wireType: " + wireType);
+        }
+        return true;
+    }
+
+    /**
+     * 进入当前 LEN 字段，将其视为子消息继续遍历
+     */
+    public void enter() throws InvalidProtocolBufferException {
+        if (wireType != WIRETYPE_LENGTH_DELIMITED) throw new InvalidProtocolBufferException("Not a length-delimited field: " + fieldNumber);
+        if (depth == limitStack.length) limitStack = Arrays.copyOf(limitStack, depth * 2);
+        limitStack[depth++] = limit;
+        limit = valueOffset + valueLength;
+        pos = valueOffset;
+    }
+
+    /**
+     * 退出当前子消息，游标回到父层级中该字段之后
+     */
+    public void exit() {
+        if (depth == 0) throw new IllegalStateException("exit() without enter()");
+        pos = limit;
+        limit = limitStack[--depth];
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * 遍历当前层级剩余的所有字段
+     */
+    public void visit(Visitor visitor) throws InvalidProtocolBufferException {
+        while (next()) {
+            if (!visitor.onField(this)) return;
+        }
+    }
+
+    /**
+     * 在当前层级查找指定字段的第 occurrence 次出现
+     */
+    public boolean seek(int fieldNumber, int occurrence) throws InvalidProtocolBufferException {
+        int occ = 0;
+        while (next()) {
+            if (this.fieldNumber == fieldNumber && occ++ == occurrence) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 从当前层级开始按路径定位字段，如 "3/1/5"，成功后游标停在目标字段上
+     * 中间节点必须是 LEN 字段，定位失败或数据损坏时返回 false
+     */
+    public boolean find(String path) {
+        try {
+            int i = 0;
+            int n = path.length();
+            while (i < n) {
+                int fn = 0;
+                int occ = 0;
+                int segStart = i;
+                while (i < n && path.charAt(i) >= '0' && path.charAt(i) <= '9') {
+                    fn = fn * 10 + (path.charAt(i++) - '0');
+                }
+                if (i == segStart) return false;
+                if (i < n && path.charAt(i) == '[') {
+                    i++;
+                    while (i < n && path.charAt(i) >= '0' && path.charAt(i) <= '9') {
+                        occ = occ * 10 + (path.charAt(i++) - '0');
+                    }
+                    if (i >= n || path.charAt(i++) != ']') return false;
+                }
+                if (i < n && path.charAt(i++) != '/') return false;
+
+                if (segStart > 0) enter();
+                if (!seek(fn, occ)) return false;
+            }
+            return true;
+        } catch (InvalidProtocolBufferException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 按字段号序列定位，等价于 find("a/b/c")
+     */
+    public boolean find(int... path) {
+        try {
+            for (int i = 0; i < path.length; i++) {
+                if (i > 0) enter();
+                if (!seek(path[i], 0)) return false;
+            }
+            return true;
+        } catch (InvalidProtocolBufferException e) {
+            return false;
+        }
+    }
+
+    public int getFieldNumber() {
+        return fieldNumber;
+    }
+
+    public int getWireType() {
+        return wireType;
+    }
+
+    /**
+     * 当前字段 tag 的起始偏移
+     */
+    public int getTagOffset() {
+        return tagOffset;
+    }
+
+    /**
+     * 当前 LEN 字段长度前缀的起始偏移
+     */
+    public int getLengthOffset() {
+        return lengthOffset;
+    }
+
+    /**
+     * 当前字段值的起始偏移（LEN 字段为长度前缀之后的内容起点）
+     */
+    public int getValueOffset() {
+        return valueOffset;
+    }
+
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    /**
+     * 当前字段（含 tag）结束后的偏移
+     */
+    public int getFieldEnd() {
+        return valueOffset + valueLength;
+    }
+
+    /**
+     * VARINT / FIXED64 字段的值，FIXED32 字段会按有符号 int 扩展
+     */
+    public long getLong() {
+        return value;
+    }
+
+    public int getInt() {
+        return (int) value;
+    }
+
+    public boolean getBoolean() {
+        return value != 0;
+    }
+
+    public double getDouble() {
+        return Double.longBitsToDouble(value);
+    }
+
+    public float getFloat() {
+        return Float.intBitsToFloat((int) value);
+    }
+
+    public String getString() {
+        if (wireType != WIRETYPE_LENGTH_DELIMITED) return null;
+        if (array != null) return new String(array, valueOffset, valueLength, StandardCharsets.UTF_8);
+        return new String(getBytes(), StandardCharsets.UTF_8);
+    }
+
+    public byte[] getBytes() {
+        if (wireType != WIRETYPE_LENGTH_DELIMITED) return null;
+        return getBytes(valueOffset, valueLength);
+    }
+
+    /**
+     * 拷贝底层数据中的任意一段，offset 与 getter 返回的偏移含义相同
+     */
+    public byte[] getBytes(int offset, int length) {
+        if (array != null) return Arrays.copyOfRange(array, offset, offset + length);
+        byte[] out = new byte[length];
+        for (int i = 0; i < length; i++) out[i] = buffer.get(offset + i);
+        return out;
+    }
+
+    /**
+     * 比较当前 LEN 字段内容与给定字节，不产生拷贝
+     */
+    public boolean contentEquals(byte[] expected) {
+        if (wireType != WIRETYPE_LENGTH_DELIMITED || expected == null) return false;
+        if (expected.length != valueLength) return false;
+        for (int i = 0; i < valueLength; i++) {
+            if (byteAt(valueOffset + i) != expected[i]) return false;
+        }
+        return true;
+    }
+
+    // ========== 便捷方法 ==========
+
+    /**
+     * 整段能按 Protobuf 结构完整解析且至少有一个字段，只做结构校验
+     */
+    static boolean isMessage(byte[] b, int off, int len) {
+        if (len == 0) return false;
+        try {
+            ProtoReader r = new ProtoReader(b, off, len);
+            while (r.next()) {
+                // 只做结构校验
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 读取完整数据包，自动跳过 4 字节包头
+     */
+    public static ProtoReader ofPacket(byte[] b) {
+        if (b == null) return new ProtoReader(new byte[0]);
+        int off = WeProtoData.hasPacketPrefix(b) ? 4 : 0;
+        return new ProtoReader(b, off, b.length - off);
+    }
+
+    public static long readVarint(byte[] b, String path, long def) {
+        ProtoReader r = ofPacket(b);
+        if (!r.find(path) || r.wireType == WIRETYPE_LENGTH_DELIMITED) return def;
+        return r.value;
+    }
+
+    public static String readString(byte[] b, String path) {
+        ProtoReader r = ofPacket(b);
+        if (!r.find(path)) return null;
+        return r.getString();
+    }
+
+    public static byte[] readBytes(byte[] b, String path) {
+        ProtoReader r = ofPacket(b);
+        if (!r.find(path)) return null;
+        return r.getBytes();
+    }
+
+    public static boolean has(byte[] b, String path) {
+        return ofPacket(b).find(path);
+    }
+
+}
@@ -0,0 +1,302 @@
+package moe.ouom.wekit.util;
+
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+/**
+ * 根据实际流量推断出的 Protobuf 消息结构
+ * 每次 observe 合并一个样本：字段类型在 VARINT / FIXED32 / FIXED64 / MESSAGE / STRING / BYTES 间归并，
+ * 同一消息实例中出现多次的字段记为 repeated。连续 STABLE_SAMPLES 个样本结构未变化后视为稳定，
+ * 此时可通过 {@link #compile()} 生成跳过通用猜测的 {@link ProtoPlan}
+ * <p>
+ * 字段名默认为空（以字段号作为键），可通过 {@link #setName} 或直接编辑持久化的 JSON 指定
+ */
+public final class ProtoSchema {
+
+    public static final int TYPE_VARINT = 1;
+    public static final int TYPE_FIXED64 = 2;
+    public static final int TYPE_FIXED32 = 3;
+    public static final int TYPE_MESSAGE = 4;
+    public static final int TYPE_STRING = 5;
+    public static final int TYPE_BYTES = 6;
+    /**
+     * 同一字段出现过不同的 wire type，按通用方式处理
+     */
+    public static final int TYPE_MIXED = 7;
+
+    public static final int STABLE_SAMPLES = 16;
+    private static final int MAX_DEPTH = 32;
+
+    private static final String[] TYPE_NAMES = {
+            "", "varint", "fixed64", "fixed32", "message", "string", "bytes", "mixed"
+    };
+
+    public static final class Field {
+        final int number;
+        String name;
+        int wireType = -1;
+        boolean mixed;
+        boolean repeated;
+        // LEN 字段各类样本的计数，用于在子消息 / 文本 / 二进制之间归并
+        int lenSamples;
+        int messageSamples;
+        int textSamples;
+        Message message;
+        int stamp;
+
+        Field(int number) {
+            this.number = number;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isRepeated() {
+            return repeated;
+        }
+
+        public Message getMessage() {
+            return getType() == TYPE_MESSAGE ? message : null;
+        }
+
+        public int getType() {
+            if (mixed) return TYPE_MIXED;
+            switch (wireType) {
+                case ProtoReader.WIRETYPE_VARINT:
+                    return TYPE_VARINT;
+                case ProtoReader.WIRETYPE_FIXED64:
+                    return TYPE_FIXED64;
+                case ProtoReader.WIRETYPE_FIXED32:
+                    return TYPE_FIXED32;
+                case ProtoReader.WIRETYPE_LENGTH_DELIMITED:
+                    if (messageSamples == lenSamples) return TYPE_MESSAGE;
+                    if (textSamples == lenSamples) return TYPE_STRING;
+                    return TYPE_BYTES;
+                default:
+                    return TYPE_MIXED;
+            }
+        }
+    }
+
+    public static final class Message {
+        final TreeMap<Integer, Field> fields = new TreeMap<>();
+
+        public Field get(int number) {
+            return fields.get(number);
+        }
+
+        public Field byName(String name) {
+            for (Field f : fields.values()) {
+                if (name.equals(f.name)) return f;
+            }
+            return null;
+        }
+
+        public Collection<Field> fields() {
+            return Collections.unmodifiableCollection(fields.values());
+        }
+    }
+
+    private final Message root = new Message();
+    private int samples;
+    private int stableSamples;
+    private int version;
+    private int stamp;
+
+    public synchronized int getSamples() {
+        return samples;
+    }
+
+    public synchronized boolean isStable() {
+        return stableSamples >= STABLE_SAMPLES;
+    }
+
+    /**
+     * 结构或字段名每次变化都会递增，用于判断已编译的 ProtoPlan 是否过期
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    public Message getRoot() {
+        return root;
+    }
+
+    /**
+     * 合并一个样本（可带 4 字节包头），返回结构是否发生变化
+     * 无法解析的样本会被忽略
+     */
+    public synchronized boolean observe(byte[] packet) {
+        if (packet == null) return false;
+        int off = WeProtoData.hasPacketPrefix(packet) ? 4 : 0;
+        if (!ProtoReader.isMessage(packet, off, packet.length - off)) return false;
+
+        boolean changed;
+        try {
+            changed = merge(root, packet, off, packet.length - off, 0);
+        } catch (Exception e) {
+            return false;
+        }
+        samples++;
+        if (changed) {
+            stableSamples = 0;
+            version++;
+        } else if (stableSamples < Integer.MAX_VALUE) {
+            stableSamples++;
+        }
+        return changed;
+    }
+
+    private boolean merge(Message m, byte[] b, int off, int len, int depth) throws Exception {
+        boolean changed = false;
+        int cur = ++stamp;
+        ProtoReader r = new ProtoReader(b, off, len);
+        while (r.next()) {
+            Field f = m.fields.get(r.getFieldNumber());
+            if (f == null) {
+                f = new Field(r.getFieldNumber());
+                m.fields.put(f.number, f);
+                changed = true;
+            }
+
+            if (f.stamp == cur) {
+                if (!f.repeated) {
+                    f.repeated = true;
+                    changed = true;
+                }
+            } else {
+                f.stamp = cur;
+            }
+
+            int wt = r.getWireType();
+            if (f.wireType == -1) {
+                f.wireType = wt;
+            } else if (f.wireType != wt && !f.mixed) {
+                f.mixed = true;
+                changed = true;
+            }
+            if (f.mixed || wt != ProtoReader.WIRETYPE_LENGTH_DELIMITED) continue;
+
+            int before = f.getType();
+            int vo = r.getValueOffset();
+            int vl = r.getValueLength();
+            f.lenSamples++;
+            boolean isMsg = depth < MAX_DEPTH && ProtoReader.isMessage(b, vo, vl);
+            if (isMsg) f.messageSamples++;
+            if (WeProtoData.isUtf8(b, vo, vl, true)) f.textSamples++;
+
+            if (isMsg) {
+                if (f.message == null) f.message = new Message();
+                if (merge(f.message, b, vo, vl, depth + 1) && f.getType() == TYPE_MESSAGE) changed = true;
+            }
+            if (f.getType() != before) changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * 为字段路径（如 "3/1"）指定名称，name 为空时清除
+     */
+    public synchronized boolean setName(String path, String name) {
+        Message m = root;
+        Field f = null;
+        for (String seg : path.split("/")) {
+            if (m == null) return false;
+            int number;
+            try {
+                number = Integer.parseInt(seg.trim());
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            f = m.fields.get(number);
+            if (f == null) return false;
+            m = f.message;
+        }
+        if (f == null) return false;
+        f.name = name == null || name.isEmpty() ? null : name;
+        version++;
+        return true;
+    }
+
+    public synchronized ProtoPlan compile() {
+        return new ProtoPlan(root);
+    }
+
+    // ========== 持久化 ==========
+
+    public synchronized JSONObject toJSON() throws Exception {
+        JSONObject obj = new JSONObject();
+        obj.put("samples", samples);
+        obj.put("stable", stableSamples);
+        obj.put("fields", messageToJSON(root));
+        return obj;
+    }
+
+    private static JSONObject messageToJSON(Message m) throws Exception {
+        JSONObject fields = new JSONObject();
+        for (Field f : m.fields.values()) {
+            JSONObject o = new JSONObject();
+            if (f.name != null) o.put("name", f.name);
+            o.put("type", TYPE_NAMES[f.getType()]);
+            if (f.repeated) o.put("repeated", true);
+            o.put("wire", f.wireType);
+            if (f.lenSamples > 0) {
+                o.put("len", f.lenSamples);
+                o.put("msg", f.messageSamples);
+                o.put("text", f.textSamples);
+            }
+            if (f.message != null) o.put("fields", messageToJSON(f.message));
+            fields.put(String.valueOf(f.number), o);
+        }
+        return fields;
+    }
+
+    public static ProtoSchema fromJSON(JSONObject obj) {
+        ProtoSchema s = new ProtoSchema();
+        s.samples = obj.optInt("samples");
+        s.stableSamples = obj.optInt("stable");
+        JSONObject fields = obj.optJSONObject("fields");
+        if (fields != null) messageFromJSON(s.root, fields);
+        return s;
+    }
+
+    private static void messageFromJSON(Message m, JSONObject fields) {
+        Iterator<String> it = fields.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            JSONObject o = fields.optJSONObject(key);
+            int number;
+            try {
+                number = Integer.parseInt(key);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (o == null || number <= 0) continue;
+
+            Field f = new Field(number);
+            String name = o.optString("name", "");
+            f.name = name.isEmpty() ? null : name;
+            f.repeated = o.optBoolean("repeated");
+            f.wireType = o.optInt("wire", -1);
+            f.mixed = "mixed".equals(o.optString("type"));
+            f.lenSamples = o.optInt("len");
+            f.messageSamples = o.optInt("msg");
+            f.textSamples = o.optInt("text");
+            JSONObject sub = o.optJSONObject("fields");
+            if (sub != null) {
+                f.message = new Message();
+                messageFromJSON(f.message, sub);
+            }
+            m.fields.put(number, f);
+        }
+    }
+}
@@ -2,14 +2,11 @@ package moe.ouom.wekit.util;
 
 import static cn.hutool.core.convert.Convert.hexToBytes;
 
-import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
-import com.google.protobuf.InvalidProtocolBufferException;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -40,20 +37,63 @@ public class WeProtoData {
     }
 
     private static final class LenValue {
-        byte[] raw;
+        // 懒解析时直接引用原始缓冲区的一段，不做拷贝
+        byte[] buf;
+        int off;
+        int len;
         String utf8;
         WeProtoData subMessage;
         LenView view;
 
         LenValue(byte[] raw) {
-            this.raw = raw != null ? raw : new byte[0];
+            setRaw(raw);
             this.view = LenView.AUTO;
         }
+
+        LenValue(byte[] buf, int off, int len) {
+            this.buf = buf;
+            this.off = off;
+            this.len = len;
+            this.view = LenView.AUTO;
+        }
+
+        void setRaw(byte[] raw) {
+            this.buf = raw != null ? raw : new byte[0];
+            this.off = 0;
+            this.len = this.buf.length;
+        }
+
+        boolean rawEquals(byte[] b) {
+            sync();
+            return rangeEquals(b, buf, off, len);
+        }
+
+        /**
+         * 子消息被修改后切片已过期，读取原始字节前先重新编码
+         */
+        void sync() {
+            if (subMessage != null && subMessage.needsEncode()) setRaw(subMessage.toMessageBytes());
+        }
     }
 
     private final List<Field> fields = new ArrayList<>();
     private byte[] packetPrefix = new byte[0];
 
+    // 解析来源，未修改时 toMessageBytes / toPacketBytes 直接返回原始字节
+    private byte[] source;
+    private int sourceOffset;
+    private int sourceLength;
+    private byte[] packetSource;
+    // modified: 相对解析输入是否有改动；dirty: source 是否已过期，重新编码后清除
+    private boolean modified;
+    private boolean dirty;
+    private int cachedSize = -1;
+    private WeProtoData parent;
+
+    // LEN 字段分类缓存的作用域，cgiId 只记录在最外层
+    private int cgiId;
+    private long pathKey = ProtoLenHints.ROOT;
+
     public static boolean hasPacketPrefix(byte[] b) {
         return b != null && b.length >= 4 && (b[0] & 0xFF) == 0;
     }
@@ -68,6 +108,48 @@ public class WeProtoData {
     public void clear() {
         fields.clear();
         packetPrefix = new byte[0];
+        source = null;
+        packetSource = null;
+        modified = false;
+        dirty = false;
+        cachedSize = -1;
+    }
+
+    public boolean isModified() {
+        return modified || source == null;
+    }
+
+    /**
+     * 指定数据包所属的 CGI，之后懒解析 LEN 字段时会优先使用 {@link ProtoLenHints} 中记录的分类
+     */
+    public void setCgiId(int cgiId) {
+        this.cgiId = cgiId;
+    }
+
+    private int hintCgiId() {
+        WeProtoData m = this;
+        while (m.parent != null) m = m.parent;
+        return m.cgiId;
+    }
+
+    private void attachSub(WeProtoData sub, int fieldNumber) {
+        sub.parent = this;
+        sub.pathKey = ProtoLenHints.childPath(pathKey, fieldNumber);
+    }
+
+    private boolean needsEncode() {
+        return source == null || dirty;
+    }
+
+    /**
+     * 标记本层及所有祖先需要重新编码
+     */
+    private void markDirty() {
+        for (WeProtoData m = this; m != null; m = m.parent) {
+            m.modified = true;
+            m.dirty = true;
+            m.cachedSize = -1;
+        }
     }
 
     public byte[] getPacketPrefix() {
@@ -76,88 +158,89 @@ public class WeProtoData {
 
     public void setPacketPrefix(byte[] prefix) {
         this.packetPrefix = prefix != null ? Arrays.copyOf(prefix, prefix.length) : new byte[0];
+        this.packetSource = null;
     }
 
+    /**
+     * 以懒解析模式读取数据包：LEN 字段只记录在 b 中的偏移与长度，
+     * 直到 toJSON / setLen* / applyViewJSON 等真正访问时才进行分类、解码或递归解析。
+     * 注意 b 在本对象的生命周期内不应再被修改。
+     */
     public void fromBytes(byte[] b) throws IOException {
+        fromBytes(b, true);
+    }
+
+    public void fromBytes(byte[] b, boolean lazy) throws IOException {
         clear();
         if (b == null) return;
 
-        byte[] body = b;
+        int off = 0;
         if (hasPacketPrefix(b)) {
             packetPrefix = Arrays.copyOfRange(b, 0, 4);
-            body = Arrays.copyOfRange(b, 4, b.length);
+            off = 4;
         }
-        parseMessageBytes(body, true);
+        parseMessageBytes(b, off, b.length - off, !lazy);
+        packetSource = b;
     }
 
     public void fromMessageBytes(byte[] b) throws IOException {
-        clear();
-        packetPrefix = new byte[0];
-        parseMessageBytes(b, true);
+        fromMessageBytes(b, true);
     }
 
-    private void parseMessageBytes(byte[] b, boolean analyzeLen) throws IOException {
+    public void fromMessageBytes(byte[] b, boolean lazy) throws IOException {
+        clear();
         if (b == null) return;
+        parseMessageBytes(b, 0, b.length, !lazy);
+        packetSource = b;
+    }
 
-        CodedInputStream in = CodedInputStream.newInstance(b);
-        while (!in.isAtEnd()) {
-            final int tag;
-            try {
-                tag = in.readTag();
-            } catch (InvalidProtocolBufferException e) {
-                throw new InvalidProtocolBufferException(e);
-            }
-
-            if (tag == 0) break;
-
-            int fieldNumber = tag >>> 3;
-            int wireType = tag & 7;
+    private void parseMessageBytes(byte[] b, int off, int len, boolean analyzeLen) throws IOException {
+        if (b == null) return;
 
-            if (wireType == 4 || wireType == 3 || wireType > 5) {
-                throw new IOException("Unexpected wireType: " + wireType);
-            }
+        ProtoReader in = new ProtoReader(b, off, len);
+        while (in.next()) {
+            int fieldNumber = in.getFieldNumber();
+            int wireType = in.getWireType();
 
             switch (wireType) {
-                case 0: {
-                    long v = in.readInt64();
-                    fields.add(new Field(fieldNumber, wireType, v));
+                case ProtoReader.WIRETYPE_VARINT:
+                case ProtoReader.WIRETYPE_FIXED64: {
+                    fields.add(new Field(fieldNumber, wireType, in.getLong()));
                     break;
                 }
-                case 1: {
-                    long v = in.readFixed64();
-                    fields.add(new Field(fieldNumber, wireType, v));
-                    break;
-                }
-                case 2: {
-                    byte[] subBytes = in.readByteArray();
-                    LenValue lv = new LenValue(subBytes);
-                    if (analyzeLen) analyzeLenValue(lv);
+                case ProtoReader.WIRETYPE_LENGTH_DELIMITED: {
+                    LenValue lv = new LenValue(b, in.getValueOffset(), in.getValueLength());
+                    if (analyzeLen) analyzeLenValue(lv, fieldNumber);
                     fields.add(new Field(fieldNumber, wireType, lv));
                     break;
                 }
-                case 5: {
-                    int v = in.readFixed32();
-                    fields.add(new Field(fieldNumber, wireType, v));
+                case ProtoReader.WIRETYPE_FIXED32: {
+                    fields.add(new Field(fieldNumber, wireType, in.getInt()));
                     break;
                 }
                 default:
                     break;
             }
         }
+
+        source = b;
+        sourceOffset = off;
+        sourceLength = len;
     }
 
-    private static void analyzeLenValue(LenValue lv) {
+    private void analyzeLenValue(LenValue lv, int fieldNumber) {
         if (lv == null) return;
 
-        WeProtoData sub = tryParseSubMessageStrong(lv.raw);
+        WeProtoData sub = tryParseSubMessageStrong(lv.buf, lv.off, lv.len, false);
         if (sub != null) {
+            attachSub(sub, fieldNumber);
             lv.subMessage = sub;
             lv.utf8 = null;
             lv.view = LenView.SUB;
             return;
         }
 
-        String s = tryDecodeUtf8Roundtrip(lv.raw);
+        String s = tryDecodeUtf8Roundtrip(lv.buf, lv.off, lv.len);
         if (s != null) {
             lv.utf8 = s;
             lv.subMessage = null;
@@ -170,41 +253,72 @@ public class WeProtoData {
         lv.view = LenView.HEX;
     }
 
-    private static String tryDecodeUtf8Roundtrip(byte[] b) {
+    private static boolean rangeEquals(byte[] a, byte[] b, int off, int len) {
+        if (a == null || a.length != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (a[i] != b[off + i]) return false;
+        }
+        return true;
+    }
+
+    private static String tryDecodeUtf8Roundtrip(byte[] b, int off, int len) {
         try {
-            String s = new String(b, StandardCharsets.UTF_8);
+            String s = new String(b, off, len, StandardCharsets.UTF_8);
             byte[] re = s.getBytes(StandardCharsets.UTF_8);
-            if (Arrays.equals(b, re)) return s;
+            if (rangeEquals(re, b, off, len)) return s;
         } catch (Exception ignored) { }
         return null;
     }
 
     private static WeProtoData tryParseSubMessageStrong(byte[] b) {
+        if (b == null) return null;
+        return tryParseSubMessageStrong(b, 0, b.length, true);
+    }
+
+    private static WeProtoData tryParseSubMessageStrong(byte[] b, int off, int len, boolean lazy) {
         try {
-            if (b == null || b.length == 0) return null;
+            if (b == null || len == 0) return null;
             WeProtoData sub = new WeProtoData();
-            sub.parseMessageBytes(b, true);
+            sub.parseMessageBytes(b, off, len, !lazy);
             if (sub.fields.isEmpty()) return null;
-            byte[] re = sub.toMessageBytes();
-            if (!Arrays.equals(b, re)) return null;
+            byte[] re = sub.encodeFields();
+            if (!rangeEquals(re, b, off, len)) return null;
             return sub;
         } catch (Exception ignored) {
             return null;
         }
     }
 
-    private static WeProtoData ensureSubParsedStrong(LenValue lv) {
-        if (lv == null) return null;
+    /**
+     * 只按结构解析（惰性），不做重编码比对；未改动的子树编码时直接复用原始切片
+     */
+    private static WeProtoData tryParseSubMessage(byte[] b, int off, int len) {
+        try {
+            if (b == null || len == 0) return null;
+            WeProtoData sub = new WeProtoData();
+            sub.parseMessageBytes(b, off, len, false);
+            return sub.fields.isEmpty() ? null : sub;
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    private WeProtoData ensureSubParsedStrong(Field f) {
+        LenValue lv = (LenValue) f.value;
         if (lv.subMessage != null) return lv.subMessage;
-        WeProtoData sub = tryParseSubMessageStrong(lv.raw);
-        if (sub != null) lv.subMessage = sub;
+        WeProtoData sub = tryParseSubMessageStrong(lv.buf, lv.off, lv.len, true);
+        if (sub != null) {
+            attachSub(sub, f.fieldNumber);
+            lv.subMessage = sub;
+        }
         return lv.subMessage;
     }
 
     private static String ensureUtf8Decoded(LenValue lv) {
         if (lv == null) return null;
         if (lv.utf8 != null) return lv.utf8;
-        String s = tryDecodeUtf8Roundtrip(lv.raw);
+        lv.sync();
+        String s = tryDecodeUtf8Roundtrip(lv.buf, lv.off, lv.len);
         if (s != null) lv.utf8 = s;
         return lv.utf8;
     }
@@ -237,106 +351,503 @@ public class WeProtoData {
         if (f.wireType != 2) return f.value;
 
         LenValue lv = (LenValue) f.value;
+        Object v = resolveLen(f);
+        if (v instanceof WeProtoData) return ((WeProtoData) v).toJSON();
+        if (v != null) return v;
+        return "hex->" + lenToHex(lv);
+    }
 
+    /**
+     * 按当前视图决定 LEN 字段的展示形式：子消息返回 WeProtoData，文本返回 String，按 hex 展示时返回 null
+     */
+    private Object resolveLen(Field f) {
+        LenValue lv = (LenValue) f.value;
         LenView v = lv.view;
         if (v == LenView.AUTO) {
-            WeProtoData sub = ensureSubParsedStrong(lv);
-            if (sub != null) {
-                lv.view = LenView.SUB;
-                return sub.toJSON();
-            }
-            String s = ensureUtf8Decoded(lv);
-            if (s != null) {
-                lv.view = LenView.UTF8;
-                return s;
-            }
-            lv.view = LenView.HEX;
-            return "hex->" + bytesToHex(lv.raw);
+            int cgi = hintCgiId();
+            if (cgi == 0 || lv.len == 0) return classifyLen(f);
+
+            long path = ProtoLenHints.childPath(pathKey, f.fieldNumber);
+            byte hint = ProtoLenHints.get(cgi, path);
+            if (applyLenHint(f, hint)) return lenViewValue(lv);
+
+            Object result = classifyLen(f);
+            byte kind = lv.view == LenView.SUB ? ProtoLenHints.SUB
+                    : lv.view == LenView.UTF8 ? ProtoLenHints.UTF8 : ProtoLenHints.HEX;
+            // 未命中或验证失败时按本次试探结果重新记录
+            if (hint != kind) ProtoLenHints.put(cgi, path, kind);
+            return result;
         }
 
         if (v == LenView.SUB) {
-            WeProtoData sub = ensureSubParsedStrong(lv);
-            if (sub != null) return sub.toJSON();
-            String s = ensureUtf8Decoded(lv);
-            if (s != null) return s;
-            return "hex->" + bytesToHex(lv.raw);
+            WeProtoData sub = ensureSubParsedStrong(f);
+            if (sub != null) return sub;
+            return ensureUtf8Decoded(lv);
         }
 
         if (v == LenView.UTF8) {
             String s = ensureUtf8Decoded(lv);
             if (s != null) return s;
-            WeProtoData sub = ensureSubParsedStrong(lv);
-            if (sub != null) return sub.toJSON();
-            return "hex->" + bytesToHex(lv.raw);
+            return ensureSubParsedStrong(f);
+        }
+
+        return null;
+    }
+
+    /**
+     * 按通用规则把一段 LEN 内容转换为 toJSON 中对应的值
+     */
+    static Object lenValueToJson(byte[] b, int off, int len) throws Exception {
+        WeProtoData holder = new WeProtoData();
+        return holder.fieldValueToJsonValue(new Field(1, 2, new LenValue(b, off, len)));
+    }
+
+    private static Object lenViewValue(LenValue lv) {
+        if (lv.view == LenView.SUB) return lv.subMessage;
+        if (lv.view == LenView.UTF8) return lv.utf8;
+        return null;
+    }
+
+    /**
+     * 试探解析：先按子消息（要求重新编码后字节一致），再按 UTF-8，都不满足时按 hex
+     */
+    private Object classifyLen(Field f) {
+        LenValue lv = (LenValue) f.value;
+        WeProtoData sub = ensureSubParsedStrong(f);
+        if (sub != null) {
+            lv.view = LenView.SUB;
+            return sub;
+        }
+        String s = ensureUtf8Decoded(lv);
+        if (s != null) {
+            lv.view = LenView.UTF8;
+            return s;
         }
+        lv.view = LenView.HEX;
+        return null;
+    }
 
-        return "hex->" + bytesToHex(lv.raw);
+    /**
+     * 按缓存的分类做低成本验证：缓存来自此前完整的试探解析，这里只做一次扫描——
+     * 子消息只做结构解析（不再重编码比对），文本只做 UTF-8 校验，hex 只确认不是合法结构。
+     * 验证失败返回 false，由调用方回退到试探解析并重新记录
+     */
+    private boolean applyLenHint(Field f, byte hint) {
+        LenValue lv = (LenValue) f.value;
+        switch (hint) {
+            case ProtoLenHints.SUB: {
+                WeProtoData sub = tryParseSubMessage(lv.buf, lv.off, lv.len);
+                if (sub == null) return false;
+                attachSub(sub, f.fieldNumber);
+                lv.subMessage = sub;
+                lv.view = LenView.SUB;
+                return true;
+            }
+            case ProtoLenHints.UTF8: {
+                if (lv.utf8 == null) {
+                    if (!isUtf8(lv.buf, lv.off, lv.len, true)) return false;
+                    lv.utf8 = new String(lv.buf, lv.off, lv.len, StandardCharsets.UTF_8);
+                }
+                lv.view = LenView.UTF8;
+                return true;
+            }
+            case ProtoLenHints.HEX: {
+                if (ProtoReader.isMessage(lv.buf, lv.off, lv.len)) return false;
+                lv.view = LenView.HEX;
+                return true;
+            }
+            default:
+                return false;
+        }
     }
 
+    /**
+     * 严格的 UTF-8 校验（拒绝过长编码、代理区与超出 U+10FFFF 的码点），与解码再编码后字节一致等价
+     * plainText 为 true 时还要求不含 \t \n \r 以外的控制字符，避免把恰好是合法 UTF-8 的子消息当成文本
+     */
+    static boolean isUtf8(byte[] b, int off, int len, boolean plainText) {
+        int i = off;
+        int end = off + len;
+        while (i < end) {
+            int c = b[i] & 0xFF;
+            if (c < 0x80) {
+                if (plainText && c < 0x20 && c != '\t' && c != '\n' && c != '\r') return false;
+                i++;
+                continue;
+            }
+            int n;
+            int min;
+            if (c >= 0xC2 && c <= 0xDF) {
+                n = 1;
+                min = 0x80;
+                c &= 0x1F;
+            } else if (c >= 0xE0 && c <= 0xEF) {
+                n = 2;
+                min = 0x800;
+                c &= 0x0F;
+            } else if (c >= 0xF0 && c <= 0xF4) {
+                n = 3;
+                min = 0x10000;
+                c &= 0x07;
+            } else {
+                return false;
+            }
+            if (end - i <= n) return false;
+            for (int k = 1; k <= n; k++) {
+                int cc = b[i + k] & 0xFF;
+                if ((cc & 0xC0) != 0x80) return false;
+                c = (c << 6) | (cc & 0x3F);
+            }
+            if (c < min || c > 0x10FFFF || (c >= 0xD800 && c <= 0xDFFF)) return false;
+            i += n + 1;
+        }
+        return true;
+    }
+
+    private static String lenToHex(LenValue lv) {
+        lv.sync();
+        return bytesToHex(lv.buf, lv.off, lv.len);
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
     public static String bytesToHex(byte[] bytes) {
-        if (bytes == null || bytes.length == 0) return "";
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) sb.append(String.format("%02X", b & 0xFF));
-        return sb.toString();
+        if (bytes == null) return "";
+        return bytesToHex(bytes, 0, bytes.length);
+    }
+
+    static String bytesToHex(byte[] bytes, int off, int len) {
+        if (bytes == null || len == 0) return "";
+        char[] out = new char[len * 2];
+        for (int i = 0; i < len; i++) {
+            int v = bytes[off + i] & 0xFF;
+            out[i * 2] = HEX_DIGITS[v >>> 4];
+            out[i * 2 + 1] = HEX_DIGITS[v & 0x0F];
+        }
+        return new String(out);
+    }
+
+    // ========== 流式 JSON ==========
+
+    /**
+     * 写入字符数达到上限时抛出，用于直接结束整棵树的遍历
+     */
+    private static final class JsonTruncated extends RuntimeException {
+        static final JsonTruncated INSTANCE = new JsonTruncated();
+
+        private JsonTruncated() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class JsonSink {
+        final Appendable out;
+        int remaining;
+
+        JsonSink(Appendable out, int maxChars) {
+            this.out = out;
+            this.remaining = maxChars > 0 ? maxChars : Integer.MAX_VALUE;
+        }
+
+        void append(char c) throws IOException {
+            if (remaining == 0) throw JsonTruncated.INSTANCE;
+            remaining--;
+            out.append(c);
+        }
+
+        void append(CharSequence s) throws IOException {
+            int n = s.length();
+            if (n > remaining) {
+                out.append(s, 0, remaining);
+                remaining = 0;
+                throw JsonTruncated.INSTANCE;
+            }
+            remaining -= n;
+            out.append(s);
+        }
+    }
+
+    public void writeJson(Appendable out) throws IOException {
+        writeJson(out, 0, 0, 0);
+    }
+
+    /**
+     * 以与 toJSON 相同的结构把字段树直接写入 out，不构建中间的 JSONObject / JSONArray
+     *
+     * @param maxDepth    子消息最多展开的层数，更深的子消息按 hex 输出，<= 0 不限制
+     * @param maxChars    最多写入的字符数，超出后以 "...(truncated)" 结尾，<= 0 不限制
+     * @param maxHexBytes 单个 hex 值最多输出的字节数，<= 0 不限制
+     */
+    public void writeJson(Appendable out, int maxDepth, int maxChars, int maxHexBytes) throws IOException {
+        try {
+            writeJsonObject(new JsonSink(out, maxChars), 1, maxDepth, maxHexBytes);
+        } catch (JsonTruncated e) {
+            out.append("...(truncated)");
+        }
+    }
+
+    private void writeJsonObject(JsonSink sink, int depth, int maxDepth, int maxHexBytes) throws IOException {
+        sink.append('{');
+        int n = fields.size();
+        boolean[] written = null;
+        boolean first = true;
+        for (int i = 0; i < n; i++) {
+            if (written != null && written[i]) continue;
+            Field f = fields.get(i);
+
+            int repeat = i + 1;
+            while (repeat < n && fields.get(repeat).fieldNumber != f.fieldNumber) repeat++;
+
+            if (!first) sink.append(',');
+            first = false;
+            sink.append('"');
+            sink.append(Integer.toString(f.fieldNumber));
+            sink.append("\":");
+
+            if (repeat >= n) {
+                writeJsonValue(sink, f, depth, maxDepth, maxHexBytes);
+                continue;
+            }
+
+            // 重复字段与 toJSON 一致，合并为数组放在首次出现的位置
+            if (written == null) written = new boolean[n];
+            sink.append('[');
+            writeJsonValue(sink, f, depth, maxDepth, maxHexBytes);
+            for (int j = repeat; j < n; j++) {
+                Field g = fields.get(j);
+                if (g.fieldNumber != f.fieldNumber) continue;
+                written[j] = true;
+                sink.append(',');
+                writeJsonValue(sink, g, depth, maxDepth, maxHexBytes);
+            }
+            sink.append(']');
+        }
+        sink.append('}');
+    }
+
+    private void writeJsonValue(JsonSink sink, Field f, int depth, int maxDepth, int maxHexBytes) throws IOException {
+        if (f.wireType != 2) {
+            sink.append(String.valueOf(f.value));
+            return;
+        }
+
+        LenValue lv = (LenValue) f.value;
+        Object v = resolveLen(f);
+        if (v instanceof WeProtoData) {
+            if (maxDepth > 0 && depth >= maxDepth) {
+                writeJsonHex(sink, lv, maxHexBytes);
+            } else {
+                ((WeProtoData) v).writeJsonObject(sink, depth + 1, maxDepth, maxHexBytes);
+            }
+        } else if (v != null) {
+            writeJsonString(sink, (String) v);
+        } else {
+            writeJsonHex(sink, lv, maxHexBytes);
+        }
+    }
+
+    private static void writeJsonHex(JsonSink sink, LenValue lv, int maxHexBytes) throws IOException {
+        lv.sync();
+        int n = maxHexBytes > 0 ? Math.min(lv.len, maxHexBytes) : lv.len;
+        sink.append("\"hex->");
+        for (int i = 0; i < n; i++) {
+            int v = lv.buf[lv.off + i] & 0xFF;
+            sink.append(HEX_DIGITS[v >>> 4]);
+            sink.append(HEX_DIGITS[v & 0x0F]);
+        }
+        if (n < lv.len) {
+            sink.append("...(+");
+            sink.append(Integer.toString(lv.len - n));
+            sink.append(" bytes)");
+        }
+        sink.append('"');
+    }
+
+    private static void writeJsonString(JsonSink sink, String s) throws IOException {
+        sink.append('"');
+        int n = s.length();
+        int plain = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '/') continue;
+            if (plain < i) sink.append(s.subSequence(plain, i));
+            plain = i + 1;
+            switch (c) {
+                case '"': sink.append("\\\""); break;
+                case '\\': sink.append("\\\\"); break;
+                case '/': sink.append("\\/"); break;
+                case '\b': sink.append("\\b"); break;
+                case '\f': sink.append("\\f"); break;
+                case '\n': sink.append("\\n"); break;
+                case '\r': sink.append("\\r"); break;
+                case '\t': sink.append("\\t"); break;
+                default:
+                    sink.append("\\u");
+                    sink.append(HEX_DIGITS[(c >>> 12) & 0x0F]);
+                    sink.append(HEX_DIGITS[(c >>> 8) & 0x0F]);
+                    sink.append(HEX_DIGITS[(c >>> 4) & 0x0F]);
+                    sink.append(HEX_DIGITS[c & 0x0F]);
+                    break;
+            }
+        }
+        if (plain < n) sink.append(s.subSequence(plain, n));
+        sink.append('"');
     }
 
     public byte[] toBytes() {
         return toMessageBytes();
     }
 
+    /**
+     * 编码消息体。未改动的消息直接返回解析来源；有改动时先计算各层大小，
+     * 再一次性写入大小精确的数组，未改动的子树直接拷贝原始切片。
+     * 返回的数组会作为新的缓存来源，调用方不应修改
+     */
     public byte[] toMessageBytes() {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        CodedOutputStream out = CodedOutputStream.newInstance(bos);
+        if (!needsEncode()) {
+            if (sourceOffset == 0 && sourceLength == source.length) return source;
+            return Arrays.copyOfRange(source, sourceOffset, sourceOffset + sourceLength);
+        }
+        byte[] out = encodeFields();
+        attach(out, 0, out.length);
+        return out;
+    }
+
+    public byte[] toPacketBytes() {
+        if (packetSource != null && !modified) return packetSource;
+        if (packetPrefix == null || packetPrefix.length == 0) return toMessageBytes();
+
+        int prefixLen = packetPrefix.length;
+        if (!needsEncode()) {
+            byte[] out = new byte[prefixLen + sourceLength];
+            System.arraycopy(packetPrefix, 0, out, 0, prefixLen);
+            System.arraycopy(source, sourceOffset, out, prefixLen, sourceLength);
+            return out;
+        }
+        byte[] out;
+        int size;
         try {
-            for (Field f : fields) {
-                switch (f.wireType) {
-                    case 0: {
-                        long v = (Long) f.value;
-                        if (v >= 0) out.writeUInt64(f.fieldNumber, v);
-                        else out.writeInt64(f.fieldNumber, v);
-                        break;
-                    }
-                    case 1: {
-                        long v = (Long) f.value;
-                        out.writeFixed64(f.fieldNumber, v);
-                        break;
-                    }
-                    case 2: {
-                        LenValue lv = (LenValue) f.value;
-                        if (lv.subMessage != null) {
-                            byte[] newRaw = lv.subMessage.toMessageBytes();
-                            if (!Arrays.equals(newRaw, lv.raw)) lv.raw = newRaw;
-                        } else if (lv.utf8 != null && lv.view == LenView.UTF8) {
-                            byte[] newRaw = lv.utf8.getBytes(StandardCharsets.UTF_8);
-                            if (!Arrays.equals(newRaw, lv.raw)) lv.raw = newRaw;
-                        }
-                        out.writeByteArray(f.fieldNumber, lv.raw != null ? lv.raw : new byte[0]);
-                        break;
-                    }
-                    case 5: {
-                        int v = (Integer) f.value;
-                        out.writeFixed32(f.fieldNumber, v);
-                        break;
-                    }
-                    default:
-                        break;
+            size = computeSize();
+            out = new byte[prefixLen + size];
+            System.arraycopy(packetPrefix, 0, out, 0, prefixLen);
+            CodedOutputStream cos = CodedOutputStream.newInstance(out, prefixLen, size);
+            writeFields(cos, out, prefixLen);
+            cos.checkNoSpaceLeft();
+        } catch (Exception e) {
+            WeLogger.e("WeProtoData - toBytes", e);
+            return Arrays.copyOf(packetPrefix, prefixLen);
+        }
+        attach(out, prefixLen, size);
+        return out;
+    }
+
+    /**
+     * 编码后的消息体大小，未改动时即原始切片长度，改动过的层级结果会缓存到下次 markDirty
+     */
+    private int computeSize() {
+        if (!needsEncode()) return sourceLength;
+        if (cachedSize < 0) cachedSize = computeFieldsSize();
+        return cachedSize;
+    }
+
+    private int computeFieldsSize() {
+        int size = 0;
+        for (Field f : fields) {
+            switch (f.wireType) {
+                case 0:
+                    size += CodedOutputStream.computeUInt64Size(f.fieldNumber, (Long) f.value);
+                    break;
+                case 1:
+                    size += CodedOutputStream.computeFixed64Size(f.fieldNumber, 0);
+                    break;
+                case 2: {
+                    LenValue lv = (LenValue) f.value;
+                    int len = lv.subMessage != null && lv.subMessage.needsEncode()
+                            ? lv.subMessage.computeSize() : lv.len;
+                    size += CodedOutputStream.computeTagSize(f.fieldNumber)
+                            + CodedOutputStream.computeUInt32SizeNoTag(len) + len;
+                    break;
                 }
+                case 5:
+                    size += CodedOutputStream.computeFixed32Size(f.fieldNumber, 0);
+                    break;
+                default:
+                    break;
             }
-            out.flush();
-            return bos.toByteArray();
+        }
+        return size;
+    }
+
+    /**
+     * 强制重新编码本层字段（子树仍按各自的 dirty 状态决定是否复用原始切片）
+     */
+    private byte[] encodeFields() {
+        try {
+            byte[] out = new byte[computeFieldsSize()];
+            CodedOutputStream cos = CodedOutputStream.newInstance(out);
+            writeFields(cos, out, 0);
+            cos.checkNoSpaceLeft();
+            return out;
         } catch (Exception e) {
             WeLogger.e("WeProtoData - toBytes", e);
             return new byte[0];
         }
     }
 
-    public byte[] toPacketBytes() {
-        byte[] body = toMessageBytes();
-        if (packetPrefix == null || packetPrefix.length == 0) return body;
-        byte[] out = new byte[packetPrefix.length + body.length];
-        System.arraycopy(packetPrefix, 0, out, 0, packetPrefix.length);
-        System.arraycopy(body, 0, out, packetPrefix.length, body.length);
-        return out;
+    /**
+     * 写入所有字段，base 为 out 在 buf 中的起始下标。
+     * 重新编码过的子消息随后指向 buf 中对应的区段，下次编码时可直接复用
+     */
+    private void writeFields(CodedOutputStream out, byte[] buf, int base) throws IOException {
+        for (Field f : fields) {
+            switch (f.wireType) {
+                case 0: {
+                    long v = (Long) f.value;
+                    if (v >= 0) out.writeUInt64(f.fieldNumber, v);
+                    else out.writeInt64(f.fieldNumber, v);
+                    break;
+                }
+                case 1: {
+                    long v = (Long) f.value;
+                    out.writeFixed64(f.fieldNumber, v);
+                    break;
+                }
+                case 2: {
+                    LenValue lv = (LenValue) f.value;
+                    WeProtoData sub = lv.subMessage;
+                    out.writeTag(f.fieldNumber, 2);
+                    if (sub != null && sub.needsEncode()) {
+                        int size = sub.computeSize();
+                        out.writeUInt32NoTag(size);
+                        int start = base + out.getTotalBytesWritten();
+                        sub.writeFields(out, buf, base);
+                        sub.attach(buf, start, size);
+                        lv.buf = buf;
+                        lv.off = start;
+                        lv.len = size;
+                    } else {
+                        out.writeUInt32NoTag(lv.len);
+                        out.writeRawBytes(lv.buf, lv.off, lv.len);
+                    }
+                    break;
+                }
+                case 5: {
+                    int v = (Integer) f.value;
+                    out.writeFixed32(f.fieldNumber, v);
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void attach(byte[] buf, int off, int len) {
+        source = buf;
+        sourceOffset = off;
+        sourceLength = len;
+        dirty = false;
+        cachedSize = -1;
     }
 
     private int findFieldIndex(int fieldNumber, int occurrenceIndex) {
@@ -355,6 +866,7 @@ public class WeProtoData {
         int idx = findFieldIndex(fieldNumber, occurrenceIndex);
         if (idx < 0) return false;
         fields.get(idx).value = value;
+        markDirty();
         return true;
     }
 
@@ -362,6 +874,7 @@ public class WeProtoData {
         int idx = findFieldIndex(fieldNumber, occurrenceIndex);
         if (idx < 0) return false;
         fields.get(idx).value = value;
+        markDirty();
         return true;
     }
 
@@ -369,6 +882,7 @@ public class WeProtoData {
         int idx = findFieldIndex(fieldNumber, occurrenceIndex);
         if (idx < 0) return false;
         fields.get(idx).value = value;
+        markDirty();
         return true;
     }
 
@@ -380,10 +894,11 @@ public class WeProtoData {
         LenValue lv = (LenValue) f.value;
 
         String h = stripNonHex(hex);
-        lv.raw = h.isEmpty() ? new byte[0] : hexToBytes(h);
+        lv.setRaw(h.isEmpty() ? new byte[0] : hexToBytes(h));
         lv.utf8 = null;
         lv.subMessage = null;
         lv.view = LenView.HEX;
+        markDirty();
         return true;
     }
 
@@ -396,9 +911,10 @@ public class WeProtoData {
 
         if (text == null) text = "";
         lv.utf8 = text;
-        lv.raw = text.getBytes(StandardCharsets.UTF_8);
+        lv.setRaw(text.getBytes(StandardCharsets.UTF_8));
         lv.subMessage = null;
         lv.view = LenView.UTF8;
+        markDirty();
         return true;
     }
 
@@ -410,10 +926,12 @@ public class WeProtoData {
         LenValue lv = (LenValue) f.value;
 
         WeProtoData sub = tryParseSubMessageStrong(subBytes);
-        lv.raw = subBytes != null ? subBytes : new byte[0];
+        if (sub != null) attachSub(sub, fieldNumber);
+        lv.setRaw(subBytes);
         lv.subMessage = sub;
         lv.utf8 = null;
         lv.view = sub != null ? LenView.SUB : LenView.HEX;
+        markDirty();
         return true;
     }
 
@@ -421,6 +939,7 @@ public class WeProtoData {
         int idx = findFieldIndex(fieldNumber, occurrenceIndex);
         if (idx < 0) return false;
         fields.remove(idx);
+        markDirty();
         return true;
     }
 
@@ -436,12 +955,11 @@ public class WeProtoData {
             if (f.wireType != 2) continue;
             LenValue lv = (LenValue) f.value;
 
-            WeProtoData sub = ensureSubParsedStrong(lv);
+            WeProtoData sub = ensureSubParsedStrong(f);
             if (sub != null) {
                 int subChanged = sub.replaceUtf8ContainsInternal(needle, replacement);
                 if (subChanged > 0) {
                     lv.subMessage = sub;
-                    lv.raw = sub.toMessageBytes();
                     lv.utf8 = null;
                     lv.view = LenView.SUB;
                     changed += subChanged;
@@ -453,13 +971,14 @@ public class WeProtoData {
                 String ns = s.replace(needle, replacement);
                 if (!ns.equals(s)) {
                     lv.utf8 = ns;
-                    lv.raw = ns.getBytes(StandardCharsets.UTF_8);
+                    lv.setRaw(ns.getBytes(StandardCharsets.UTF_8));
                     lv.subMessage = null;
                     lv.view = LenView.UTF8;
                     changed++;
                 }
             }
         }
+        if (changed > 0) markDirty();
         return changed;
     }
 
@@ -475,12 +994,11 @@ public class WeProtoData {
             if (f.wireType != 2) continue;
             LenValue lv = (LenValue) f.value;
 
-            WeProtoData sub = ensureSubParsedStrong(lv);
+            WeProtoData sub = ensureSubParsedStrong(f);
             if (sub != null) {
                 int subMatches = sub.replaceUtf8RegexInternal(pattern, replacement);
                 if (subMatches > 0) {
                     lv.subMessage = sub;
-                    lv.raw = sub.toMessageBytes();
                     lv.utf8 = null;
                     lv.view = LenView.SUB;
                     matchesTotal += subMatches;
@@ -495,13 +1013,14 @@ public class WeProtoData {
                 if (cnt > 0) {
                     String ns = pattern.matcher(s).replaceAll(replacement);
                     lv.utf8 = ns;
-                    lv.raw = ns.getBytes(StandardCharsets.UTF_8);
+                    lv.setRaw(ns.getBytes(StandardCharsets.UTF_8));
                     lv.subMessage = null;
                     lv.view = LenView.UTF8;
                     matchesTotal += cnt;
                 }
             }
         }
+        if (matchesTotal > 0) markDirty();
         return matchesTotal;
     }
 
@@ -520,6 +1039,7 @@ public class WeProtoData {
     public void fromJSON(JSONObject json) {
         try {
             clear();
+            modified = true;
             Iterator<String> keyIt = json.keys();
             while (keyIt.hasNext()) {
                 String key = keyIt.next();
@@ -528,8 +1048,9 @@ public class WeProtoData {
 
                 if (value instanceof JSONObject) {
                     WeProtoData sub = new WeProtoData();
+                    attachSub(sub, fieldNumber);
                     sub.fromJSON((JSONObject) value);
-                    LenValue lv = new LenValue(sub.toMessageBytes());
+                    LenValue lv = new LenValue(null);
                     lv.subMessage = sub;
                     lv.view = LenView.SUB;
                     fields.add(new Field(fieldNumber, 2, lv));
@@ -550,8 +1071,9 @@ public class WeProtoData {
         try {
             if (value instanceof JSONObject) {
                 WeProtoData sub = new WeProtoData();
+                attachSub(sub, fieldNumber);
                 sub.fromJSON((JSONObject) value);
-                LenValue lv = new LenValue(sub.toMessageBytes());
+                LenValue lv = new LenValue(null);
                 lv.subMessage = sub;
                 lv.view = LenView.SUB;
                 fields.add(new Field(fieldNumber, 2, lv));
@@ -636,6 +1158,7 @@ public class WeProtoData {
             }
         }
 
+        if (changes > 0) markDirty();
         return changes;
     }
 
@@ -645,54 +1168,63 @@ public class WeProtoData {
         try {
             switch (f.wireType) {
                 case 0, 1: {
+                    long nv;
                     if (val instanceof Number) {
-                        f.value = ((Number) val).longValue();
-                        return 1;
-                    }
-                    if (val instanceof String) {
-                        f.value = Long.parseLong((String) val);
-                        return 1;
+                        nv = ((Number) val).longValue();
+                    } else if (val instanceof String) {
+                        nv = Long.parseLong((String) val);
+                    } else {
+                        return 0;
                     }
-                    return 0;
+                    if (f.value instanceof Long && (Long) f.value == nv) return 0;
+                    f.value = nv;
+                    return 1;
                 }
                 case 5: {
+                    int nv;
                     if (val instanceof Number) {
-                        f.value = ((Number) val).intValue();
-                        return 1;
+                        nv = ((Number) val).intValue();
+                    } else if (val instanceof String) {
+                        nv = Integer.parseInt((String) val);
+                    } else {
+                        return 0;
                     }
-                    if (val instanceof String) {
-                        f.value = Integer.parseInt((String) val);
-                        return 1;
-                    }
-                    return 0;
+                    if (f.value instanceof Integer && (Integer) f.value == nv) return 0;
+                    f.value = nv;
+                    return 1;
                 }
                 case 2: {
                     LenValue lv = (LenValue) f.value;
 
                     if (val instanceof JSONObject) {
-                        WeProtoData sub = ensureSubParsedStrong(lv);
+                        WeProtoData sub = ensureSubParsedStrong(f);
                         if (sub == null) {
                             sub = new WeProtoData();
+                            attachSub(sub, f.fieldNumber);
                         }
                         int c = sub.applyViewJSON((JSONObject) val, deleteMissing);
+                        if (c == 0) return 0;
                         lv.subMessage = sub;
-                        lv.raw = sub.toMessageBytes();
                         lv.utf8 = null;
                         lv.view = LenView.SUB;
-                        return Math.max(1, c);
+                        return c;
                     }
 
                     if (val instanceof String) {
                         String s = (String) val;
                         if (s.startsWith("hex->")) {
                             byte[] raw = hexToBytes(stripNonHex(s.substring(5)));
-                            lv.raw = raw != null ? raw : new byte[0];
+                            if (raw == null) raw = new byte[0];
+                            if (lv.rawEquals(raw)) return 0;
+                            lv.setRaw(raw);
                             lv.utf8 = null;
                             lv.subMessage = null;
                             lv.view = LenView.HEX;
                         } else {
+                            byte[] raw = s.getBytes(StandardCharsets.UTF_8);
+                            if (lv.rawEquals(raw)) return 0;
                             lv.utf8 = s;
-                            lv.raw = s.getBytes(StandardCharsets.UTF_8);
+                            lv.setRaw(raw);
                             lv.subMessage = null;
                             lv.view = LenView.UTF8;
                         }
@@ -0,0 +1,571 @@
+package moe.ouom.wekit.util.codegen;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.jf.dexlib2.Opcode;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.builder.Label;
+import org.jf.dexlib2.builder.MethodImplementationBuilder;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction10x;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction11n;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction11x;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction21c;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction21s;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction21t;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction22c;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction22t;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction22x;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction23x;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction31i;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction32x;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction35c;
+import org.jf.dexlib2.builder.instruction.BuilderInstruction3rc;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.immutable.ImmutableClassDef;
+import org.jf.dexlib2.immutable.ImmutableField;
+import org.jf.dexlib2.immutable.ImmutableMethod;
+import org.jf.dexlib2.immutable.ImmutableMethodParameter;
+import org.jf.dexlib2.immutable.reference.ImmutableFieldReference;
+import org.jf.dexlib2.immutable.reference.ImmutableMethodReference;
+import org.jf.dexlib2.immutable.reference.ImmutableTypeReference;
+import org.jf.dexlib2.writer.io.MemoryDataStore;
+import org.jf.dexlib2.writer.pool.DexPool;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import moe.ouom.wekit.loader.hookapi.IClassLoaderHelper;
+import moe.ouom.wekit.loader.startup.StartupInfo;
+import moe.ouom.wekit.util.log.WeLogger;
+
+/**
+ * 为宿主的回调接口生成具体的包装类，替代每次请求都要创建的 {@link Proxy}
+ * <p>
+ * 每个接口只生成一次，生成的类持有 delegate（原回调，可为 null）与 {@link ICallbackHandler}，
+ * 每个接口方法先把参数交给 handler，再直接 invoke-interface 转发给 delegate，delegate 返回后通知 handler.onReturn；
+ * 没有 delegate 时返回 handler 的返回值。
+ * hashCode / equals / toString 同样转发给 delegate
+ * <pre>
+ * CallbackClass cc = CallbackClassMaker.get(iface);
+ * Object cb = cc.wrap(original, (self, method, args) -&gt; { ...; return null; });
+ * </pre>
+ * 生成失败时（例如加载器不支持内存 dex）退回到 Proxy 实现，行为一致
+ */
+public final class CallbackClassMaker {
+
+    private static final String TAG = "CallbackClassMaker";
+    private static final String CLASS_PREFIX = "moe.ouom.wekit.util.codegen.dyn.Callback$";
+
+    private static final String T_OBJECT = "Ljava/lang/Object;";
+    private static final String T_HANDLER = "Lmoe/ouom/wekit/util/codegen/ICallbackHandler;";
+    private static final String T_GENERATED = "Lmoe/ouom/wekit/util/codegen/IGeneratedCallback;";
+
+    // 局部寄存器：v0 handler / 结果，v1 this，v2 方法序号 / delegate，v3 参数数组 / 返回值，v4 装箱值 / wide 返回值，v5 数组下标
+    private static final int LOCALS = 6;
+
+    private static final Map<Class<?>, CallbackClass> sClasses = new HashMap<>();
+    private static final Map<ClassLoader, ClassLoader> sLoaders = new HashMap<>();
+
+    private CallbackClassMaker() {
+    }
+
+    public static final class CallbackClass {
+        private final Class<?> iface;
+        private final Method[] methods;
+        // 生成失败时为 null，改用 Proxy
+        @Nullable
+        private final IGeneratedCallback prototype;
+
+        CallbackClass(Class<?> iface, Method[] methods, @Nullable IGeneratedCallback prototype) {
+            this.iface = iface;
+            this.methods = methods;
+            this.prototype = prototype;
+        }
+
+        public int indexOf(@NonNull String name) {
+            for (int i = 0; i < methods.length; i++) {
+                if (methods[i].getName().equals(name)) return i;
+            }
+            return -1;
+        }
+
+        public boolean isGenerated() {
+            return prototype != null;
+        }
+
+        /**
+         * 创建包装实例
+         *
+         * @param delegate 原回调，为 null 时由 handler 的返回值作为方法返回值
+         */
+        @NonNull
+        public Object wrap(@Nullable Object delegate, @NonNull ICallbackHandler handler) {
+            if (prototype != null) return prototype.newInstance(delegate, handler);
+            return Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface}, new ProxyHandler(this, delegate, handler));
+        }
+    }
+
+    /**
+     * 是否已经是包装过的回调（生成类或退回的 Proxy）
+     */
+    public static boolean isWrapped(@NonNull Object callback) {
+        return callback instanceof IGeneratedCallback || Proxy.isProxyClass(callback.getClass());
+    }
+
+    @NonNull
+    public static synchronized CallbackClass get(@NonNull Class<?> iface) {
+        CallbackClass cc = sClasses.get(iface);
+        if (cc != null) return cc;
+        if (!iface.isInterface()) throw new IllegalArgumentException(iface + " is not an interface");
+        Method[] methods = collectMethods(iface);
+        IGeneratedCallback prototype = null;
+        try {
+            prototype = generate(iface, methods);
+        } catch (Throwable e) {
+            WeLogger.e(TAG, "generate callback class failed, fall back to Proxy: " + iface.getName(), e);
+        }
+        cc = new CallbackClass(iface, methods, prototype);
+        sClasses.put(iface, cc);
+        return cc;
+    }
+
+    // ========== 生成 ==========
+
+    private static IGeneratedCallback generate(Class<?> iface, Method[] methods) throws ReflectiveOperationException {
+        IClassLoaderHelper helper = StartupInfo.getLoaderService().getClassLoaderHelper();
+        if (helper == null) throw new UnsupportedOperationException("ClassLoaderHelper not set");
+        String className = CLASS_PREFIX + iface.getName().replace('.', '_');
+        byte[] dex = makeDex(className, iface, methods);
+
+        ClassLoader loader = helper.createEmptyInMemoryMultiDexClassLoader(bridgeLoader(iface.getClassLoader()));
+        helper.injectDexToClassLoader(loader, dex, null);
+        Class<?> cls = Class.forName(className, true, loader);
+        return (IGeneratedCallback) cls.getConstructor(iface, ICallbackHandler.class).newInstance(null, null);
+    }
+
+    /**
+     * 生成类需要同时看到模块中的 ICallbackHandler 与宿主中的回调接口
+     */
+    private static ClassLoader bridgeLoader(ClassLoader host) {
+        ClassLoader bridge = sLoaders.get(host);
+        if (bridge == null) {
+            ClassLoader module = Objects.requireNonNull(CallbackClassMaker.class.getClassLoader());
+            bridge = new ClassLoader(module) {
+                @Override
+                protected Class<?> findClass(String name) throws ClassNotFoundException {
+                    if (host == null) throw new ClassNotFoundException(name);
+                    return host.loadClass(name);
+                }
+            };
+            sLoaders.put(host, bridge);
+        }
+        return bridge;
+    }
+
+    private static Method[] collectMethods(Class<?> iface) {
+        Set<String> seen = new HashSet<>(Arrays.asList(
+                "hashCode()", "equals(" + T_OBJECT + ")", "toString()",
+                "newInstance(" + T_OBJECT + T_HANDLER + ")", "getDelegate()"
+        ));
+        List<Method> out = new ArrayList<>();
+        for (Method m : iface.getMethods()) {
+            if (Modifier.isStatic(m.getModifiers())) continue;
+            StringBuilder sig = new StringBuilder(m.getName()).append('(');
+            for (Class<?> p : m.getParameterTypes()) sig.append(descriptorOf(p));
+            if (seen.add(sig.append(')').toString())) out.add(m);
+        }
+        return out.toArray(new Method[0]);
+    }
+
+    @NonNull
+    static byte[] makeDex(String className, Class<?> iface, Method[] methods) {
+        String type = descriptorOf(className);
+        String ifaceType = descriptorOf(iface);
+        ImmutableFieldReference delegateField = new ImmutableFieldReference(type, "delegate", ifaceType);
+        ImmutableFieldReference handlerField = new ImmutableFieldReference(type, "handler", T_HANDLER);
+
+        List<ImmutableField> fields = Arrays.asList(
+                new ImmutableField(type, "delegate", ifaceType, Modifier.PUBLIC | Modifier.FINAL, null, null, null),
+                new ImmutableField(type, "handler", T_HANDLER, Modifier.PUBLIC | Modifier.FINAL, null, null, null)
+        );
+
+        List<ImmutableMethod> list = new ArrayList<>();
+        list.add(makeConstructor(type, ifaceType, delegateField, handlerField));
+        list.add(makeNewInstance(type, ifaceType));
+        list.add(makeGetDelegate(type, delegateField));
+        list.add(makeHashCode(type, delegateField));
+        list.add(makeEquals(type, delegateField));
+        list.add(makeToString(type, delegateField));
+        for (int i = 0; i < methods.length; i++) {
+            list.add(makeForward(type, ifaceType, delegateField, handlerField, methods[i], i));
+        }
+
+        ClassDef classDef = new ImmutableClassDef(type, Modifier.PUBLIC | Modifier.FINAL, T_OBJECT,
+                Arrays.asList(ifaceType, T_GENERATED), "CallbackClassMaker.dexlib2", null, fields, list);
+        DexPool pool = new DexPool(Opcodes.forDexVersion(35));
+        pool.internClass(classDef);
+        MemoryDataStore store = new MemoryDataStore();
+        try {
+            pool.writeTo(store);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return store.getData();
+    }
+
+    // <init>(I delegate, ICallbackHandler handler)
+    private static ImmutableMethod makeConstructor(String type, String ifaceType,
+                                                   ImmutableFieldReference delegateField, ImmutableFieldReference handlerField) {
+        MethodImplementationBuilder b = new MethodImplementationBuilder(3);
+        b.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_DIRECT, 1, 0, 0, 0, 0, 0,
+                method(T_OBJECT, "<init>", Collections.emptyList(), "V")));
+        b.addInstruction(new BuilderInstruction22c(Opcode.IPUT_OBJECT, 1, 0, delegateField));
+        b.addInstruction(new BuilderInstruction22c(Opcode.IPUT_OBJECT, 2, 0, handlerField));
+        b.addInstruction(new BuilderInstruction10x(Opcode.RETURN_VOID));
+        return new ImmutableMethod(type, "<init>", params(ifaceType, T_HANDLER), "V",
+                Modifier.PUBLIC | 0x10000 /* constructor */, null, null, b.getMethodImplementation());
+    }
+
+    // newInstance(Object, ICallbackHandler) -> new G((I) delegate, handler)
+    private static ImmutableMethod makeNewInstance(String type, String ifaceType) {
+        MethodImplementationBuilder b = new MethodImplementationBuilder(4);
+        b.addInstruction(new BuilderInstruction21c(Opcode.NEW_INSTANCE, 0, new ImmutableTypeReference(type)));
+        b.addInstruction(new BuilderInstruction21c(Opcode.CHECK_CAST, 2, new ImmutableTypeReference(ifaceType)));
+        b.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_DIRECT, 3, 0, 2, 3, 0, 0,
+                method(type, "<init>", Arrays.asList(ifaceType, T_HANDLER), "V")));
+        b.addInstruction(new BuilderInstruction11x(Opcode.RETURN_OBJECT, 0));
+        return new ImmutableMethod(type, "newInstance", params(T_OBJECT, T_HANDLER), T_OBJECT,
+                Modifier.PUBLIC, null, null, b.getMethodImplementation());
+    }
+
+    private static ImmutableMethod makeGetDelegate(String type, ImmutableFieldReference delegateField) {
+        MethodImplementationBuilder b = new MethodImplementationBuilder(2);
+        b.addInstruction(new BuilderInstruction22c(Opcode.IGET_OBJECT, 0, 1, delegateField));
+        b.addInstruction(new BuilderInstruction11x(Opcode.RETURN_OBJECT, 0));
+        return new ImmutableMethod(type, "getDelegate", params(), T_OBJECT,
+                Modifier.PUBLIC, null, null, b.getMethodImplementation());
+    }
+
+    private static ImmutableMethod makeHashCode(String type, ImmutableFieldReference delegateField) {
+        MethodImplementationBuilder b = new MethodImplementationBuilder(2);
+        Label self = b.getLabel("self");
+        b.addInstruction(new BuilderInstruction22c(Opcode.IGET_OBJECT, 0, 1, delegateField));
+        b.addInstruction(new BuilderInstruction21t(Opcode.IF_EQZ, 0, self));
+        b.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_VIRTUAL, 1, 0, 0, 0, 0, 0,
+                method(T_OBJECT, "hashCode", Collections.emptyList(), "I")));
+        b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT, 0));
+        b.addInstruction(new BuilderInstruction11x(Opcode.RETURN, 0));
+        b.addLabel("self");
+        b.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_STATIC, 1, 1, 0, 0, 0, 0,
+                method("Ljava/lang/System;", "identityHashCode", Arrays.asList(T_OBJECT), "I")));
+        b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT, 0));
+        b.addInstruction(new BuilderInstruction11x(Opcode.RETURN, 0));
+        return new ImmutableMethod(type, "hashCode", params(), "I",
+                Modifier.PUBLIC, null, null, b.getMethodImplementation());
+    }
+
+    // equals(o): o == this || (delegate != null && delegate.equals(o))
+    private static ImmutableMethod makeEquals(String type, ImmutableFieldReference delegateField) {
+        MethodImplementationBuilder b = new MethodImplementationBuilder(3);
+        Label yes = b.getLabel("yes");
+        Label no = b.getLabel("no");
+        b.addInstruction(new BuilderInstruction22t(Opcode.IF_EQ, 1, 2, yes));
+        b.addInstruction(new BuilderInstruction22c(Opcode.IGET_OBJECT, 0, 1, delegateField));
+        b.addInstruction(new BuilderInstruction21t(Opcode.IF_EQZ, 0, no));
+        b.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_VIRTUAL, 2, 0, 2, 0, 0, 0,
+                method(T_OBJECT, "equals", Arrays.asList(T_OBJECT), "Z")));
+        b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT, 0));
+        b.addInstruction(new BuilderInstruction11x(Opcode.RETURN, 0));
+        b.addLabel("yes");
+        b.addInstruction(new BuilderInstruction11n(Opcode.CONST_4, 0, 1));
+        b.addInstruction(new BuilderInstruction11x(Opcode.RETURN, 0));
+        b.addLabel("no");
+        b.addInstruction(new BuilderInstruction11n(Opcode.CONST_4, 0, 0));
+        b.addInstruction(new BuilderInstruction11x(Opcode.RETURN, 0));
+        return new ImmutableMethod(type, "equals", params(T_OBJECT), "Z",
+                Modifier.PUBLIC, null, null, b.getMethodImplementation());
+    }
+
+    private static ImmutableMethod makeToString(String type, ImmutableFieldReference delegateField) {
+        MethodImplementationBuilder b = new MethodImplementationBuilder(2);
+        Label self = b.getLabel("self");
+        b.addInstruction(new BuilderInstruction22c(Opcode.IGET_OBJECT, 0, 1, delegateField));
+        b.addInstruction(new BuilderInstruction21t(Opcode.IF_EQZ, 0, self));
+        b.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_VIRTUAL, 1, 0, 0, 0, 0, 0,
+                method(T_OBJECT, "toString", Collections.emptyList(), "Ljava/lang/String;")));
+        b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT_OBJECT, 0));
+        b.addInstruction(new BuilderInstruction11x(Opcode.RETURN_OBJECT, 0));
+        b.addLabel("self");
+        b.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_SUPER, 1, 1, 0, 0, 0, 0,
+                method(T_OBJECT, "toString", Collections.emptyList(), "Ljava/lang/String;")));
+        b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT_OBJECT, 0));
+        b.addInstruction(new BuilderInstruction11x(Opcode.RETURN_OBJECT, 0));
+        return new ImmutableMethod(type, "toString", params(), "Ljava/lang/String;",
+                Modifier.PUBLIC, null, null, b.getMethodImplementation());
+    }
+
+    /**
+     * <pre>
+     * R m(args) {
+     *     Object r = null;
+     *     if (handler != null) r = handler.onCall(this, index, new Object[]{args...});
+     *     if (delegate != null) {
+     *         R ret = delegate.m(args);
+     *         if (handler != null) handler.onReturn(this, index);
+     *         return ret;
+     *     }
+     *     return (R) r;
+     * }
+     * </pre>
+     */
+    private static ImmutableMethod makeForward(String type, String ifaceType,
+                                               ImmutableFieldReference delegateField, ImmutableFieldReference handlerField,
+                                               Method m, int index) {
+        Class<?>[] paramTypes = m.getParameterTypes();
+        Class<?> ret = m.getReturnType();
+        int paramRegs = 1;
+        for (Class<?> p : paramTypes) paramRegs += regSize(p);
+        int p0 = LOCALS;
+        MethodImplementationBuilder b = new MethodImplementationBuilder(LOCALS + paramRegs);
+        Label forward = b.getLabel("forward");
+        Label noDelegate = b.getLabel("noDelegate");
+        Label done = b.getLabel("done");
+
+        b.addInstruction(new BuilderInstruction22x(Opcode.MOVE_OBJECT_FROM16, 1, p0));
+        b.addInstruction(new BuilderInstruction22c(Opcode.IGET_OBJECT, 0, 1, handlerField));
+        b.addInstruction(new BuilderInstruction21t(Opcode.IF_EQZ, 0, forward));
+
+        // 参数装箱
+        b.addInstruction(new BuilderInstruction31i(Opcode.CONST, 2, paramTypes.length));
+        b.addInstruction(new BuilderInstruction22c(Opcode.NEW_ARRAY, 3, 2, new ImmutableTypeReference("[" + T_OBJECT)));
+        int reg = p0 + 1;
+        for (int i = 0; i < paramTypes.length; i++) {
+            Class<?> p = paramTypes[i];
+            int value = reg;
+            if (p.isPrimitive()) {
+                String box = boxType(p);
+                b.addInstruction(new BuilderInstruction3rc(Opcode.INVOKE_STATIC_RANGE, reg, regSize(p),
+                        method(box, "valueOf", Arrays.asList(descriptorOf(p)), box)));
+                b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT_OBJECT, 4));
+                value = 4;
+            }
+            b.addInstruction(new BuilderInstruction31i(Opcode.CONST, 5, i));
+            b.addInstruction(new BuilderInstruction23x(Opcode.APUT_OBJECT, value, 3, 5));
+            reg += regSize(p);
+        }
+        b.addInstruction(new BuilderInstruction31i(Opcode.CONST, 2, index));
+        b.addInstruction(new BuilderInstruction3rc(Opcode.INVOKE_INTERFACE_RANGE, 0, 4,
+                method(T_HANDLER, "onCall", Arrays.asList(T_OBJECT, "I", "[" + T_OBJECT), T_OBJECT)));
+        b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT_OBJECT, 0));
+
+        // 直接转发给 delegate，this 寄存器已不再需要，替换为 delegate 使参数寄存器连续
+        b.addLabel("forward");
+        b.addInstruction(new BuilderInstruction22c(Opcode.IGET_OBJECT, 2, 1, delegateField));
+        b.addInstruction(new BuilderInstruction21t(Opcode.IF_EQZ, 2, noDelegate));
+        b.addInstruction(new BuilderInstruction32x(Opcode.MOVE_OBJECT_16, p0, 2));
+        List<String> paramDescs = new ArrayList<>();
+        for (Class<?> p : paramTypes) paramDescs.add(descriptorOf(p));
+        b.addInstruction(new BuilderInstruction3rc(Opcode.INVOKE_INTERFACE_RANGE, p0, paramRegs,
+                method(ifaceType, m.getName(), paramDescs, descriptorOf(ret))));
+        // 返回值暂存在 v3（wide 为 v4/v5），v0-v2 用于调用 handler.onReturn
+        if (ret == void.class) {
+            // 无返回值
+        } else if (!ret.isPrimitive()) {
+            b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT_OBJECT, 3));
+        } else if (regSize(ret) == 2) {
+            b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT_WIDE, 4));
+        } else {
+            b.addInstruction(new BuilderInstruction11x(Opcode.MOVE_RESULT, 3));
+        }
+        b.addInstruction(new BuilderInstruction22c(Opcode.IGET_OBJECT, 0, 1, handlerField));
+        b.addInstruction(new BuilderInstruction21t(Opcode.IF_EQZ, 0, done));
+        b.addInstruction(new BuilderInstruction31i(Opcode.CONST, 2, index));
+        b.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_INTERFACE, 3, 0, 1, 2, 0, 0,
+                method(T_HANDLER, "onReturn", Arrays.asList(T_OBJECT, "I"), "V")));
+        b.addLabel("done");
+        if (ret == void.class) {
+            b.addInstruction(new BuilderInstruction10x(Opcode.RETURN_VOID));
+        } else if (!ret.isPrimitive()) {
+            b.addInstruction(new BuilderInstruction11x(Opcode.RETURN_OBJECT, 3));
+        } else if (regSize(ret) == 2) {
+            b.addInstruction(new BuilderInstruction11x(Opcode.RETURN_WIDE, 4));
+        } else {
+            b.addInstruction(new BuilderInstruction11x(Opcode.RETURN, 3));
+        }
+
+        // 没有 delegate 时返回 handler 的结果
+        b.addLabel("noDelegate");
+        addReturnHandlerResult(b, ret);
+
+        return new ImmutableMethod(type, m.getName(), params(paramDescs.toArray(new String[0])), descriptorOf(ret),
+                Modifier.PUBLIC, null, null, b.getMethodImplementation());
+    }
+
+    private static void addReturnHandlerResult(MethodImplementationBuilder b, Class<?> ret) {
+        if (ret == void.class) {
+            b.addInstruction(new BuilderInstruction10x(Opcode.RETURN_VOID));
+            return;
+        }
+        if (!ret.isPrimitive()) {
+            b.addInstruction(new BuilderInstruction21c(Opcode.CHECK_CAST, 0, new ImmutableTypeReference(descriptorOf(ret))));
+            b.addInstruction(new BuilderInstruction11x(Opcode.RETURN_OBJECT, 0));
+            return;
+        }
+        boolean wide = regSize(ret) == 2;
+        Label zero = b.getLabel("zero");
+        b.addInstruction(new BuilderInstruction21t(Opcode.IF_EQZ, 0, zero));
+        String holder;
+        String unbox;
+        if (ret == boolean.class) {
+            holder = "Ljava/lang/Boolean;";
+            unbox = "booleanValue";
+        } else if (ret == char.class) {
+            holder = "Ljava/lang/Character;";
+            unbox = "charValue";
+        } else {
+            holder = "Ljava/lang/Number;";
+            unbox = ret.getName() + "Value";
+        }
+        b.addInstruction(new BuilderInstruction21c(Opcode.CHECK_CAST, 0, new ImmutableTypeReference(holder)));
+        b.addInstruction(new BuilderInstruction35c(Opcode.INVOKE_VIRTUAL, 1, 0, 0, 0, 0, 0,
+                method(holder, unbox, Collections.emptyList(), descriptorOf(ret))));
+        b.addInstruction(new BuilderInstruction11x(wide ? Opcode.MOVE_RESULT_WIDE : Opcode.MOVE_RESULT, 0));
+        b.addInstruction(new BuilderInstruction11x(wide ? Opcode.RETURN_WIDE : Opcode.RETURN, 0));
+        b.addLabel("zero");
+        if (wide) {
+            b.addInstruction(new BuilderInstruction21s(Opcode.CONST_WIDE_16, 0, 0));
+            b.addInstruction(new BuilderInstruction11x(Opcode.RETURN_WIDE, 0));
+        } else {
+            b.addInstruction(new BuilderInstruction11n(Opcode.CONST_4, 0, 0));
+            b.addInstruction(new BuilderInstruction11x(Opcode.RETURN, 0));
+        }
+    }
+
+    // ========== 工具 ==========
+
+    private static ImmutableMethodReference method(String owner, String name, List<String> params, String ret) {
+        return new ImmutableMethodReference(owner, name, params, ret);
+    }
+
+    private static List<ImmutableMethodParameter> params(String... types) {
+        List<ImmutableMethodParameter> out = new ArrayList<>(types.length);
+        for (String t : types) out.add(new ImmutableMethodParameter(t, null, null));
+        return out;
+    }
+
+    private static int regSize(Class<?> c) {
+        return c == long.class || c == double.class ? 2 : 1;
+    }
+
+    private static String boxType(Class<?> c) {
+        if (c == int.class) return "Ljava/lang/Integer;";
+        if (c == long.class) return "Ljava/lang/Long;";
+        if (c == boolean.class) return "Ljava/lang/Boolean;";
+        if (c == byte.class) return "Ljava/lang/Byte;";
+        if (c == short.class) return "Ljava/lang/Short;";
+        if (c == char.class) return "Ljava/lang/Character;";
+        if (c == float.class) return "Ljava/lang/Float;";
+        return "Ljava/lang/Double;";
+    }
+
+    private static String descriptorOf(String className) {
+        return "L" + className.replace('.', '/') + ";";
+    }
+
+    static String descriptorOf(Class<?> c) {
+        if (c == void.class) return "V";
+        if (c == int.class) return "I";
+        if (c == long.class) return "J";
+        if (c == boolean.class) return "Z";
+        if (c == byte.class) return "B";
+        if (c == short.class) return "S";
+        if (c == char.class) return "C";
+        if (c == float.class) return "F";
+        if (c == double.class) return "D";
+        if (c.isArray()) return c.getName().replace('.', '/');
+        return descriptorOf(c.getName());
+    }
+
+    /**
+     * 生成失败时的 Proxy 实现，与生成类的行为保持一致
+     */
+    private static final class ProxyHandler implements InvocationHandler {
+        private final CallbackClass cc;
+        private final Object delegate;
+        private final ICallbackHandler handler;
+
+        ProxyHandler(CallbackClass cc, Object delegate, ICallbackHandler handler) {
+            this.cc = cc;
+            this.delegate = delegate;
+            this.handler = handler;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "hashCode":
+                    if (method.getParameterTypes().length == 0) {
+                        return delegate != null ? delegate.hashCode() : System.identityHashCode(proxy);
+                    }
+                    break;
+                case "equals":
+                    if (method.getParameterTypes().length == 1 && method.getParameterTypes()[0] == Object.class) {
+                        return proxy == args[0] || (delegate != null && delegate.equals(args[0]));
+                    }
+                    break;
+                case "toString":
+                    if (method.getParameterTypes().length == 0) {
+                        return delegate != null ? delegate.toString() : "WeKitCallback@" + Integer.toHexString(System.identityHashCode(proxy));
+                    }
+                    break;
+                default:
+                    break;
+            }
+            Object r = handler.onCall(proxy, indexOf(method), args != null ? args : new Object[0]);
+            if (delegate != null) {
+                Object ret;
+                try {
+                    ret = method.invoke(delegate, args);
+                } catch (java.lang.reflect.InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+                handler.onReturn(proxy, indexOf(method));
+                return ret;
+            }
+            Class<?> ret = method.getReturnType();
+            if (!ret.isPrimitive() || ret == void.class) return r;
+            if (r != null) return r;
+            if (ret == boolean.class) return false;
+            if (ret == char.class) return (char) 0;
+            if (ret == long.class) return 0L;
+            if (ret == float.class) return 0f;
+            if (ret == double.class) return 0d;
+            if (ret == byte.class) return (byte) 0;
+            if (ret == short.class) return (short) 0;
+            return 0;
+        }
+
+        private int indexOf(Method method) {
+            for (int i = 0; i < cc.methods.length; i++) {
+                Method m = cc.methods[i];
+                if (m.getName().equals(method.getName()) && Arrays.equals(m.getParameterTypes(), method.getParameterTypes())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package moe.ouom.wekit.util.codegen;
+
+/**
+ * 生成的回调类在转发给原回调之前调用
+ */
+public interface ICallbackHandler {
+
+    /**
+     * @param self   生成的回调实例
+     * @param method 方法在 {@link CallbackClassMaker.CallbackClass#indexOf(String)} 中的序号
+     * @param args   调用参数，基本类型已装箱
+     * @return 没有原回调时作为返回值（基本类型按对应包装类拆箱，null 视为 0）；有原回调时忽略
+     */
+    Object onCall(Object self, int method, Object[] args);
+
+    /**
+     * 原回调正常返回后调用，没有原回调或原回调抛出异常时不调用
+     *
+     * @param self   生成的回调实例
+     * @param method 方法序号，同 {@link #onCall}
+     */
+    default void onReturn(Object self, int method) {
+    }
+}
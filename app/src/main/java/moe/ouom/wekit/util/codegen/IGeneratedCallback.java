@@ -0,0 +1,14 @@
+package moe.ouom.wekit.util.codegen;
+
+/**
+ * 由 {@link CallbackClassMaker} 生成的回调类都会实现此接口
+ */
+public interface IGeneratedCallback {
+
+    /**
+     * 创建同一个类的新实例，直接调用构造函数，不经过反射
+     */
+    Object newInstance(Object delegate, ICallbackHandler handler);
+
+    Object getDelegate();
+}
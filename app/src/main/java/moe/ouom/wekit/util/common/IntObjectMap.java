@@ -0,0 +1,114 @@
+package moe.ouom.wekit.util.common;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 以 int 为键的开放寻址表，读多写少
+ * 读取无锁且不装箱；写入加锁并整体复制后再发布，适合键集合很快稳定下来的场景（如按 cgiId 建立的统计项）
+ */
+public final class IntObjectMap<V> {
+
+    private static final class Table {
+        final int[] keys;
+        final Object[] values;
+        final boolean[] used;
+        final int size;
+
+        Table(int capacity, int size) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+            used = new boolean[capacity];
+            this.size = size;
+        }
+    }
+
+    private volatile Table table = new Table(16, 0);
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table t = table;
+        int mask = t.keys.length - 1;
+        int i = mix(key) & mask;
+        while (t.used[i]) {
+            if (t.keys[i] == key) return (V) t.values[i];
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    @NonNull
+    public V computeIfAbsent(int key, @NonNull IntFunction<V> factory) {
+        V v = get(key);
+        if (v != null) return v;
+        synchronized (this) {
+            v = get(key);
+            if (v != null) return v;
+            v = factory.apply(key);
+            Table old = table;
+            int capacity = old.keys.length;
+            while ((old.size + 1) * 2 > capacity) capacity <<= 1;
+            Table t = new Table(capacity, old.size + 1);
+            for (int i = 0; i < old.keys.length; i++) {
+                if (old.used[i]) insert(t, old.keys[i], old.values[i]);
+            }
+            insert(t, key, v);
+            table = t;
+            return v;
+        }
+    }
+
+    private static void insert(Table t, int key, Object value) {
+        int mask = t.keys.length - 1;
+        int i = mix(key) & mask;
+        while (t.used[i]) i = (i + 1) & mask;
+        t.used[i] = true;
+        t.keys[i] = key;
+        t.values[i] = value;
+    }
+
+    public int size() {
+        return table.size;
+    }
+
+    /**
+     * 遍历当前所有键值，遍历期间新增的键不保证可见
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(@NonNull Visitor<V> visitor) {
+        Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            if (t.used[i]) visitor.visit(t.keys[i], (V) t.values[i]);
+        }
+    }
+
+    public synchronized void clear() {
+        table = new Table(16, 0);
+    }
+
+    /**
+     * 整体替换为 entries 中的键值，只复制一次，适合从缓存批量加载
+     */
+    public synchronized void replaceWith(@NonNull Map<Integer, ? extends V> entries) {
+        int capacity = 16;
+        while (entries.size() * 2 > capacity) capacity <<= 1;
+        Table t = new Table(capacity, entries.size());
+        for (Map.Entry<Integer, ? extends V> e : entries.entrySet()) {
+            insert(t, e.getKey(), e.getValue());
+        }
+        table = t;
+    }
+
+    public interface Visitor<V> {
+        void visit(int key, V value);
+    }
+}
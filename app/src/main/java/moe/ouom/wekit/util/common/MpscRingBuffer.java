@@ -0,0 +1,86 @@
+package moe.ouom.wekit.util.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界无锁多生产者单消费者环形队列
+ * 每个槽位带一个序号：序号等于写入位置时可写，等于写入位置 + 1 时可读；
+ * 生产者只在 tail 上 CAS 抢占位置，满时 {@link #offer} 直接返回 false，不会阻塞或自旋等待消费者
+ * <p>
+ * {@link #poll} 只能由同一个线程调用
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+
+    // 只由消费者线程读写
+    private long head;
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2) capacity = 2;
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        buffer = new AtomicReferenceArray<>(size);
+        sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequence.set(i, i);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 写入一个元素，队列已满时返回 false
+     */
+    public boolean offer(E e) {
+        long pos;
+        int index;
+        for (;;) {
+            pos = tail.get();
+            index = (int) pos & mask;
+            long diff = sequence.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+            } else if (diff < 0) {
+                // 该槽位还没被消费者释放
+                return false;
+            }
+            // diff > 0：其他生产者已占用该位置，重读 tail
+        }
+        buffer.lazySet(index, e);
+        // volatile 写保证消费者看到序号时元素已经可见
+        sequence.set(index, pos + 1);
+        return true;
+    }
+
+    /**
+     * 取出一个元素，队列为空或下一个位置的生产者尚未写完时返回 null
+     */
+    public E poll() {
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequence.get(index) != pos + 1) return null;
+        E e = buffer.get(index);
+        buffer.lazySet(index, null);
+        sequence.set(index, pos + mask + 1);
+        head = pos + 1;
+        return e;
+    }
+
+    /**
+     * 近似的当前元素数
+     */
+    public int size() {
+        long size = tail.get() - head;
+        if (size < 0) return 0;
+        return (int) Math.min(size, mask + 1);
+    }
+}
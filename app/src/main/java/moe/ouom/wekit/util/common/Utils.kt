@@ -20,7 +20,6 @@ import java.util.Date
 import java.util.Objects
 import androidx.core.view.size
 import androidx.core.net.toUri
-import java.util.regex.Pattern
 
 object Utils {
     private val sHandler: Handler? = null
@@ -232,38 +231,10 @@ object Utils {
     /**
      * 从 XML 提取属性值 (e.g. appid="xxx")
      */
-    fun extractXmlAttr(xml: String, attrName: String): String {
-        try {
-            val pattern = Pattern.compile("$attrName=\"([^\"]*)\"")
-            val matcher = pattern.matcher(xml)
-            if (matcher.find()) {
-                return matcher.group(1) ?: ""
-            }
-        } catch (e: Exception) {
-            // ignore
-        }
-        return ""
-    }
+    fun extractXmlAttr(xml: String, attrName: String): String = XmlUtils.extractXmlAttr(xml, attrName)
 
     /**
      * 从 XML 提取标签内容 (e.g. <title>xxx</title>)
      */
-    fun extractXmlTag(xml: String, tagName: String): String {
-        try {
-            val pattern = Pattern.compile("<$tagName><!\\[CDATA\\[(.*?)]]></$tagName>")
-            val matcher = pattern.matcher(xml)
-            if (matcher.find()) {
-                return matcher.group(1) ?: ""
-            }
-            // Fallback for non-CDATA
-            val patternSimple = Pattern.compile("<$tagName>(.*?)</$tagName>")
-            val matcherSimple = patternSimple.matcher(xml)
-            if (matcherSimple.find()) {
-                return matcherSimple.group(1) ?: ""
-            }
-        } catch (_: Exception) {
-            // ignore
-        }
-        return ""
-    }
+    fun extractXmlTag(xml: String, tagName: String): String = XmlUtils.extractXmlTag(xml, tagName)
 }
@@ -0,0 +1,47 @@
+package moe.ouom.wekit.util.common
+
+import java.util.regex.Pattern
+
+/**
+ * 不依赖 Android 的 XML 文本提取工具，供 [Utils] 与 JVM 基准测试共用
+ */
+object XmlUtils {
+
+    /**
+     * 从 XML 提取属性值 (e.g. appid="xxx")
+     */
+    fun extractXmlAttr(xml: String, attrName: String): String {
+        try {
+            val pattern = Pattern.compile("$attrName=\"([^\"]*)\"")
+            val matcher = pattern.matcher(xml)
+            if (matcher.find()) {
+                return matcher.group(1) ?: ""
+            }
+        } catch (e: Exception) {
+            // ignore
+        }
+        return ""
+    }
+
+    /**
+     * 从 XML 提取标签内容 (e.g. <title>xxx</title>)
+     */
+    fun extractXmlTag(xml: String, tagName: String): String {
+        try {
+            val pattern = Pattern.compile("<$tagName><!\\[CDATA\\[(.*?)]]></$tagName>")
+            val matcher = pattern.matcher(xml)
+            if (matcher.find()) {
+                return matcher.group(1) ?: ""
+            }
+            // Fallback for non-CDATA
+            val patternSimple = Pattern.compile("<$tagName>(.*?)</$tagName>")
+            val matcherSimple = patternSimple.matcher(xml)
+            if (matcherSimple.find()) {
+                return matcherSimple.group(1) ?: ""
+            }
+        } catch (_: Exception) {
+            // ignore
+        }
+        return ""
+    }
+}
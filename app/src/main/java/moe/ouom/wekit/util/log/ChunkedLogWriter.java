@@ -0,0 +1,133 @@
+package moe.ouom.wekit.util.log;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.Writer;
+import java.util.ArrayList;
+
+import moe.ouom.wekit.BuildConfig;
+
+/**
+ * 分段输出到 logcat 的 Writer，格式与 {@link WeLogger#logChunked} 一致（[part N/M]）
+ * 写入时按 CHUNK_SIZE 切段保存，关闭时才知道总段数并统一输出，长文本无需先拼成完整字符串
+ * 超过 MAX_CHUNKS 段时只保留第一段，按 logChunked 的方式输出开头并提示截断
+ */
+public final class ChunkedLogWriter extends Writer {
+
+    private final int priority;
+    private final String tag;
+    private final ArrayList<String> parts = new ArrayList<>();
+    private final StringBuilder chunk = new StringBuilder(WeLogger.CHUNK_SIZE);
+    private long total;
+    private boolean closed;
+
+    public ChunkedLogWriter(int priority, @NonNull String tag) {
+        this.priority = priority;
+        this.tag = tag;
+    }
+
+    public static ChunkedLogWriter info(@NonNull String tag) {
+        return new ChunkedLogWriter(Log.INFO, tag);
+    }
+
+    /**
+     * 已经超过 MAX_CHUNKS 段，之后的内容只计数不保存
+     */
+    private boolean overflow() {
+        return parts.size() >= WeLogger.MAX_CHUNKS;
+    }
+
+    @Override
+    public void write(int c) {
+        if (closed) return;
+        total++;
+        if (overflow()) return;
+        chunk.append((char) c);
+        if (chunk.length() == WeLogger.CHUNK_SIZE) cut();
+    }
+
+    @Override
+    public void write(@NonNull char[] cbuf, int off, int len) {
+        if (closed) return;
+        total += len;
+        while (len > 0 && !overflow()) {
+            int n = Math.min(len, WeLogger.CHUNK_SIZE - chunk.length());
+            chunk.append(cbuf, off, n);
+            off += n;
+            len -= n;
+            if (chunk.length() == WeLogger.CHUNK_SIZE) cut();
+        }
+    }
+
+    @Override
+    public void write(@NonNull String str, int off, int len) {
+        if (closed) return;
+        total += len;
+        while (len > 0 && !overflow()) {
+            int n = Math.min(len, WeLogger.CHUNK_SIZE - chunk.length());
+            chunk.append(str, off, off + n);
+            off += n;
+            len -= n;
+            if (chunk.length() == WeLogger.CHUNK_SIZE) cut();
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) {
+        if (csq == null) csq = "null";
+        if (closed) return this;
+        total += end - start;
+        while (start < end && !overflow()) {
+            int n = Math.min(end - start, WeLogger.CHUNK_SIZE - chunk.length());
+            chunk.append(csq, start, start + n);
+            start += n;
+            if (chunk.length() == WeLogger.CHUNK_SIZE) cut();
+        }
+        return this;
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+        if (csq == null) csq = "null";
+        return append(csq, 0, csq.length());
+    }
+
+    private void cut() {
+        parts.add(chunk.toString());
+        chunk.setLength(0);
+    }
+
+    @Override
+    public void flush() { }
+
+    /**
+     * 输出全部内容，只有一段时不带分段标记
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (chunk.length() > 0) cut();
+        if (parts.isEmpty()) return;
+
+        String prefix = "[" + tag + "]";
+        if (total <= WeLogger.CHUNK_SIZE) {
+            Log.println(priority, BuildConfig.TAG, prefix + parts.get(0));
+            return;
+        }
+
+        long chunkCount = (total + WeLogger.CHUNK_SIZE - 1) / WeLogger.CHUNK_SIZE;
+        if (chunkCount > WeLogger.MAX_CHUNKS) {
+            Log.println(priority, BuildConfig.TAG, prefix + "[chunked] too long (" + total + " chars, " + chunkCount
+                    + " chunks). head:\n" + parts.get(0));
+            Log.println(priority, BuildConfig.TAG, prefix + "[chunked] truncated. Consider writing to file for full dump.");
+        } else {
+            for (int i = 0; i < parts.size(); i++) {
+                Log.println(priority, BuildConfig.TAG, prefix + "[part " + (i + 1) + "/" + chunkCount + "] " + parts.get(i));
+            }
+        }
+        parts.clear();
+    }
+}
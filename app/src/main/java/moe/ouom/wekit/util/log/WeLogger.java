@@ -14,8 +14,8 @@ public class WeLogger {
 
     private static final String TAG = BuildConfig.TAG;
 
-    private static final int CHUNK_SIZE = 4000;
-    private static final int MAX_CHUNKS = 200;
+    static final int CHUNK_SIZE = 4000;
+    static final int MAX_CHUNKS = 200;
 
     // ========== String ==========
     public static void e(@NonNull String msg) {
@@ -334,11 +334,17 @@ public class WeLogger {
         e(TAG, android.util.Log.getStackTraceString(th));
     }
 
-    @SuppressLint("DefaultLocale")
     @NonNull
     public static String getStackTraceString() {
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
+        return getStackTraceString(Thread.currentThread().getStackTrace());
+    }
 
+    /**
+     * 格式化在其他线程上采集的调用栈
+     */
+    @SuppressLint("DefaultLocale")
+    @NonNull
+    public static String getStackTraceString(@NonNull StackTraceElement[] stackTrace) {
         StringBuilder stackTraceMsg = new StringBuilder().append("\n");
         boolean startRecording = false;
 
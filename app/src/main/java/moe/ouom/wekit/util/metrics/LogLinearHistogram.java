@@ -0,0 +1,107 @@
+package moe.ouom.wekit.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定内存的对数线性直方图
+ * 每个 2 的幂区间再均分为 {@link #SUB_BUCKETS} 个线性子桶，相对误差不超过 1 / SUB_BUCKETS；
+ * 小于 SUB_BUCKETS 的值各占一个桶。记录只是一次数组下标计算和一次原子自增，不分配对象
+ */
+public final class LogLinearHistogram {
+
+    private static final int SUB_BITS = 3;
+    public static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) Math.max(value, 0);
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶的下界（含）
+     */
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index & (SUB_BUCKETS - 1);
+        return (1L << exp) + ((long) sub << (exp - SUB_BITS));
+    }
+
+    /**
+     * 桶的上界（含）
+     */
+    static long upperBound(int index) {
+        return index + 1 < BUCKETS ? lowerBound(index + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets.getAndIncrement(indexOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * 近似分位数，返回所在桶的上界
+     *
+     * @param q 0 ~ 1
+     */
+    public long percentile(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * Math.min(Math.max(q, 0.0), 1.0));
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * 遍历非空的桶
+     */
+    public void forEachBucket(BucketVisitor visitor) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = buckets.get(i);
+            if (n != 0) visitor.visit(lowerBound(i), upperBound(i), n);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.reset();
+        sum.reset();
+    }
+
+    public interface BucketVisitor {
+        void visit(long from, long to, long count);
+    }
+}
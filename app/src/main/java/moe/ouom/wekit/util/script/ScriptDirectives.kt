@@ -0,0 +1,34 @@
+package moe.ouom.wekit.util.script
+
+/**
+ * 脚本内以注释声明的订阅范围，例如 // @cgi 522,2882 或 // @uri /cgi-bin/micromsg-bin/
+ * 两者都没有声明时接收全部数据包
+ */
+class ScriptDirectives(val cgiIds: IntArray, val uriPrefixes: List<String>) {
+
+    val isEmpty: Boolean
+        get() = cgiIds.isEmpty() && uriPrefixes.isEmpty()
+
+    fun matches(uri: String, cgiId: Int): Boolean {
+        if (isEmpty) return true
+        for (id in cgiIds) if (id == cgiId) return true
+        for (prefix in uriPrefixes) if (uri.startsWith(prefix)) return true
+        return false
+    }
+
+    companion object {
+        private val CGI_DIRECTIVE = Regex("""^\s*//\s*@cgi\s+([0-9, \t]+)""", RegexOption.MULTILINE)
+        private val URI_DIRECTIVE = Regex("""^\s*//\s*@uri\s+(\S+)""", RegexOption.MULTILINE)
+
+        @JvmStatic
+        fun parse(content: String): ScriptDirectives {
+            val cgis = CGI_DIRECTIVE.findAll(content)
+                .flatMap { it.groupValues[1].split(',') }
+                .mapNotNull { it.trim().toIntOrNull() }
+                .distinct()
+                .toList()
+            val uris = URI_DIRECTIVE.findAll(content).map { it.groupValues[1] }.distinct().toList()
+            return ScriptDirectives(cgis.toIntArray(), uris)
+        }
+    }
+}
@@ -2,10 +2,24 @@ package moe.ouom.wekit.util.script
 
 import moe.ouom.wekit.util.log.WeLogger
 import org.json.JSONObject
+import org.mozilla.javascript.BaseFunction
+import org.mozilla.javascript.Context
+import org.mozilla.javascript.Function
+import org.mozilla.javascript.ImporterTopLevel
+import org.mozilla.javascript.NativeJSON
+import org.mozilla.javascript.RhinoException
+import org.mozilla.javascript.Scriptable
+import org.mozilla.javascript.ScriptableObject
+import org.mozilla.javascript.Undefined
+import org.mozilla.javascript.json.JsonParser
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * JavaScript脚本执行管理器
  * 用于执行脚本的onRequest和onResponse方法
+ *
+ * 每个脚本按内容编译一次并执行顶层代码，之后每个数据包只调用其 onRequest / onResponse 函数
  */
 class ScriptEvalManager private constructor() {
 
@@ -39,6 +53,8 @@ class ScriptEvalManager private constructor() {
             jsExecutor = JsExecutor.getInstance()
             // 设置ScriptFileManager
             this@ScriptEvalManager.scriptFileManager = scriptFileManager
+            // 脚本增删改后重新读取启用的脚本
+            scriptFileManager.addChangeListener { version.incrementAndGet() }
             isInitialized = true
             WeLogger.i("[ScriptEvalManager] 初始化成功")
         } catch (e: Exception) {
@@ -65,33 +81,8 @@ class ScriptEvalManager private constructor() {
      */
     fun hasMethod(scriptContent: String, methodName: String): Boolean {
         checkInitialized()
-
-        if (!jsExecutor.isInitialized()) {
-            WeLogger.w("[ScriptEvalManager] JsExecutor 未就绪")
-            return false
-        }
-
-        val jsCode = """
-            (function() {
-                try {
-                    // 定义脚本内容
-                    $scriptContent
-                    
-                    // 检查方法是否存在且是函数类型
-                    return typeof $methodName === 'function';
-                } catch (error) {
-                    return false;
-                }
-            })();
-        """.trimIndent()
-
-        return try {
-            val result = jsExecutor.executeJs(jsCode)
-            result?.toBooleanStrictOrNull() ?: false
-        } catch (e: Exception) {
-            WeLogger.e("[ScriptEvalManager] 检查方法 $methodName 失败", e)
-            false
-        }
+        val program = withContext { cx -> compile(cx, "check", scriptContent) }
+        return program.scope?.let { ScriptableObject.getProperty(it, methodName) is Function } ?: false
     }
 
     /**
@@ -100,48 +91,22 @@ class ScriptEvalManager private constructor() {
     fun testScriptMethods(scriptContent: String): ScriptMethodTestResult {
         checkInitialized()
 
-        val hasOnRequest = hasMethod(scriptContent, "onRequest")
-        val hasOnResponse = hasMethod(scriptContent, "onResponse")
-
-        // 额外检查语法错误
-        val syntaxErrors = checkSyntaxError(scriptContent)
+        // 编译并执行一次顶层代码，语法与运行错误都会记录在 error 中
+        val program = withContext { cx -> compile(cx, "check", scriptContent) }
 
         return ScriptMethodTestResult(
-            hasOnRequest = hasOnRequest,
-            hasOnResponse = hasOnResponse,
-            errorMessages = syntaxErrors
+            hasOnRequest = program.onRequest != null,
+            hasOnResponse = program.onResponse != null,
+            errorMessages = listOfNotNull(program.error)
         )
     }
 
     /**
-     * 检查脚本语法错误
+     * 是否有启用的脚本会处理该数据包，没有时调用方可以跳过 JSON 转换
      */
-    private fun checkSyntaxError(scriptContent: String): List<String> {
+    fun hasHandlers(isRequest: Boolean, uri: String, cgiId: Int): Boolean {
         checkInitialized()
-
-        val jsCode = """
-        (function() {
-            try {
-                // 尝试解析脚本内容
-                eval($scriptContent);
-                return [];
-            } catch (error) {
-                return [error.message];
-            }
-        })();
-    """.trimIndent()
-
-        return try {
-            val result = jsExecutor.executeJs(jsCode)
-            if (result.isNullOrEmpty() || result == "[]") {
-                emptyList()
-            } else {
-                listOf("语法错误: $result")
-            }
-        } catch (e: Exception) {
-            WeLogger.e("[ScriptEvalManager] 语法检查失败", e)
-            listOf("语法检查异常: ${e.message}")
-        }
+        return activeScripts().any { it.program.hook(isRequest) != null && it.program.directives.matches(uri, cgiId) }
     }
 
     /**
@@ -149,7 +114,7 @@ class ScriptEvalManager private constructor() {
      */
     fun executeOnRequest(uri: String, cgiId: Int, requestJson: JSONObject): JSONObject? {
         checkInitialized()
-        return executeAllScripts("onRequest", uri, cgiId, requestJson)
+        return executeAllScripts(true, uri, cgiId, requestJson)
     }
 
     /**
@@ -157,33 +122,35 @@ class ScriptEvalManager private constructor() {
      */
     fun executeOnResponse(uri: String, cgiId: Int, responseJson: JSONObject): JSONObject? {
         checkInitialized()
-        return executeAllScripts("onResponse", uri, cgiId, responseJson)
+        return executeAllScripts(false, uri, cgiId, responseJson)
     }
 
     /**
-     * 执行所有脚本的指定方法
+     * 依次调用启用脚本的 onRequest / onResponse，前一个脚本的结果作为后一个脚本的输入
+     * 脚本以 // @cgi、// @uri 声明了范围时只处理范围内的数据包
      */
-    private fun executeAllScripts(methodName: String, uri: String, cgiId: Int, jsonData: JSONObject): JSONObject? {
-        checkInitialized()
-
-        val enabledScripts = scriptFileManager.getEnabledScripts()
-        if (enabledScripts.isEmpty()) return null
+    private fun executeAllScripts(isRequest: Boolean, uri: String, cgiId: Int, jsonData: JSONObject): JSONObject? {
+        val scripts = activeScripts()
+        if (scripts.isEmpty()) return null
 
+        var currentJson: String? = null
         var currentData = jsonData
         var modified = false
 
-        enabledScripts.sortedBy { it.order }.forEach { script ->
-            if (hasMethod(script.content, methodName)) {
-                val result = executeScriptMethod(script, methodName, uri, cgiId, currentData)
-                if (result != null) {
-                    try {
-                        currentData = JSONObject(result)
-                        modified = true
-                        WeLogger.d("[ScriptEvalManager] 脚本 ${script.name}.$methodName 执行成功")
-                    } catch (e: Exception) {
-                        WeLogger.e("[ScriptEvalManager] 解析脚本 ${script.name}.$methodName 结果失败", e)
-                    }
-                }
+        for (script in scripts) {
+            val program = script.program
+            val fn = program.hook(isRequest) ?: continue
+            if (!program.directives.matches(uri, cgiId)) continue
+
+            val input = currentJson ?: currentData.toString()
+            val result = callHook(script.name, program, fn, uri, cgiId, input) ?: continue
+            try {
+                currentData = JSONObject(result)
+                currentJson = result
+                modified = true
+                WeLogger.d("[ScriptEvalManager] 脚本 ${script.name}.${hookName(isRequest)} 执行成功")
+            } catch (e: Exception) {
+                WeLogger.e("[ScriptEvalManager] 解析脚本 ${script.name}.${hookName(isRequest)} 结果失败", e)
             }
         }
 
@@ -191,66 +158,198 @@ class ScriptEvalManager private constructor() {
     }
 
     /**
-     * 执行单个脚本的方法
+     * 以 {uri, cgiId, jsonData} 调用脚本函数，返回值转换为 JSON 文本
+     * 对象序列化为 JSON，本身是 JSON 的字符串原样返回，其它值包装为 {value: ...}，null / undefined 表示不修改
      */
-    private fun executeScriptMethod(
-        script: ScriptFileManager.ScriptConfig,
-        methodName: String,
-        uri: String,
-        cgiId: Int,
-        jsonData: JSONObject
-    ): String? {
-        val scriptName = script.name
-        val scriptContent = script.content
-
-        val jsCode = """
-            (function() {
+    private fun callHook(name: String, program: Program, fn: Function, uri: String, cgiId: Int, json: String): String? {
+        val scope = program.scope ?: return null
+        // 同一脚本的全局变量在数据包之间共享，调用串行化
+        return synchronized(program) {
+            withContext { cx ->
                 try {
-                    // 执行脚本内容
-                    $scriptContent
-                    
-                    // 创建包含所有参数的对象
-                    const data = {
-                        uri: '$uri',
-                        cgiId: $cgiId,
-                        jsonData: $jsonData
-                    };
-                    
-                    // 调用指定方法
-                    const result = $methodName(data);
-                    
-                    // 返回结果
-                    if (result === undefined || result === null) {
-                        return null;
-                    }
-                    
-                    if (typeof result === 'object') {
-                        return JSON.stringify(result);
-                    } else if (typeof result === 'string') {
-                        try {
-                            JSON.parse(result);
-                            return result;
-                        } catch(e) {
-                            return JSON.stringify({value: result});
-                        }
+                    ScriptLogger.getInstance().setScriptName(name)
+                    val data = cx.newObject(scope)
+                    ScriptableObject.putProperty(data, "uri", uri)
+                    ScriptableObject.putProperty(data, "cgiId", cgiId)
+                    ScriptableObject.putProperty(data, "jsonData", JsonParser(cx, scope).parseValue(json))
+                    toJson(cx, scope, fn.call(cx, scope, scope, arrayOf(data)))
+                } catch (e: RhinoException) {
+                    ScriptLogger.getInstance().info("[Script:$name Error] ${e.details()}")
+                    null
+                } catch (e: Exception) {
+                    WeLogger.e("[ScriptEvalManager] 执行脚本 $name 失败", e)
+                    null
+                } finally {
+                    ScriptLogger.getInstance().resetScriptName()
+                }
+            }
+        }
+    }
+
+    private fun toJson(cx: Context, scope: Scriptable, result: Any?): String? {
+        if (result == null || result is Undefined) return null
+        if (result is Scriptable) return NativeJSON.stringify(cx, scope, result, null, null) as? String
+        if (result is CharSequence) {
+            val text = result.toString()
+            try {
+                JsonParser(cx, scope).parseValue(text)
+                return text
+            } catch (_: JsonParser.ParseException) {
+                // 不是 JSON，按普通值包装
+            }
+        }
+        val wrapper = cx.newObject(scope)
+        ScriptableObject.putProperty(wrapper, "value", result)
+        return NativeJSON.stringify(cx, scope, wrapper, null, null) as? String
+    }
+
+    // ========== 编译缓存 ==========
+
+    /**
+     * 编译并执行过顶层代码的脚本
+     * 每个脚本有独立的全局作用域，内置对象与 wekit 来自只读的共享作用域
+     */
+    private class Program(
+        val content: String,
+        val scope: Scriptable?,
+        val onRequest: Function?,
+        val onResponse: Function?,
+        val directives: ScriptDirectives,
+        val error: String?
+    ) {
+        fun hook(isRequest: Boolean): Function? = if (isRequest) onRequest else onResponse
+    }
+
+    private class ActiveScript(val name: String, val program: Program)
+
+    private class Snapshot(val version: Int, val scripts: List<ActiveScript>)
+
+    // 脚本 id -> 当前内容编译出的 Program
+    private val programs = ConcurrentHashMap<String, Program>()
+    private val version = AtomicInteger()
+    private val compileLock = Any()
+
+    @Volatile
+    private var snapshot: Snapshot? = null
+
+    @Volatile
+    private var sharedScope: ScriptableObject? = null
+
+    /**
+     * 已启用脚本按 order 排序后的编译结果，脚本变更后重新读取，内容未变的脚本沿用之前的编译结果
+     */
+    private fun activeScripts(): List<ActiveScript> {
+        snapshot?.let { if (it.version == version.get()) return it.scripts }
+        synchronized(compileLock) {
+            val current = version.get()
+            snapshot?.let { if (it.version == current) return it.scripts }
+
+            val configs = scriptFileManager.getEnabledScripts().sortedBy { it.order }
+            val scripts = withContext { cx ->
+                configs.map { config ->
+                    val cached = programs[config.id]
+                    val program = if (cached != null && cached.content == config.content) {
+                        cached
                     } else {
-                        return JSON.stringify({value: result});
+                        compile(cx, config.name, config.content).also { programs[config.id] = it }
                     }
-                } catch(error) {
-                    wekit.log('[Script:${scriptName} Error] ' + error.message);
-                    return null;
+                    ActiveScript(config.name, program)
                 }
-            })();
-        """.trimIndent()
+            }
+            programs.keys.retainAll(configs.mapTo(HashSet()) { it.id })
+            snapshot = Snapshot(current, scripts)
+            return scripts
+        }
+    }
 
+    /**
+     * 编译脚本并在独立作用域中执行一次顶层代码，记录 onRequest / onResponse 是否存在
+     * 作用域本身是 ImporterTopLevel，importClass / importPackage 导入的类只对该脚本可见
+     */
+    private fun compile(cx: Context, name: String, content: String): Program {
+        val directives = ScriptDirectives.parse(content)
         return try {
-            ScriptLogger.getInstance().setScriptName(scriptName)
-            jsExecutor.executeJs(jsCode)
+            val shared = sharedScope(cx)
+            val scope = ImporterTopLevel()
+            scope.prototype = shared
+            scope.parentScope = null
+
+            val script = cx.compileString(content, name, 1, null)
+            try {
+                ScriptLogger.getInstance().setScriptName(name)
+                script.exec(cx, scope)
+            } finally {
+                ScriptLogger.getInstance().resetScriptName()
+            }
+
+            Program(
+                content, scope,
+                ScriptableObject.getProperty(scope, "onRequest") as? Function,
+                ScriptableObject.getProperty(scope, "onResponse") as? Function,
+                directives, null
+            )
+        } catch (e: RhinoException) {
+            WeLogger.w("[ScriptEvalManager] 编译脚本 $name 失败: ${e.details()}")
+            Program(content, null, null, null, directives, "语法错误: ${e.details()} (第 ${e.lineNumber()} 行)")
         } catch (e: Exception) {
-            WeLogger.e("[ScriptEvalManager] 执行脚本 ${scriptName}.$methodName 失败", e)
-            null
+            WeLogger.e("[ScriptEvalManager] 编译脚本 $name 失败", e)
+            Program(content, null, null, null, directives, "语法检查异常: ${e.message}")
+        }
+    }
+
+    /**
+     * 所有脚本共用的内置对象，与原先 javax.script 引擎提供的全局函数一致：
+     * print、importClass、importPackage、JavaImporter 以及 wekit.log
+     * 创建后整体封存，脚本无法修改 Object.prototype 等共享对象，对全局名的赋值只落在各自的作用域上
+     */
+    private fun sharedScope(cx: Context): ScriptableObject {
+        sharedScope?.let { return it }
+        synchronized(compileLock) {
+            sharedScope?.let { return it }
+            val scope = cx.initStandardObjects(null, true)
+            // JavaImporter 原型上的 importClass / importPackage 导入到调用时的 this，即各脚本自己的作用域
+            ImporterTopLevel.init(cx, scope, true)
+            val importer = ScriptableObject.getProperty(scope, "JavaImporter") as Scriptable
+            val importerProto = ScriptableObject.getProperty(importer, "prototype") as Scriptable
+            for (name in arrayOf("importClass", "importPackage")) {
+                ScriptableObject.putProperty(scope, name, ScriptableObject.getProperty(importerProto, name))
+            }
+
+            val log = LogFunction().apply { sealObject() }
+            val wekit = cx.newObject(scope) as ScriptableObject
+            ScriptableObject.putProperty(wekit, "log", log)
+            ScriptableObject.putProperty(scope, "wekit", wekit)
+            ScriptableObject.putProperty(scope, "print", log)
+            wekit.sealObject()
+            scope.sealObject()
+            sharedScope = scope
+            return scope
+        }
+    }
+
+    /**
+     * 在当前线程进入 Rhino Context，Android 上无法生成字节码，只能解释执行
+     */
+    private inline fun <T> withContext(block: (Context) -> T): T {
+        val cx = Context.enter()
+        try {
+            cx.optimizationLevel = -1
+            if (cx.languageVersion < Context.VERSION_1_8) cx.languageVersion = Context.VERSION_1_8
+            return block(cx)
         } finally {
-            ScriptLogger.getInstance().resetScriptName()
+            Context.exit()
+        }
+    }
+
+    private fun hookName(isRequest: Boolean) = if (isRequest) "onRequest" else "onResponse"
+
+    /**
+     * wekit.log(...) / print(...)，参数以空格拼接后写入脚本日志
+     */
+    private class LogFunction : BaseFunction() {
+        override fun call(cx: Context, scope: Scriptable, thisObj: Scriptable?, args: Array<Any?>): Any {
+            ScriptLogger.getInstance().info(args.joinToString(" ") { Context.toString(it) })
+            return Context.getUndefinedValue()
         }
     }
 
@@ -6,6 +6,7 @@ import org.json.JSONObject
 import java.io.File
 import java.io.FileWriter
 import java.io.IOException
+import java.util.concurrent.CopyOnWriteArrayList
 
 /**
  * 脚本文件管理器
@@ -69,6 +70,29 @@ class ScriptFileManager private constructor() {
     private lateinit var scriptDir: File
     private var isInitialized = false
 
+    private val changeListeners = CopyOnWriteArrayList<() -> Unit>()
+
+    /**
+     * 监听脚本增删改（含初始化完成），回调在调用方线程执行
+     */
+    fun addChangeListener(listener: () -> Unit) {
+        changeListeners.addIfAbsent(listener)
+    }
+
+    fun removeChangeListener(listener: () -> Unit) {
+        changeListeners.remove(listener)
+    }
+
+    private fun notifyChanged() {
+        for (listener in changeListeners) {
+            try {
+                listener()
+            } catch (e: Exception) {
+                WeLogger.e("[ScriptFileManager] 脚本变更回调失败", e)
+            }
+        }
+    }
+
 
     /**
      * 初始化脚本文件管理器
@@ -85,6 +109,7 @@ class ScriptFileManager private constructor() {
             ensureScriptDirExists()
             isInitialized = true
             WeLogger.i("[ScriptFileManager] 初始化成功: ${scriptDir.absolutePath}")
+            notifyChanged()
         } catch (e: Exception) {
             WeLogger.e("[ScriptFileManager] 初始化失败", e)
             throw IllegalStateException("ScriptFileManager 初始化失败", e)
@@ -131,6 +156,7 @@ class ScriptFileManager private constructor() {
             }
 
             WeLogger.d("[ScriptFileManager] 脚本已保存: ${script.name}")
+            notifyChanged()
             true
         } catch (e: IOException) {
             WeLogger.e("[ScriptFileManager] 保存脚本失败", e)
@@ -193,6 +219,7 @@ class ScriptFileManager private constructor() {
             val success = scriptFile.delete()
             if (success) {
                 WeLogger.i("[ScriptFileManager] 脚本已删除: $id")
+                notifyChanged()
             }
             success
         } else {
@@ -216,6 +243,7 @@ class ScriptFileManager private constructor() {
         }
 
         WeLogger.i("[ScriptFileManager] 已删除 $count 个脚本")
+        if (count > 0) notifyChanged()
         return count
     }
 
@@ -0,0 +1,97 @@
+plugins {
+    kotlin("jvm")
+    alias(libs.plugins.jmh)
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(17))
+    }
+}
+
+// 直接编译 app 中与 Android 无关的协议层源码，src/main 只放 WeLogger / WeConfig / SyncUtils 的 JVM 替身
+val appSources by tasks.registering(Sync::class) {
+    from(rootProject.file("app/src/main/java")) {
+        include(
+            "moe/ouom/wekit/util/WeProtoData.java",
+            "moe/ouom/wekit/util/ProtoReader.java",
+            "moe/ouom/wekit/util/ProtoLenHints.java",
+            "moe/ouom/wekit/util/ProtoJsonBuilder.kt",
+            "moe/ouom/wekit/util/common/XmlUtils.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/listener/PkgAccessors.kt",
+            // 回放工具使用的拦截器链
+            "moe/ouom/wekit/constants/Constants.kt",
+            "moe/ouom/wekit/util/ProtoDiff.java",
+            "moe/ouom/wekit/util/ProtoPatch.java",
+            "moe/ouom/wekit/util/ProtoPlan.java",
+            "moe/ouom/wekit/util/ProtoSchema.java",
+            "moe/ouom/wekit/util/common/IntObjectMap.java",
+            "moe/ouom/wekit/util/common/MpscRingBuffer.java",
+            "moe/ouom/wekit/util/metrics/LogLinearHistogram.java",
+            "moe/ouom/wekit/hooks/sdk/protocol/CgiClassTable.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/PkgCircuitBreaker.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/PkgMetrics.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/PkgObserverBus.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/PkgRouteTable.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/ProtoSchemaRegistry.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/WePkgManager.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/capture/**",
+            "moe/ouom/wekit/hooks/sdk/protocol/intf/IWePkgInterceptor.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/intf/IWePkgObserver.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/model/PacketContext.kt",
+            "moe/ouom/wekit/hooks/sdk/protocol/model/PacketSnapshot.kt",
+        )
+    }
+    into(layout.buildDirectory.dir("generated/appSources"))
+}
+
+sourceSets {
+    main {
+        java.srcDir(appSources)
+        kotlin.srcDir(appSources)
+    }
+}
+
+dependencies {
+    implementation(libs.google.protobuf.java)
+    implementation(libs.hutool.core)
+    // Android 自带 org.json，JVM 上使用同包名的独立实现
+    implementation(libs.org.json)
+    implementation(libs.androidx.annotation)
+}
+
+// ./gradlew :benchmark:replay --args="--input <dir> --classpath <jar> --interceptor <class> --golden <dir>"，参数见 ReplayHarness
+val replay by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Replay captured packets through WePkgManager"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("moe.ouom.wekit.benchmark.replay.ReplayHarness")
+    workingDir = rootProject.projectDir
+}
+
+// 用 src/replay/sample 与样例拦截器回放，输出与 src/replay/golden 不一致时失败
+val replaySample by tasks.registering(JavaExec::class) {
+    group = "verification"
+    description = "Replay the bundled sample packets and check them against the golden output"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("moe.ouom.wekit.benchmark.replay.ReplayHarness")
+    args(
+        "--input", file("src/replay/sample").path,
+        "--interceptor", "moe.ouom.wekit.benchmark.replay.SampleTextPatchInterceptor",
+        "--interceptor", "moe.ouom.wekit.benchmark.replay.SampleTimelineInterceptor",
+        "--golden", file("src/replay/golden").path,
+        "--iterations", "0",
+    )
+}
+
+// ./gradlew :benchmark:jmh，结果写入 build/results/jmh/results.json
+jmh {
+    jmhVersion.set("1.37")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // gc 分析器输出 gc.alloc.rate.norm（每次操作分配的字节数）
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    includes.set(listOfNotNull(providers.gradleProperty("jmhInclude").orNull))
+}
@@ -0,0 +1,38 @@
+package moe.ouom.wekit.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 读取 resources/corpus 下的合成语料，由 {@link CorpusGenerator} 生成
+ */
+final class Corpus {
+
+    static final String TEXT_MSG = "text_msg_1k";
+    static final String TIMELINE_SYNC = "timeline_sync_100k";
+    static final String FINDER_FEED = "finder_feed_nested";
+
+    private Corpus() {
+    }
+
+    static byte[] packet(String name) throws IOException {
+        return read(name + ".bin");
+    }
+
+    static String text(String fileName) throws IOException {
+        return new String(read(fileName), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] read(String fileName) throws IOException {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/" + fileName)) {
+            if (in == null) throw new IOException("missing corpus: " + fileName);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) bos.write(buf, 0, n);
+            return bos.toByteArray();
+        }
+    }
+}
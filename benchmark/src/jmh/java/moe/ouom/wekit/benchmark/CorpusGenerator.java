@@ -0,0 +1,222 @@
+package moe.ouom.wekit.benchmark;
+
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * 生成 src/jmh/resources/corpus 下的合成数据包，结构仿照真实流量（字段号、嵌套层级与大小），内容为固定种子的随机数据
+ * 语料已随仓库提交，只有调整结构时才需要重新生成：
+ * <pre>
+ * ./gradlew :benchmark:jmhClasses
+ * java -cp "benchmark/build/classes/java/jmh:..." moe.ouom.wekit.benchmark.CorpusGenerator benchmark/src/jmh/resources/corpus
+ * </pre>
+ */
+public final class CorpusGenerator {
+
+    private static final String HAN = "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经十三之进着等部度家电力里如水化高自二理起小物现实加量都两体制机当使点从业本去把性好应开它合还因由其些然前外天政四日那社义事平形相全表间样与关各重新线内数正心反你明看原又么利比或但质气第向道命此变条只没结解问意建月公无系军很情者最立代想已通并提直题党程展五果料象员革位入常文总次品式活设及管特件长求老头基资边流路级少图山统接知较将组见计别她手角期根论运农指几九区强放决西被干做必战先回则任取据处理府研质";
+
+    private final Random random = new Random(0x5745_4B49_54L);
+
+    private static final class Msg {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final CodedOutputStream out = CodedOutputStream.newInstance(bos);
+
+        Msg varint(int field, long v) throws IOException {
+            out.writeUInt64(field, v);
+            return this;
+        }
+
+        Msg fixed64(int field, long v) throws IOException {
+            out.writeFixed64(field, v);
+            return this;
+        }
+
+        Msg fixed32(int field, int v) throws IOException {
+            out.writeFixed32(field, v);
+            return this;
+        }
+
+        Msg string(int field, String s) throws IOException {
+            out.writeString(field, s);
+            return this;
+        }
+
+        Msg bytes(int field, byte[] b) throws IOException {
+            out.writeByteArray(field, b);
+            return this;
+        }
+
+        Msg sub(int field, Msg m) throws IOException {
+            out.writeByteArray(field, m.build());
+            return this;
+        }
+
+        byte[] build() throws IOException {
+            out.flush();
+            return bos.toByteArray();
+        }
+    }
+
+    private String wxid() {
+        StringBuilder sb = new StringBuilder("wxid_");
+        for (int i = 0; i < 14; i++) sb.append((char) ('a' + random.nextInt(26)));
+        return sb.toString();
+    }
+
+    private String text(int chars) {
+        StringBuilder sb = new StringBuilder(chars);
+        while (sb.length() < chars) {
+            if (random.nextInt(6) == 0) {
+                sb.append(' ').append(Long.toString(random.nextLong() & 0xFFFFFF, 36)).append(' ');
+            } else {
+                sb.append(HAN.charAt(random.nextInt(HAN.length())));
+            }
+        }
+        return sb.toString();
+    }
+
+    private byte[] randomBytes(int n) {
+        byte[] b = new byte[n];
+        random.nextBytes(b);
+        return b;
+    }
+
+    private Msg baseRequest() throws IOException {
+        return new Msg()
+                .bytes(1, randomBytes(16))
+                .varint(2, 0x7000_0000L + random.nextInt(1 << 28))
+                .bytes(3, ("A" + Long.toHexString(random.nextLong())).getBytes(StandardCharsets.US_ASCII))
+                .varint(4, 0x28003A37L)
+                .bytes(5, "android-34".getBytes(StandardCharsets.US_ASCII))
+                .varint(6, 0);
+    }
+
+    /**
+     * 约 1 KB 的文本消息发送请求
+     */
+    byte[] textMessage() throws IOException {
+        Msg msg = new Msg()
+                .sub(1, new Msg().string(1, wxid()))
+                .string(2, text(380))
+                .varint(3, 1)
+                .varint(4, 1_700_000_000L + random.nextInt(1 << 24))
+                .varint(5, random.nextLong() & Long.MAX_VALUE)
+                .string(6, "<msgsource><atuserlist><![CDATA[" + wxid() + "]]></atuserlist><silence>0</silence></msgsource>");
+        return new Msg()
+                .sub(1, baseRequest())
+                .varint(2, 1)
+                .sub(3, msg)
+                .build();
+    }
+
+    String timelineObjectXml(long id, String user) {
+        return "<TimelineObject><id><![CDATA[" + id + "]]></id><username><![CDATA[" + user + "]]></username>"
+                + "<createTime><![CDATA[" + (1_700_000_000L + random.nextInt(1 << 24)) + "]]></createTime>"
+                + "<contentDesc><![CDATA[" + text(120) + "]]></contentDesc><contentDescShowType>0</contentDescShowType>"
+                + "<ContentObject><contentStyle><![CDATA[1]]></contentStyle><title></title><description></description>"
+                + "<mediaList><media><id><![CDATA[" + random.nextLong() + "]]></id><type><![CDATA[2]]></type>"
+                + "<url type=\"1\" md5=\"" + Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong())
+                + "\" videomd5=\"\"><![CDATA[http://szmmsns.qpic.cn/mmsns/" + Long.toHexString(random.nextLong()) + "/0]]></url>"
+                + "<thumb type=\"1\"><![CDATA[http://szmmsns.qpic.cn/mmsns/" + Long.toHexString(random.nextLong()) + "/150]]></thumb>"
+                + "<size width=\"1080\" height=\"1440\" totalSize=\"" + random.nextInt(1 << 20) + "\"></size></media></mediaList>"
+                + "</ContentObject><appInfo><id>wx" + Long.toHexString(random.nextLong()) + "</id><version></version>"
+                + "<appName></appName></appInfo><statExtStr>" + Long.toHexString(random.nextLong()) + "</statExtStr></TimelineObject>";
+    }
+
+    /**
+     * 约 100 KB 的朋友圈同步响应，包含带 XML 正文的对象与点赞 / 评论列表
+     */
+    byte[] timelineSync() throws IOException {
+        Msg resp = new Msg()
+                .sub(1, new Msg().varint(1, 0).sub(2, new Msg()))
+                .bytes(2, randomBytes(64));
+        for (int i = 0; i < 68; i++) {
+            long id = random.nextLong() & Long.MAX_VALUE;
+            String user = wxid();
+            Msg obj = new Msg()
+                    .varint(1, id)
+                    .string(2, user)
+                    .string(3, text(6))
+                    .varint(4, 1_700_000_000L + random.nextInt(1 << 24))
+                    .sub(5, new Msg().varint(1, 0).bytes(2, timelineObjectXml(id, user).getBytes(StandardCharsets.UTF_8)));
+            for (int k = 0, n = random.nextInt(6); k < n; k++) {
+                obj.sub(6, new Msg().string(1, wxid()).string(2, text(4)).varint(3, 1).varint(4, 1_700_000_000L + k));
+            }
+            for (int k = 0, n = random.nextInt(4); k < n; k++) {
+                obj.sub(7, new Msg().string(1, wxid()).string(2, text(4)).varint(3, 2)
+                        .string(4, text(20 + random.nextInt(40))).varint(5, random.nextInt(1 << 30)));
+            }
+            obj.varint(8, random.nextInt(2)).fixed64(9, random.nextLong());
+            resp.sub(3, obj);
+        }
+        return resp.varint(4, 68).bytes(5, randomBytes(32)).build();
+    }
+
+    private Msg nested(int depth) throws IOException {
+        Msg m = new Msg().varint(1, depth).string(2, "layer-" + depth);
+        if (depth > 0) m.sub(3, nested(depth - 1));
+        return m;
+    }
+
+    /**
+     * 视频号推荐流响应，对象内部嵌套较深（媒体规格、位置、作者信息及一条 24 层的扩展链）
+     */
+    byte[] finderFeed() throws IOException {
+        Msg resp = new Msg().sub(1, new Msg().varint(1, 0).sub(2, new Msg().string(1, "")));
+        for (int i = 0; i < 12; i++) {
+            Msg desc = new Msg().string(1, text(60)).varint(2, 4);
+            for (int k = 0; k < 3; k++) {
+                Msg media = new Msg()
+                        .string(1, "https://finder.video.qq.com/251/20302/stodownload?encfilekey=" + Long.toHexString(random.nextLong()))
+                        .string(2, "https://finder.video.qq.com/251/20304/stodownload?encfilekey=" + Long.toHexString(random.nextLong()))
+                        .varint(3, 4)
+                        .fixed32(4, Float.floatToIntBits(1080f))
+                        .fixed32(5, Float.floatToIntBits(1920f))
+                        .string(6, Long.toHexString(random.nextLong()));
+                for (int s = 0; s < 3; s++) {
+                    media.sub(7, new Msg().string(1, "xWT" + (111 + s)).varint(2, 1_000_000 + random.nextInt(1 << 20))
+                            .sub(3, new Msg().varint(1, 720 * (s + 1)).varint(2, 1280 * (s + 1))));
+                }
+                desc.sub(3, media);
+            }
+            desc.sub(4, new Msg().fixed32(1, Float.floatToIntBits(113.3f)).fixed32(2, Float.floatToIntBits(23.1f))
+                    .string(3, text(8)).sub(4, new Msg().string(1, text(4)).string(2, text(6))));
+            desc.sub(5, nested(24));
+
+            Msg contact = new Msg().string(1, "v2_" + Long.toHexString(random.nextLong()) + "@finder")
+                    .string(2, text(6)).string(3, "https://wx.qlogo.cn/finderhead/" + Long.toHexString(random.nextLong()) + "/0")
+                    .sub(4, new Msg().varint(1, 1).sub(2, new Msg().string(1, text(10)).varint(2, 3)));
+
+            resp.sub(2, new Msg()
+                    .varint(1, random.nextLong() & Long.MAX_VALUE)
+                    .string(2, "v2_" + Long.toHexString(random.nextLong()))
+                    .sub(3, contact)
+                    .sub(4, desc)
+                    .varint(5, random.nextInt(100_000))
+                    .varint(6, random.nextInt(10_000))
+                    .bytes(7, randomBytes(48)));
+        }
+        return resp.bytes(3, randomBytes(96)).varint(4, 1).build();
+    }
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "benchmark/src/jmh/resources/corpus");
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+        CorpusGenerator g = new CorpusGenerator();
+        write(dir, "text_msg_1k.bin", g.textMessage());
+        write(dir, "timeline_sync_100k.bin", g.timelineSync());
+        write(dir, "finder_feed_nested.bin", g.finderFeed());
+        write(dir, "timeline_object.xml", g.timelineObjectXml(1L << 62, g.wxid()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void write(File dir, String name, byte[] data) throws IOException {
+        Files.write(new File(dir, name).toPath(), data);
+        System.out.println(name + ": " + data.length + " bytes");
+    }
+}
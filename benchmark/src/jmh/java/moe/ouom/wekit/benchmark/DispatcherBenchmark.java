@@ -0,0 +1,177 @@
+package moe.ouom.wekit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import moe.ouom.wekit.hooks.sdk.protocol.listener.PkgAccessors;
+
+/**
+ * WePkgDispatcher 每个数据包的反射开销：一次 dispatch（getUri / getType / getReqObj / a / toByteArray）
+ * 加一次 onGYNetEnd（b / a / toByteArray）
+ * <p>
+ * byName 按 XposedHelpers.callMethod / getObjectField 的做法每次拼接缓存键再查表，
+ * cached 使用 PkgAccessors 按类缓存的 Method / Field，direct 为直接调用的下限
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatcherBenchmark {
+
+    // 模拟混淆后的 NetScene 对象结构
+    static final class PbMessage {
+        byte[] data;
+
+        PbMessage(byte[] data) {
+            this.data = data;
+        }
+
+        public byte[] toByteArray() {
+            return data;
+        }
+
+        public PbMessage parseFrom(byte[] b) {
+            data = b;
+            return this;
+        }
+    }
+
+    static final class Wrapper {
+        PbMessage a;
+
+        Wrapper(PbMessage a) {
+            this.a = a;
+        }
+    }
+
+    static final class ReqResp {
+        Wrapper b;
+        private final Wrapper req;
+
+        ReqResp(Wrapper req, Wrapper resp) {
+            this.req = req;
+            this.b = resp;
+        }
+
+        public String getUri() {
+            return "/cgi-bin/micromsg-bin/newsendmsg";
+        }
+
+        public int getType() {
+            return 522;
+        }
+
+        public Wrapper getReqObj() {
+            return req;
+        }
+    }
+
+    private ReqResp v0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        byte[] req = Corpus.packet(Corpus.TEXT_MSG);
+        v0 = new ReqResp(new Wrapper(new PbMessage(req)), new Wrapper(new PbMessage(req)));
+    }
+
+    @Benchmark
+    public void byName(Blackhole bh) throws Exception {
+        bh.consume(ByName.callMethod(v0, "getUri"));
+        bh.consume(ByName.callMethod(v0, "getType"));
+        Object reqWrapper = ByName.callMethod(v0, "getReqObj");
+        Object reqPb = ByName.getObjectField(reqWrapper, "a");
+        bh.consume(ByName.callMethod(reqPb, "toByteArray"));
+
+        Object respWrapper = ByName.getObjectField(v0, "b");
+        Object respPb = ByName.getObjectField(respWrapper, "a");
+        bh.consume(ByName.callMethod(respPb, "toByteArray"));
+    }
+
+    @Benchmark
+    public void cached(Blackhole bh) {
+        PkgAccessors.ReqResp acc = PkgAccessors.INSTANCE.reqResp(v0);
+        bh.consume(acc.uri(v0));
+        bh.consume(acc.type(v0));
+        Object reqWrapper = acc.reqWrapper(v0);
+        Object reqPb = PkgAccessors.INSTANCE.wrapper(reqWrapper).message(reqWrapper);
+        bh.consume(PkgAccessors.INSTANCE.message(reqPb).toBytes(reqPb));
+
+        Object respWrapper = acc.respWrapper(v0);
+        Object respPb = PkgAccessors.INSTANCE.wrapper(respWrapper).message(respWrapper);
+        bh.consume(PkgAccessors.INSTANCE.message(respPb).toBytes(respPb));
+    }
+
+    @Benchmark
+    public void direct(Blackhole bh) {
+        bh.consume(v0.getUri());
+        bh.consume(v0.getType());
+        bh.consume(v0.getReqObj().a.toByteArray());
+        bh.consume(v0.b.a.toByteArray());
+    }
+
+    /**
+     * 与 XposedHelpers 相同的按名称查找：每次调用拼接 "类名#方法名(参数)#bestmatch" 作为键，在同步的 HashMap 中查找
+     */
+    static final class ByName {
+        private static final HashMap<String, Method> methodCache = new HashMap<>();
+        private static final HashMap<String, Field> fieldCache = new HashMap<>();
+
+        static Object callMethod(Object obj, String name, Object... args) throws Exception {
+            return findMethodBestMatch(obj.getClass(), name, getParameterTypes(args)).invoke(obj, args);
+        }
+
+        static Object getObjectField(Object obj, String name) throws Exception {
+            return findField(obj.getClass(), name).get(obj);
+        }
+
+        private static Class<?>[] getParameterTypes(Object... args) {
+            Class<?>[] types = new Class<?>[args.length];
+            for (int i = 0; i < args.length; i++) types[i] = args[i] != null ? args[i].getClass() : null;
+            return types;
+        }
+
+        private static Method findMethodBestMatch(Class<?> cls, String name, Class<?>... types) throws Exception {
+            StringBuilder sb = new StringBuilder(cls.getName()).append('#').append(name).append('(');
+            for (int i = 0; i < types.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(types[i] != null ? types[i].getCanonicalName() : "null");
+            }
+            String key = sb.append(")#bestmatch").toString();
+            synchronized (methodCache) {
+                Method m = methodCache.get(key);
+                if (m != null) return m;
+            }
+            Method m = cls.getDeclaredMethod(name, types);
+            m.setAccessible(true);
+            synchronized (methodCache) {
+                methodCache.put(key, m);
+            }
+            return m;
+        }
+
+        private static Field findField(Class<?> cls, String name) throws Exception {
+            String key = cls.getName() + '#' + name;
+            synchronized (fieldCache) {
+                Field f = fieldCache.get(key);
+                if (f != null) return f;
+            }
+            Field f = cls.getDeclaredField(name);
+            f.setAccessible(true);
+            synchronized (fieldCache) {
+                fieldCache.put(key, f);
+            }
+            return f;
+        }
+    }
+}
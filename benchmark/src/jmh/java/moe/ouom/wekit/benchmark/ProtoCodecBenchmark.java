@@ -0,0 +1,120 @@
+package moe.ouom.wekit.benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import moe.ouom.wekit.util.ProtoJsonBuilder;
+import moe.ouom.wekit.util.WeProtoData;
+
+/**
+ * WeProtoData / ProtoJsonBuilder 热路径吞吐量，配合 -prof gc 查看每次操作的分配量
+ * <p>
+ * cgiId 为 0 时每个 LEN 字段都走试探解析；非 0 时使用 ProtoLenHints 缓存（首轮预热后命中）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProtoCodecBenchmark {
+
+    @Param({Corpus.TEXT_MSG, Corpus.TIMELINE_SYNC, Corpus.FINDER_FEED})
+    public String corpus;
+
+    @Param({"0", "522"})
+    public int cgiId;
+
+    private byte[] packet;
+    private JSONObject json;
+    private JSONObject editedView;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        packet = Corpus.packet(corpus);
+        json = parse().toJSON();
+        editedView = new JSONObject(json.toString());
+        if (!editFirstString(editedView)) throw new IllegalStateException("no string field in " + corpus);
+    }
+
+    /**
+     * 修改视图中第一个文本字段，使 applyViewJSON 产生一处真实改动
+     */
+    private static boolean editFirstString(JSONObject obj) throws Exception {
+        Iterator<String> it = obj.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            Object v = obj.get(key);
+            if (v instanceof String && !((String) v).startsWith("hex->")) {
+                obj.put(key, v + "!");
+                return true;
+            }
+            if (v instanceof JSONObject && editFirstString((JSONObject) v)) return true;
+            if (v instanceof JSONArray) {
+                JSONArray arr = (JSONArray) v;
+                for (int i = 0; i < arr.length(); i++) {
+                    Object e = arr.get(i);
+                    if (e instanceof JSONObject && editFirstString((JSONObject) e)) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private WeProtoData parse() throws Exception {
+        WeProtoData data = new WeProtoData();
+        if (cgiId != 0) data.setCgiId(cgiId);
+        data.fromBytes(packet);
+        return data;
+    }
+
+    @Benchmark
+    public WeProtoData parseOnly() throws Exception {
+        return parse();
+    }
+
+    @Benchmark
+    public JSONObject parseToJson() throws Exception {
+        return parse().toJSON();
+    }
+
+    @Benchmark
+    public int parseWriteJson() throws Exception {
+        StringBuilder sb = new StringBuilder(packet.length * 2);
+        parse().writeJson(sb);
+        return sb.length();
+    }
+
+    @Benchmark
+    public byte[] parseToPacketBytes() throws Exception {
+        return parse().toPacketBytes();
+    }
+
+    @Benchmark
+    public byte[] applyViewJsonToPacketBytes() throws Exception {
+        WeProtoData data = parse();
+        data.applyViewJSON(editedView, false);
+        return data.toPacketBytes();
+    }
+
+    @Benchmark
+    public byte[] fromJsonToPacketBytes() {
+        WeProtoData data = new WeProtoData();
+        data.fromJSON(json);
+        return data.toPacketBytes();
+    }
+
+    @Benchmark
+    public byte[] jsonBuilderMakeBytes() {
+        return ProtoJsonBuilder.INSTANCE.makeBytes(json);
+    }
+}
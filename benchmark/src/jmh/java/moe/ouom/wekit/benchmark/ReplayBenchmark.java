@@ -0,0 +1,70 @@
+package moe.ouom.wekit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import moe.ouom.wekit.benchmark.replay.Replay;
+import moe.ouom.wekit.benchmark.replay.ReplayPacket;
+import moe.ouom.wekit.benchmark.replay.ReplaySource;
+
+/**
+ * 通过 WePkgManager 回放一批数据包，每次操作处理全部数据包，配合 -prof gc 查看每批的分配量
+ * <p>
+ * 数据来自系统属性 wekit.replay.input 指定的目录（格式见 ReplaySource），未指定时使用内置语料；
+ * interceptor 为拦截器类名（可加 @cgiId），空字符串表示只测量空链路；不在基准测试类路径中的拦截器由系统属性
+ * wekit.replay.classpath 指定所在的 jar 或目录
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReplayBenchmark {
+
+    @Param({""})
+    public String interceptor;
+
+    private List<ReplayPacket> packets;
+    private List<Replay.Spec> specs;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        String input = System.getProperty("wekit.replay.input");
+        if (input != null) {
+            packets = ReplaySource.INSTANCE.load(new File(input));
+        } else {
+            packets = new ArrayList<>();
+            packets.add(new ReplayPacket(Corpus.TEXT_MSG, "/cgi-bin/micromsg-bin/newsendmsg", 522, true, Corpus.packet(Corpus.TEXT_MSG)));
+            packets.add(new ReplayPacket(Corpus.TIMELINE_SYNC, "/cgi-bin/micromsg-bin/mmsnstimeline", 211, false, Corpus.packet(Corpus.TIMELINE_SYNC)));
+            packets.add(new ReplayPacket(Corpus.FINDER_FEED, "/cgi-bin/micromsg-bin/finderstream", 3901, false, Corpus.packet(Corpus.FINDER_FEED)));
+        }
+        specs = interceptor.isEmpty()
+                ? Collections.emptyList()
+                : Collections.singletonList(Replay.INSTANCE.load(interceptor,
+                        Replay.INSTANCE.classLoader(System.getProperty("wekit.replay.classpath"))));
+        Replay.INSTANCE.register(specs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Replay.INSTANCE.unregister(specs);
+    }
+
+    @Benchmark
+    public void replay(Blackhole bh) {
+        for (ReplayPacket p : packets) bh.consume(Replay.INSTANCE.run(p));
+    }
+}
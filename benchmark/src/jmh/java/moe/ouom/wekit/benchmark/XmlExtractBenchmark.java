@@ -0,0 +1,46 @@
+package moe.ouom.wekit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import moe.ouom.wekit.util.common.XmlUtils;
+
+/**
+ * Utils.extractXmlTag / extractXmlAttr（实现位于 XmlUtils）对朋友圈 TimelineObject 的提取开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class XmlExtractBenchmark {
+
+    private String xml;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        xml = Corpus.text("timeline_object.xml");
+    }
+
+    @Benchmark
+    public void extractTag(Blackhole bh) {
+        bh.consume(XmlUtils.INSTANCE.extractXmlTag(xml, "username"));
+        bh.consume(XmlUtils.INSTANCE.extractXmlTag(xml, "contentDesc"));
+        // 不存在的标签需要扫描全文两遍（CDATA 与普通文本）
+        bh.consume(XmlUtils.INSTANCE.extractXmlTag(xml, "sourceUserName"));
+    }
+
+    @Benchmark
+    public void extractAttr(Blackhole bh) {
+        bh.consume(XmlUtils.INSTANCE.extractXmlAttr(xml, "md5"));
+        bh.consume(XmlUtils.INSTANCE.extractXmlAttr(xml, "totalSize"));
+        bh.consume(XmlUtils.INSTANCE.extractXmlAttr(xml, "appid"));
+    }
+}
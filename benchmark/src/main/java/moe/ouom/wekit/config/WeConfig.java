@@ -0,0 +1,39 @@
+package moe.ouom.wekit.config;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM 基准测试用的 WeConfig 替身，没有 MMKV，缓存类调用方会回退到纯内存
+ * 默认配置保存在内存中，回放工具通过 dPut* 设置开关
+ */
+public abstract class WeConfig {
+
+    private static final ConcurrentHashMap<String, Object> defaults = new ConcurrentHashMap<>();
+
+    public static WeConfig getCache() {
+        throw new UnsupportedOperationException("MMKV is not available on the JVM");
+    }
+
+    public static void dPutBoolean(String key, Boolean b) {
+        defaults.put(key, b);
+    }
+
+    public static void dPutString(String key, String s) {
+        defaults.put(key, s);
+    }
+
+    public static boolean dGetBoolean(String key) {
+        return Boolean.TRUE.equals(defaults.get(key));
+    }
+
+    public static String dGetString(String key, String d) {
+        Object v = defaults.get(key);
+        return v instanceof String ? (String) v : d;
+    }
+
+    public abstract byte[] getBytes(String key, byte[] defValue);
+
+    public abstract WeConfig putBytes(String key, byte[] value);
+
+    public abstract WeConfig remove(String key);
+}
@@ -0,0 +1,23 @@
+package moe.ouom.wekit.util.common;
+
+/**
+ * JVM 基准测试用的 SyncUtils 替身，延迟任务（如缓存落盘）直接丢弃，UI 任务在当前线程执行
+ */
+public final class SyncUtils {
+
+    private SyncUtils() {
+    }
+
+    public static void async(Runnable r) {
+    }
+
+    public static void postDelayed(Runnable r, long ms) {
+    }
+
+    public static void postDelayed(long ms, Runnable r) {
+    }
+
+    public static void runOnUiThread(Runnable r) {
+        r.run();
+    }
+}
@@ -0,0 +1,14 @@
+package moe.ouom.wekit.util.common;
+
+/**
+ * JVM 基准测试用的 Toasts 替身，输出到 stderr
+ */
+public final class Toasts {
+
+    private Toasts() {
+    }
+
+    public static void showToast(String msg) {
+        System.err.println("T " + msg);
+    }
+}
@@ -0,0 +1,18 @@
+package moe.ouom.wekit.util.io;
+
+import java.io.File;
+
+/**
+ * JVM 基准测试用的 PathTool 替身，数据目录由系统属性 wekit.dataDir 指定，默认在临时目录下
+ */
+public final class PathTool {
+
+    private PathTool() {
+    }
+
+    public static String getModuleDataPath() {
+        File dir = new File(System.getProperty("wekit.dataDir", System.getProperty("java.io.tmpdir") + "/WeKit"));
+        dir.mkdirs();
+        return dir.getAbsolutePath();
+    }
+}
@@ -0,0 +1,34 @@
+package moe.ouom.wekit.util.log;
+
+import java.io.Writer;
+
+/**
+ * JVM 基准测试用的 ChunkedLogWriter 替身，关闭时整段输出到 stderr
+ */
+public final class ChunkedLogWriter extends Writer {
+
+    private final String tag;
+    private final StringBuilder sb = new StringBuilder();
+
+    public ChunkedLogWriter(String tag) {
+        this.tag = tag;
+    }
+
+    public static ChunkedLogWriter info(String tag) {
+        return new ChunkedLogWriter(tag);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        sb.append(cbuf, off, len);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        System.err.println("I [" + tag + "] " + sb);
+    }
+}
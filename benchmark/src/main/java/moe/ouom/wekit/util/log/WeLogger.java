@@ -0,0 +1,32 @@
+package moe.ouom.wekit.util.log;
+
+/**
+ * JVM 基准测试用的 WeLogger 替身，只保留协议层用到的方法并输出到 stderr
+ */
+public final class WeLogger {
+
+    private WeLogger() {
+    }
+
+    public static void e(String msg, Throwable e) {
+        System.err.println("E " + msg + ": " + e);
+    }
+
+    public static void e(String tag, String msg, Throwable e) {
+        System.err.println("E [" + tag + "] " + msg + ": " + e);
+    }
+
+    public static void w(String msg) {
+        System.err.println("W " + msg);
+    }
+
+    public static void w(String tag, String msg) {
+        System.err.println("W [" + tag + "] " + msg);
+    }
+
+    public static String getStackTraceString(StackTraceElement[] stackTrace) {
+        StringBuilder sb = new StringBuilder().append('\n');
+        for (StackTraceElement element : stackTrace) sb.append("  at ").append(element).append('\n');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,132 @@
+package moe.ouom.wekit.benchmark.replay
+
+import moe.ouom.wekit.config.WeConfig
+import moe.ouom.wekit.constants.Constants
+import moe.ouom.wekit.hooks.sdk.protocol.WePkgManager
+import moe.ouom.wekit.hooks.sdk.protocol.intf.IWePkgInterceptor
+import moe.ouom.wekit.util.ProtoDiff
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.net.URLClassLoader
+
+/**
+ * 在 JVM 上用真实的 WePkgManager 拦截器链回放数据包
+ * 与设备上相同，每个数据包经过 handleRequestTamper / handleResponseTamper，输出为篡改后的字节或原始字节
+ */
+object Replay {
+
+    class Spec(val interceptor: IWePkgInterceptor, val cgiIds: IntArray?)
+
+    class GoldenResult(val checked: Int, val written: Int, val mismatches: List<String>)
+
+    class Throughput(val name: String, val packets: Long, val nanos: Long, val allocatedBytes: Long) {
+        val packetsPerSecond: Double get() = if (nanos == 0L) 0.0 else packets * 1e9 / nanos
+        val nanosPerPacket: Long get() = if (packets == 0L) 0 else nanos / packets
+        val bytesPerPacket: Long get() = if (packets == 0L || allocatedBytes < 0) -1 else allocatedBytes / packets
+    }
+
+    init {
+        // 回放时关闭所有旁路功能，并且不让熔断器因 JIT 预热的慢调用跳过拦截器
+        WeConfig.dPutBoolean(Constants.PrekVerboseLog, false)
+        WeConfig.dPutBoolean(Constants.PrekProtoSchemaInfer, false)
+        WeConfig.dPutBoolean(Constants.PrekPkgMetrics, false)
+        WeConfig.dPutBoolean(Constants.PrekPacketCapture, false)
+        WeConfig.dPutString(Constants.PrekInterceptorBudgetMs, "0")
+    }
+
+    /**
+     * 在回放工具的类路径之外加载拦截器所在的 jar 或目录，多项以系统路径分隔符分隔；为空时使用当前类加载器
+     */
+    fun classLoader(classpath: String?): ClassLoader {
+        val parent = Replay::class.java.classLoader
+        if (classpath.isNullOrBlank()) return parent
+        val urls = classpath.split(File.pathSeparatorChar)
+            .filter { it.isNotBlank() }
+            .map { File(it).also { f -> require(f.exists()) { "classpath entry not found: $f" } }.toURI().toURL() }
+        return URLClassLoader(urls.toTypedArray(), parent)
+    }
+
+    /**
+     * 按类名创建拦截器：Kotlin object 取 INSTANCE，否则调用无参构造函数
+     * 可以在类名后加 @cgi1,cgi2 指定订阅的 cgiId
+     */
+    @JvmOverloads
+    fun load(arg: String, loader: ClassLoader = Replay::class.java.classLoader): Spec {
+        val className = arg.substringBefore('@')
+        val cgiIds = arg.substringAfter('@', "").takeIf { it.isNotEmpty() }
+            ?.split(',')?.map { it.trim().toInt() }?.toIntArray()
+        val cls = Class.forName(className, true, loader)
+        val instance = try {
+            cls.getField("INSTANCE").get(null)
+        } catch (_: NoSuchFieldException) {
+            cls.getDeclaredConstructor().apply { isAccessible = true }.newInstance()
+        }
+        return Spec(instance as IWePkgInterceptor, cgiIds)
+    }
+
+    fun register(specs: List<Spec>) {
+        for (s in specs) WePkgManager.addInterceptor(s.interceptor, s.cgiIds)
+    }
+
+    fun unregister(specs: List<Spec>) {
+        for (s in specs) WePkgManager.removeInterceptor(s.interceptor)
+    }
+
+    /**
+     * 回放一个数据包，返回链路输出
+     */
+    fun run(packet: ReplayPacket): ByteArray {
+        val out = if (packet.isRequest) {
+            WePkgManager.handleRequestTamper(packet.uri, packet.cgiId, packet.bytes)
+        } else {
+            WePkgManager.handleResponseTamper(packet.uri, packet.cgiId, packet.bytes)
+        }
+        return out ?: packet.bytes
+    }
+
+    /**
+     * 与 golden 目录中的 name.bin 比较，缺失的文件直接写入；update 为 true 时覆盖全部
+     */
+    fun checkGolden(packets: List<ReplayPacket>, goldenDir: File, update: Boolean): GoldenResult {
+        goldenDir.mkdirs()
+        var checked = 0
+        var written = 0
+        val mismatches = ArrayList<String>()
+        for (p in packets) {
+            val output = run(p)
+            val file = File(goldenDir, "${p.name}.bin")
+            if (update || !file.exists()) {
+                file.writeBytes(output)
+                written++
+                continue
+            }
+            checked++
+            val expected = file.readBytes()
+            if (expected.contentEquals(output)) continue
+            val sb = StringBuilder("${p.name}: ${p.uri}, CGI=${p.cgiId}, LEN=${expected.size}->${output.size}\n")
+            try {
+                ProtoDiff.write(ProtoDiff.diff(expected, output), sb)
+            } catch (e: Exception) {
+                sb.append("<diff failed: ${e.message}>\n")
+            }
+            mismatches.add(sb.toString())
+        }
+        return GoldenResult(checked, written, mismatches)
+    }
+
+    /**
+     * 把全部数据包回放 iterations 轮，统计吞吐量和当前线程的分配量
+     */
+    fun measure(name: String, packets: List<ReplayPacket>, iterations: Int): Throughput {
+        val bean = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+        val threadId = Thread.currentThread().id
+        val allocStart = bean?.getThreadAllocatedBytes(threadId) ?: -1
+        val start = System.nanoTime()
+        repeat(iterations) {
+            for (p in packets) run(p)
+        }
+        val nanos = System.nanoTime() - start
+        val allocated = if (bean != null) bean.getThreadAllocatedBytes(threadId) - allocStart else -1
+        return Throughput(name, packets.size.toLong() * iterations, nanos, allocated)
+    }
+}
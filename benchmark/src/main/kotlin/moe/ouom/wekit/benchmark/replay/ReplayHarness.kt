@@ -0,0 +1,97 @@
+package moe.ouom.wekit.benchmark.replay
+
+import java.io.File
+import java.util.Locale
+import kotlin.system.exitProcess
+
+/**
+ * 离线回放入口
+ *
+ * ./gradlew :benchmark:replay --args="--input <dir> --interceptor com.example.MyInterceptor@522 --golden <dir>"
+ *
+ * --input        抓包目录（含 packets.dat / packets.idx）或 .bin + .json 目录
+ * --interceptor  拦截器类名，可重复；类名后可加 @cgi1,cgi2
+ * --classpath    拦截器所在的 jar 或 class 目录，多项以系统路径分隔符分隔
+ * --golden       golden 输出目录，缺失的文件会自动生成
+ * --update       用本次输出覆盖 golden
+ * --iterations   吞吐量测试的轮数，默认 20，0 表示跳过
+ *
+ * golden 不一致时退出码为 1
+ *
+ * ./gradlew :benchmark:replaySample 使用 src/replay 下的样例数据与 [SampleTextPatchInterceptor]、[SampleTimelineInterceptor] 校验 golden
+ */
+object ReplayHarness {
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        var input: File? = null
+        var golden: File? = null
+        var classpath: String? = null
+        var update = false
+        var iterations = 20
+        val interceptors = ArrayList<String>()
+        var i = 0
+        while (i < args.size) {
+            when (args[i]) {
+                "--input" -> input = File(args[++i])
+                "--interceptor" -> interceptors.add(args[++i])
+                "--classpath" -> classpath = args[++i]
+                "--golden" -> golden = File(args[++i])
+                "--update" -> update = true
+                "--iterations" -> iterations = args[++i].toInt()
+                else -> usage("unknown option: ${args[i]}")
+            }
+            i++
+        }
+        if (input == null) usage("--input is required")
+
+        val packets = ReplaySource.load(input)
+        val loader = Replay.classLoader(classpath)
+        val specs = interceptors.map { Replay.load(it, loader) }
+        println("loaded ${packets.size} packets, ${specs.size} interceptors")
+
+        var failed = false
+        Replay.register(specs)
+        if (golden != null) {
+            val result = Replay.checkGolden(packets, golden, update)
+            println("golden: checked ${result.checked}, written ${result.written}, mismatched ${result.mismatches.size}")
+            result.mismatches.forEach { print(it) }
+            failed = result.mismatches.isNotEmpty()
+        }
+        Replay.unregister(specs)
+
+        if (iterations > 0 && packets.isNotEmpty()) {
+            val rows = ArrayList<Replay.Throughput>()
+            // 空链路作为基线，其后每个拦截器单独测量，最后测量完整链路
+            rows.add(measureWarm("<none>", packets, iterations))
+            for ((index, spec) in specs.withIndex()) {
+                Replay.register(listOf(spec))
+                rows.add(measureWarm(interceptors[index], packets, iterations))
+                Replay.unregister(listOf(spec))
+            }
+            if (specs.size > 1) {
+                Replay.register(specs)
+                rows.add(measureWarm("<all>", packets, iterations))
+                Replay.unregister(specs)
+            }
+            println()
+            println(String.format(Locale.ROOT, "%-60s %14s %12s %14s", "interceptor", "packets/s", "ns/packet", "bytes/packet"))
+            for (r in rows) {
+                println(String.format(Locale.ROOT, "%-60s %14.0f %12d %14d", r.name, r.packetsPerSecond, r.nanosPerPacket, r.bytesPerPacket))
+            }
+        }
+
+        if (failed) exitProcess(1)
+    }
+
+    private fun measureWarm(name: String, packets: List<ReplayPacket>, iterations: Int): Replay.Throughput {
+        Replay.measure(name, packets, maxOf(1, iterations / 4))
+        return Replay.measure(name, packets, iterations)
+    }
+
+    private fun usage(msg: String): Nothing {
+        System.err.println(msg)
+        System.err.println("usage: --input <dir> [--classpath <jars>] [--interceptor <class>[@cgi,...]]... [--golden <dir> [--update]] [--iterations <n>]")
+        exitProcess(2)
+    }
+}
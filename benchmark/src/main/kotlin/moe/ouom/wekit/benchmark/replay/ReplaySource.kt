@@ -0,0 +1,61 @@
+package moe.ouom.wekit.benchmark.replay
+
+import moe.ouom.wekit.hooks.sdk.protocol.capture.CaptureFile
+import org.json.JSONObject
+import java.io.File
+
+/**
+ * 回放用的一个数据包
+ * @param name 用于命名 golden 文件，同一批数据中唯一
+ */
+class ReplayPacket(
+    val name: String,
+    val uri: String,
+    val cgiId: Int,
+    val isRequest: Boolean,
+    val bytes: ByteArray
+)
+
+/**
+ * 读取回放数据：设备上 WeKit/capture 目录中的抓包文件，或由 .bin 与同名 .json 元数据组成的目录
+ */
+object ReplaySource {
+
+    /**
+     * 自动识别目录格式
+     */
+    fun load(dir: File): List<ReplayPacket> =
+        if (File(dir, "packets.dat").isFile) fromCapture(dir) else fromDirectory(dir)
+
+    /**
+     * 按时间顺序读取抓包文件中的全部记录，跳过被截断的记录
+     */
+    fun fromCapture(dir: File): List<ReplayPacket> {
+        CaptureFile.openExisting(File(dir, "packets.dat"), File(dir, "packets.idx")).use { file ->
+            val records = file.query(null, Long.MAX_VALUE, Int.MAX_VALUE).asReversed()
+            return records.mapNotNull { r ->
+                if (r.truncated) return@mapNotNull null
+                val payload = file.readPayload(r) ?: return@mapNotNull null
+                ReplayPacket(
+                    "${r.seq}_${r.cgiId}_${if (r.isRequest) "req" else "resp"}",
+                    r.uri, r.cgiId, r.isRequest, payload
+                )
+            }
+        }
+    }
+
+    /**
+     * 每个 name.bin 需要一个 name.json：{"uri": "...", "cgiId": 522, "request": true}
+     */
+    fun fromDirectory(dir: File): List<ReplayPacket> {
+        val bins = dir.listFiles { f -> f.isFile && f.name.endsWith(".bin") }?.sortedBy { it.name }
+            ?: throw IllegalArgumentException("not a directory: $dir")
+        return bins.map { bin ->
+            val name = bin.name.removeSuffix(".bin")
+            val metaFile = File(dir, "$name.json")
+            require(metaFile.isFile) { "missing metadata: $metaFile" }
+            val meta = JSONObject(metaFile.readText())
+            ReplayPacket(name, meta.optString("uri"), meta.getInt("cgiId"), meta.optBoolean("request", true), bin.readBytes())
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package moe.ouom.wekit.benchmark.replay
+
+import moe.ouom.wekit.hooks.sdk.protocol.intf.IWePkgInterceptor
+import moe.ouom.wekit.hooks.sdk.protocol.model.PacketContext
+import moe.ouom.wekit.util.ProtoPatch
+import org.json.JSONArray
+
+/**
+ * 随回放工具一起编译的样例拦截器，配合 src/replay/sample 与 src/replay/golden 校验回放链路
+ * app 中的拦截器依赖 HookItem 与 Android 界面，无法在 JVM 上加载，需要回放时打包后通过 --classpath 传入
+ */
+
+/**
+ * 用 ProtoPatch 替换 newsendmsg 请求中的消息文本
+ */
+object SampleTextPatchInterceptor : IWePkgInterceptor {
+    private const val CGI_NEW_SEND_MSG = 522
+
+    private val patch = ProtoPatch().setString("3/2", "[replay]")
+
+    override fun onRequest(ctx: PacketContext) {
+        if (ctx.cgiId == CGI_NEW_SEND_MSG) ctx.applyPatch(patch)
+    }
+}
+
+/**
+ * 与 HookQueryCashierPkg 相同的 toJSON / applyViewJSON 流程：清空朋友圈同步回包中每条动态的文字
+ */
+object SampleTimelineInterceptor : IWePkgInterceptor {
+    private const val CGI_TIMELINE = 211
+
+    override fun onResponse(ctx: PacketContext) {
+        if (ctx.cgiId != CGI_TIMELINE) return
+        val data = ctx.data
+        val json = data.toJSON()
+        val items = json.opt("3") as? JSONArray ?: return
+        for (i in 0 until items.length()) {
+            items.optJSONObject(i)?.put("3", "")
+        }
+        if (data.applyViewJSON(json, true) > 0) ctx.markDirty()
+    }
+}